@@ -1,8 +1,12 @@
 package com.stockcharts.app;
 
+import com.stockcharts.app.service.BacktestService;
 import com.stockcharts.app.service.ChartService;
+import com.stockcharts.app.service.GroupedDailyLoader;
 import com.stockcharts.app.service.PolygonService;
 import com.stockcharts.app.service.IndicatorService;
+import com.stockcharts.app.service.RiskService;
+import com.stockcharts.app.service.ScreenerService;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.boot.SpringApplication;
@@ -19,9 +23,14 @@ public class StockChartsMcpServerApplication {
     @Bean
     public ToolCallbackProvider stockChartTools(ChartService chartService, 
                                                 PolygonService polygonService,
-                                                IndicatorService indicatorService) {
+                                                IndicatorService indicatorService,
+                                                GroupedDailyLoader groupedDailyLoader,
+                                                ScreenerService screenerService,
+                                                BacktestService backtestService,
+                                                RiskService riskService) {
         return MethodToolCallbackProvider.builder()
-            .toolObjects(chartService, polygonService, indicatorService)
+            .toolObjects(chartService, polygonService, indicatorService, groupedDailyLoader, screenerService,
+                backtestService, riskService)
             .build();
     }
     
@@ -0,0 +1,57 @@
+package com.stockcharts.app.backtest;
+
+/**
+ * Statistics of one backtest run. Returns are fractions (0.12 = +12%); the equity curve starts
+ * at 1.0 and is only kept when requested, since parameter sweeps need the statistics alone.
+ */
+public class BacktestResult {
+    private final double[] parameters;
+    private final double totalReturn;
+    private final double buyAndHoldReturn;
+    private final double maxDrawdown;
+    private final double sharpe;
+    private final int trades;
+    private final int winningTrades;
+    private final double averageTradeReturn;
+    private final double exposure;
+    private final double[] equity;
+    private final int[] tradeEntries;
+    private final int[] tradeExits;
+    private final double[] tradeReturns;
+
+    BacktestResult(double[] parameters, double totalReturn, double buyAndHoldReturn, double maxDrawdown, double sharpe,
+                   int trades, int winningTrades, double averageTradeReturn, double exposure, double[] equity,
+                   int[] tradeEntries, int[] tradeExits, double[] tradeReturns) {
+        this.parameters = parameters;
+        this.totalReturn = totalReturn;
+        this.buyAndHoldReturn = buyAndHoldReturn;
+        this.maxDrawdown = maxDrawdown;
+        this.sharpe = sharpe;
+        this.trades = trades;
+        this.winningTrades = winningTrades;
+        this.averageTradeReturn = averageTradeReturn;
+        this.exposure = exposure;
+        this.equity = equity;
+        this.tradeEntries = tradeEntries;
+        this.tradeExits = tradeExits;
+        this.tradeReturns = tradeReturns;
+    }
+
+    public double[] getParameters() { return parameters; }
+    public double getTotalReturn() { return totalReturn; }
+    public double getBuyAndHoldReturn() { return buyAndHoldReturn; }
+    // Largest peak-to-trough fall of the equity curve, as a positive fraction
+    public double getMaxDrawdown() { return maxDrawdown; }
+    // Annualized (252 bars) mean over standard deviation of per-bar strategy returns
+    public double getSharpe() { return sharpe; }
+    public int getTrades() { return trades; }
+    public double getWinRate() { return trades == 0 ? 0 : (double) winningTrades / trades; }
+    public double getAverageTradeReturn() { return averageTradeReturn; }
+    // Fraction of bars with an open position
+    public double getExposure() { return exposure; }
+    public double[] getEquity() { return equity; }
+    // Bar indices of each trade's entry and exit (an open trade exits at the last bar)
+    public int[] getTradeEntries() { return tradeEntries; }
+    public int[] getTradeExits() { return tradeExits; }
+    public double[] getTradeReturns() { return tradeReturns; }
+}
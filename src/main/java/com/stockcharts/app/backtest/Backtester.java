@@ -0,0 +1,97 @@
+package com.stockcharts.app.backtest;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates a position series against closes in one pass over primitive arrays. position[i] is
+ * the exposure (0 = flat, 1 = long) chosen at the close of bar i, so it earns the return from
+ * close i to close i + 1; signals therefore never see the bar they are paid on. Each change of
+ * position costs costPerUnit times the size of the change.
+ */
+public final class Backtester {
+
+    private static final double BARS_PER_YEAR = 252.0;
+
+    private Backtester() {}
+
+    public static BacktestResult run(double[] close, int closeFrom, double[] position, int n,
+                                     double costPerUnit, double[] parameters, boolean keepDetail) {
+        double[] equity = keepDetail ? new double[n] : null;
+        int[] entries = keepDetail ? new int[Math.max(1, n / 2 + 1)] : null;
+        int[] exits = keepDetail ? new int[Math.max(1, n / 2 + 1)] : null;
+        double[] tradeReturns = keepDetail ? new double[Math.max(1, n / 2 + 1)] : null;
+
+        double value = 1.0;
+        double peak = 1.0;
+        double maxDrawdown = 0;
+        double sum = 0;
+        double sumSquares = 0;
+        int inMarket = 0;
+        int trades = 0;
+        int winners = 0;
+        double tradeSum = 0;
+        double held = 0;
+        double entryValue = 1.0;
+        int entryIndex = -1;
+        if (keepDetail && n > 0) equity[0] = 1.0;
+
+        for (int i = 0; i < n; i++) {
+            double before = value;
+            if (i > 0 && held != 0) {
+                double r = close[closeFrom + i] / close[closeFrom + i - 1] - 1;
+                value *= 1 + held * r;
+            }
+            double target = position[i];
+            if (target != held) {
+                value *= 1 - costPerUnit * Math.abs(target - held);
+                if (held == 0) {
+                    entryValue = before;
+                    entryIndex = i;
+                } else if (target == 0) {
+                    double tradeReturn = value / entryValue - 1;
+                    if (keepDetail) {
+                        entries[trades] = entryIndex;
+                        exits[trades] = i;
+                        tradeReturns[trades] = tradeReturn;
+                    }
+                    trades++;
+                    if (tradeReturn > 0) winners++;
+                    tradeSum += tradeReturn;
+                }
+                held = target;
+            }
+            if (i > 0) {
+                double r = value / before - 1;
+                sum += r;
+                sumSquares += r * r;
+            }
+            if (held != 0) inMarket++;
+            if (value > peak) peak = value;
+            maxDrawdown = Math.max(maxDrawdown, 1 - value / peak);
+            if (keepDetail) equity[i] = value;
+        }
+        if (held != 0 && entryIndex >= 0) {
+            // Mark the open trade to the last close
+            double tradeReturn = value / entryValue - 1;
+            if (keepDetail) {
+                entries[trades] = entryIndex;
+                exits[trades] = n - 1;
+                tradeReturns[trades] = tradeReturn;
+            }
+            trades++;
+            if (tradeReturn > 0) winners++;
+            tradeSum += tradeReturn;
+        }
+
+        int periods = Math.max(1, n - 1);
+        double mean = sum / periods;
+        double variance = Math.max(0, sumSquares / periods - mean * mean);
+        double sharpe = variance > 0 ? mean / Math.sqrt(variance) * Math.sqrt(BARS_PER_YEAR) : 0;
+        double buyAndHold = n > 1 ? close[closeFrom + n - 1] / close[closeFrom] - 1 : 0;
+        return new BacktestResult(parameters, value - 1, buyAndHold, maxDrawdown, sharpe, trades, winners,
+            trades == 0 ? 0 : tradeSum / trades, n == 0 ? 0 : (double) inMarket / n, equity,
+            keepDetail ? Arrays.copyOf(entries, trades) : null,
+            keepDetail ? Arrays.copyOf(exits, trades) : null,
+            keepDetail ? Arrays.copyOf(tradeReturns, trades) : null);
+    }
+}
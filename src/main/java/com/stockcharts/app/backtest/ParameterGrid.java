@@ -0,0 +1,105 @@
+package com.stockcharts.app.backtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cartesian grid of named strategy parameters, parsed from text such as
+ * "fast=5..50:5, slow=20..200:10, lower=30". A value is either fixed or a FROM..TO:STEP range
+ * (step defaults to 1). Names missing from the text take the strategy's defaults. Ranges and grids
+ * larger than the caller's combination limit are rejected before any values are allocated.
+ */
+public final class ParameterGrid {
+
+    private final List<String> names;
+    private final List<double[]> values;
+    private final long size;
+
+    private ParameterGrid(List<String> names, List<double[]> values, long size) {
+        this.names = names;
+        this.values = values;
+        this.size = size;
+    }
+
+    public static ParameterGrid parse(String text, Map<String, Double> defaults, long maxCombinations) {
+        Map<String, double[]> parsed = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> entry : defaults.entrySet()) {
+            parsed.put(entry.getKey(), new double[] {entry.getValue()});
+        }
+        if (text != null) {
+            for (String item : text.split(",")) {
+                if (item.isBlank()) continue;
+                String[] pair = item.split("=", 2);
+                String name = pair[0].trim().toLowerCase();
+                if (pair.length != 2 || !parsed.containsKey(name)) {
+                    throw new IllegalArgumentException("Unknown parameter '" + item.trim() + "'; expected one of " + defaults.keySet());
+                }
+                parsed.put(name, values(pair[1].trim(), name, maxCombinations));
+            }
+        }
+        // Each range fits the limit, so the running product cannot overflow before it is checked
+        long combinations = 1;
+        for (double[] v : parsed.values()) {
+            combinations *= v.length;
+            if (combinations > maxCombinations) throw tooLarge("Parameter grid", maxCombinations);
+        }
+        return new ParameterGrid(new ArrayList<>(parsed.keySet()), new ArrayList<>(parsed.values()), combinations);
+    }
+
+    private static double[] values(String spec, String name, long maxCombinations) {
+        try {
+            int dots = spec.indexOf("..");
+            if (dots < 0) return new double[] {Double.parseDouble(spec)};
+            int colon = spec.indexOf(':', dots);
+            double from = Double.parseDouble(spec.substring(0, dots));
+            double to = Double.parseDouble(colon < 0 ? spec.substring(dots + 2) : spec.substring(dots + 2, colon));
+            double step = colon < 0 ? 1 : Double.parseDouble(spec.substring(colon + 1));
+            if (step <= 0 || to < from) throw new IllegalArgumentException("Empty range for " + name + ": " + spec);
+            // Counted in double so huge or infinite ranges are rejected rather than wrapped
+            double count = Math.floor((to - from) / step + 1e-9) + 1;
+            if (!(count <= maxCombinations)) throw tooLarge("Range for " + name + " (" + spec + ")", maxCombinations);
+            double[] values = new double[(int) count];
+            // Multiply rather than accumulate so fractional steps do not drift
+            for (int i = 0; i < count; i++) values[i] = from + i * step;
+            return values;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + spec);
+        }
+    }
+
+    private static IllegalArgumentException tooLarge(String what, long maxCombinations) {
+        return new IllegalArgumentException(what + " has more than " + maxCombinations
+            + " combinations (BACKTEST_MAX_COMBINATIONS)");
+    }
+
+    public List<String> names() { return names; }
+    public long size() { return size; }
+
+    // Distinct values of one parameter
+    public double[] values(String name) {
+        return values.get(names.indexOf(name)).clone();
+    }
+
+    // Parameters of the combination with the given index, in names() order; the last name varies fastest
+    public double[] combination(long index) {
+        double[] combination = new double[names.size()];
+        for (int p = names.size() - 1; p >= 0; p--) {
+            double[] v = values.get(p);
+            combination[p] = v[(int) (index % v.length)];
+            index /= v.length;
+        }
+        return combination;
+    }
+
+    public String describe(double[] combination) {
+        StringBuilder text = new StringBuilder();
+        for (int p = 0; p < names.size(); p++) {
+            if (p > 0) text.append(", ");
+            double v = combination[p];
+            text.append(names.get(p)).append('=').append(v == Math.rint(v) ? String.valueOf((long) v) : String.valueOf(v));
+        }
+        return text.toString();
+    }
+}
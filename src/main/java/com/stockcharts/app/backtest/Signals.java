@@ -0,0 +1,72 @@
+package com.stockcharts.app.backtest;
+
+import com.stockcharts.app.model.BarSeries;
+import com.stockcharts.app.model.FibonacciRetracement;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Position rules over primitive indicator arrays. Each writes one exposure per bar into out
+ * (1 = long, 0 = flat), decided from values up to and including that bar. Undefined (NaN)
+ * indicator values keep the position flat.
+ */
+public final class Signals {
+
+    private Signals() {}
+
+    // Long while fast is above slow
+    public static void crossover(double[] fast, double[] slow, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = fast[i] > slow[i] ? 1 : 0;
+        }
+    }
+
+    // Enter when value falls below enterBelow, exit when it rises above exitAbove
+    public static void threshold(double[] value, double enterBelow, double exitAbove, double[] out, int n) {
+        double held = 0;
+        for (int i = 0; i < n; i++) {
+            double v = value[i];
+            if (held == 0 && v < enterBelow) held = 1;
+            else if (held != 0 && v > exitAbove) held = 0;
+            out[i] = held;
+        }
+    }
+
+    /**
+     * Buys pullbacks to a Fibonacci level of an uptrend set: enter when a bar trades down to the
+     * level and closes at or above it, exit at the 100% anchor (target) or on a close below the
+     * 0% anchor (stop). Sets come from snapshots: snapshots.get(k) holds the sets computed on
+     * bars [0, snapshotEnds[k]] and is used until the next snapshot, so no set is seen before
+     * its anchors are confirmed. Each set (identified by its anchor indices) is traded once.
+     */
+    public static void fibonacciPullback(BarSeries bars, int[] snapshotEnds, List<List<FibonacciRetracement>> snapshots,
+                                         double ratio, double[] out) {
+        int n = bars.size();
+        int snapshot = -1;
+        FibonacciRetracement active = null;
+        Set<Long> traded = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            while (snapshot + 1 < snapshotEnds.length && snapshotEnds[snapshot + 1] < i) snapshot++;
+            double close = bars.close(i);
+            if (active != null) {
+                if (close >= active.getHigh() || close < active.getLow()) active = null;
+            } else if (snapshot >= 0) {
+                // Most recent qualifying set wins
+                List<FibonacciRetracement> sets = snapshots.get(snapshot);
+                for (int s = sets.size() - 1; s >= 0; s--) {
+                    FibonacciRetracement set = sets.get(s);
+                    if (!set.isUptrend() || set.isInvalidated(ratio)) continue;
+                    double level = set.level(ratio);
+                    if (bars.low(i) <= level && close >= level && close < set.getHigh()
+                            && traded.add(((long) set.getStartIndex() << 32) | set.getEndIndex())) {
+                        active = set;
+                        break;
+                    }
+                }
+            }
+            out[i] = active != null ? 1 : 0;
+        }
+    }
+}
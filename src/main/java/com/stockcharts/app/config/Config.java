@@ -10,32 +10,93 @@ import java.util.Properties;
 public class Config {
 
     private static String polygonApiKey;
+    private static Properties localProperties;
 
     public static String getPolygonApiKey() {
         if (polygonApiKey != null) return polygonApiKey;
 
+        String key = getSetting("POLYGON_API_KEY", null);
+        if (key != null) {
+            polygonApiKey = key;
+            return polygonApiKey;
+        }
+        // The local stand-in accepts any key, so offline runs need no credentials
+        if (isPolygonStandInEnabled()) {
+            polygonApiKey = "standin";
+            return polygonApiKey;
+        }
+
+        throw new IllegalStateException("Missing Polygon API key. Set env POLYGON_API_KEY or create config/local.properties with POLYGON_API_KEY=<your_key>.");
+    }
+
+    // Resolve a setting from the environment first, then from config/local.properties
+    public static String getSetting(String name, String defaultValue) {
         // 1) Environment variable override
-        String fromEnv = System.getenv("POLYGON_API_KEY");
+        String fromEnv = System.getenv(name);
         if (fromEnv != null && !fromEnv.isBlank()) {
-            polygonApiKey = fromEnv.trim();
-            return polygonApiKey;
+            return fromEnv.trim();
         }
 
         // 2) Local properties file at project root: config/local.properties
+        String fromFile = loadLocalProperties().getProperty(name);
+        if (fromFile != null && !fromFile.isBlank()) {
+            return fromFile.trim();
+        }
+        return defaultValue;
+    }
+
+    public static int getIntSetting(String name, int defaultValue) {
+        String value = getSetting(name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static double getDoubleSetting(String name, double defaultValue) {
+        String value = getSetting(name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBooleanSetting(String name, boolean defaultValue) {
+        String value = getSetting(name, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    public static String getPolygonBaseUrl() {
+        String url = getSetting("POLYGON_BASE_URL", "https://api.polygon.io");
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public static boolean isPolygonStandInEnabled() {
+        return getBooleanSetting("POLYGON_STANDIN_ENABLED", false);
+    }
+
+    public static String getBarStoreDir() {
+        return getSetting("BAR_STORE_DIR", Paths.get("data", "bars").toString());
+    }
+
+    public static boolean isBarStoreEnabled() {
+        return getBooleanSetting("BAR_STORE_ENABLED", true);
+    }
+
+    private static synchronized Properties loadLocalProperties() {
+        if (localProperties != null) return localProperties;
+        Properties props = new Properties();
         Path path = Paths.get("config", "local.properties");
         if (Files.exists(path)) {
-            Properties props = new Properties();
             try (FileInputStream fis = new FileInputStream(path.toFile())) {
                 props.load(fis);
-                String key = props.getProperty("POLYGON_API_KEY");
-                if (key != null && !key.isBlank()) {
-                    polygonApiKey = key.trim();
-                    return polygonApiKey;
-                }
             } catch (IOException ignored) {}
         }
-
-        throw new IllegalStateException("Missing Polygon API key. Set env POLYGON_API_KEY or create config/local.properties with POLYGON_API_KEY=<your_key>.");
+        localProperties = props;
+        return localProperties;
     }
 }
-
@@ -0,0 +1,17 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Element-wise array kernels with an accelerated implementation that is only built and linked
+ * when available ({@link VectorKernels}, in the vector Maven profile); {@link IndicatorKernels}
+ * falls back to its plain loops otherwise. Arguments are as in {@link IndicatorKernels#add}.
+ */
+interface ElementwiseKernels {
+
+    void add(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n);
+
+    void subtract(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n);
+
+    void multiply(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n);
+
+    void divide(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n);
+}
@@ -0,0 +1,353 @@
+package com.stockcharts.app.indicator;
+
+import com.stockcharts.app.model.BarSeries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Computes a whole set of indicators in a single sweep over the bars: each bar's columns are
+ * read once and handed to every indicator's O(1) streaming state, so a wide set on a long
+ * history costs one pass over memory instead of one per indicator.
+ *
+ * Outputs are keyed like {@link IndicatorNode} keys where an equivalent node exists (e.g.
+ * "sma(close,20)"), so results are shared with {@link IndicatorGraph} through the same memo.
+ * Values match the kernels bar for bar, with NaN during warm-up.
+ *
+ * A {@link Stream} keeps a request's streaming state over one series between calls, so a series
+ * that grows by a bar is advanced by that bar instead of swept again from the first one.
+ */
+public final class FusedIndicatorEngine {
+
+    private FusedIndicatorEngine() {}
+
+    // Consumes bar i and writes this indicator's outputs at index i
+    @FunctionalInterface
+    private interface Step {
+        void step(double[][] out, int i, double high, double low, double close, double volume, double vwap);
+    }
+
+    // One indicator's streaming state: its per-bar step and a checkpoint of the state to resume from
+    private static final class State {
+        final Supplier<double[]> checkpoint;
+        final Step step;
+
+        State(Supplier<double[]> checkpoint, Step step) {
+            this.checkpoint = checkpoint;
+            this.step = step;
+        }
+    }
+
+    private static final class Spec {
+        final List<String> keys;
+        // Bars held in the streaming state's ring buffers (0 if none); outputs are NaN until that many arrive
+        final int window;
+        // Fresh state for null, otherwise the state restored from a checkpoint
+        final Function<double[], State> factory;
+
+        Spec(List<String> keys, int window, Function<double[], State> factory) {
+            this.keys = keys;
+            this.window = window;
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * Set of indicators to compute. Reusable across series; adding an indicator whose outputs
+     * are already requested is a no-op.
+     */
+    public static final class Request {
+        private final List<Spec> specs = new ArrayList<>();
+        private final Map<String, String> labels = new LinkedHashMap<>();
+
+        /**
+         * Adds an indicator by name and returns its output keys. Types: SMA, EMA, RSI, DPO
+         * (or DETRENDED), MACD (always 12/26/9; outputs line, signal, histogram), BB (or
+         * BOLLINGER; 2 standard deviations; outputs middle, upper, lower), ATR, STOCH (or
+         * STOCHASTIC; %D over 3; outputs %K, %D), OBV and VWAP (period ignored).
+         */
+        public List<String> add(String type, int period) {
+            String t = type.trim().toUpperCase();
+            return switch (t) {
+                case "SMA" -> add(List.of(IndicatorNode.sma(IndicatorNode.CLOSE, period).getKey()), List.of("SMA(" + period + ")"), period, state -> {
+                    StreamingSma sma = state == null ? new StreamingSma(period) : StreamingSma.restore(state);
+                    return new State(sma::checkpoint, (out, i, h, l, c, v, w) -> out[0][i] = sma.update(c));
+                });
+                case "EMA" -> add(List.of(IndicatorNode.ema(IndicatorNode.CLOSE, period).getKey()), List.of("EMA(" + period + ")"), 0, state -> {
+                    StreamingEma ema = state == null ? new StreamingEma(period) : StreamingEma.restore(state);
+                    return new State(ema::checkpoint, (out, i, h, l, c, v, w) -> out[0][i] = ema.update(c));
+                });
+                case "RSI" -> add(List.of(IndicatorNode.rsi(IndicatorNode.CLOSE, period).getKey()), List.of("RSI(" + period + ")"), 0, state -> {
+                    StreamingRsi rsi = state == null ? new StreamingRsi(period) : StreamingRsi.restore(state);
+                    return new State(rsi::checkpoint, (out, i, h, l, c, v, w) -> out[0][i] = rsi.update(c));
+                });
+                case "DPO", "DETRENDED" -> add(List.of(IndicatorNode.dpo(IndicatorNode.CLOSE, period).getKey()), List.of("DPO(" + period + ")"), period, state -> {
+                    StreamingDpo dpo = state == null ? new StreamingDpo(period) : StreamingDpo.restore(state);
+                    return new State(dpo::checkpoint, (out, i, h, l, c, v, w) -> out[0][i] = dpo.update(c));
+                });
+                case "MACD" -> add(List.of(
+                        IndicatorNode.macdLine(IndicatorNode.CLOSE, 12, 26).getKey(),
+                        IndicatorNode.macdSignal(IndicatorNode.CLOSE, 12, 26, 9).getKey(),
+                        IndicatorNode.macdHistogram(IndicatorNode.CLOSE, 12, 26, 9).getKey()),
+                    List.of("MACD", "Signal", "Histogram"), 0, state -> {
+                        StreamingMacd macd = state == null ? new StreamingMacd(12, 26, 9) : StreamingMacd.restore(state);
+                        return new State(macd::checkpoint, (out, i, h, l, c, v, w) -> {
+                            out[0][i] = macd.update(c);
+                            out[1][i] = macd.signal();
+                            out[2][i] = macd.histogram();
+                        });
+                    });
+                case "BB", "BOLLINGER" -> add(List.of(
+                        IndicatorNode.sma(IndicatorNode.CLOSE, period).getKey(),
+                        "bollinger_upper(close," + period + ",2.0)",
+                        "bollinger_lower(close," + period + ",2.0)"),
+                    List.of("BB mid(" + period + ")", "BB upper", "BB lower"), period, state -> {
+                        StreamingBollinger bands = state == null ? new StreamingBollinger(period, 2.0) : StreamingBollinger.restore(state);
+                        return new State(bands::checkpoint, (out, i, h, l, c, v, w) -> {
+                            out[0][i] = bands.update(c);
+                            out[1][i] = bands.upper();
+                            out[2][i] = bands.lower();
+                        });
+                    });
+                case "ATR" -> add(List.of("atr(" + period + ")"), List.of("ATR(" + period + ")"), 0, state -> {
+                    StreamingAtr atr = state == null ? new StreamingAtr(period) : StreamingAtr.restore(state);
+                    return new State(atr::checkpoint, (out, i, h, l, c, v, w) -> out[0][i] = atr.update(h, l, c));
+                });
+                case "STOCH", "STOCHASTIC" -> add(List.of("stoch_k(" + period + ")", "stoch_d(" + period + ",3)"),
+                    List.of("%K(" + period + ")", "%D(3)"), period, state -> {
+                        StreamingStochastic stochastic = state == null ? new StreamingStochastic(period, 3) : StreamingStochastic.restore(state);
+                        return new State(stochastic::checkpoint, (out, i, h, l, c, v, w) -> {
+                            out[0][i] = stochastic.update(h, l, c);
+                            out[1][i] = stochastic.d();
+                        });
+                    });
+                case "OBV" -> add(List.of("obv"), List.of("OBV"), 0, state -> {
+                    StreamingObv obv = state == null ? new StreamingObv() : StreamingObv.restore(state);
+                    return new State(obv::checkpoint, (out, i, h, l, c, v, w) -> out[0][i] = obv.update(c, v));
+                });
+                case "VWAP" -> add(List.of("vwap"), List.of("VWAP"), 0, state -> {
+                    StreamingVwap vwap = state == null ? new StreamingVwap() : StreamingVwap.restore(state);
+                    return new State(vwap::checkpoint, (out, i, h, l, c, v, w) -> out[0][i] = vwap.update(h, l, c, v, w));
+                });
+                default -> throw new IllegalArgumentException("Unsupported indicator: " + type);
+            };
+        }
+
+        // Display label of an output key, e.g. "BB upper"
+        public String label(String key) {
+            return labels.getOrDefault(key, key);
+        }
+
+        public List<String> keys() {
+            return new ArrayList<>(labels.keySet());
+        }
+
+        private List<String> add(List<String> keys, List<String> names, int window, Function<double[], State> factory) {
+            if (!labels.keySet().containsAll(keys)) {
+                specs.add(new Spec(keys, window, factory));
+                for (int k = 0; k < keys.size(); k++) labels.putIfAbsent(keys.get(k), names.get(k));
+            }
+            return keys;
+        }
+    }
+
+    public static final class Result {
+        private final Map<String, double[]> values;
+
+        private Result(Map<String, double[]> values) {
+            this.values = values;
+        }
+
+        // One value per bar, NaN during warm-up; shared and read-only
+        public double[] get(String key) {
+            double[] v = values.get(key);
+            if (v == null) throw new IllegalArgumentException("Indicator output not requested: " + key);
+            return v;
+        }
+    }
+
+    /**
+     * A request's streaming state over one growing series. Each advance consumes only the bars
+     * appended since the previous one, so a long history refreshed with a new bar costs O(1) per
+     * indicator instead of a sweep from the first bar. The states are checkpointed before the
+     * last bar consumed, so a revised last bar (today's, while it is still forming) is replayed
+     * from those checkpoints rather than from the start.
+     */
+    public static final class Stream {
+        private final List<Spec> specs;
+        // Null until the series reaches the spec's window
+        private final State[] states;
+        // Checkpoints of the states before the last bar consumed; null where there was no state
+        private final double[][] beforeLast;
+        private final double[][][] outputs;
+        private int capacity = 16;
+        private BarSeries bars = BarSeries.empty();
+        private int size;
+
+        public Stream(Request request) {
+            this.specs = new ArrayList<>(request.specs);
+            this.states = new State[specs.size()];
+            this.beforeLast = new double[specs.size()][];
+            this.outputs = new double[specs.size()][][];
+            for (int s = 0; s < specs.size(); s++) outputs[s] = new double[specs.get(s).keys.size()][capacity];
+        }
+
+        /**
+         * Feeds the bars appended since the last call and returns every output over the whole
+         * series, or null when the series neither extends the bars consumed nor only revises the
+         * last of them (different first bar, fewer bars, or an earlier bar changed).
+         */
+        public synchronized Result advance(BarSeries series) {
+            int n = series.size();
+            if (!sameBar(series, size - 1)) {
+                if (size == 0 || !sameBar(series, size - 2) || series.size() < size
+                        || series.epochDay(size - 1) != bars.epochDay(size - 1)) {
+                    return null;
+                }
+                // The last bar was revised: resume from the states before it
+                for (int s = 0; s < specs.size(); s++) {
+                    states[s] = beforeLast[s] == null ? null : specs.get(s).factory.apply(beforeLast[s]);
+                }
+                size--;
+            }
+            if (n > capacity) grow(n);
+            for (int s = 0; s < specs.size(); s++) {
+                if (states[s] != null || specs.get(s).window > n) continue;
+                // The series just reached this window: replay it once from the first bar
+                states[s] = specs.get(s).factory.apply(null);
+                for (int i = 0; i < size; i++) step(s, series, i);
+            }
+            for (int i = size; i < n; i++) {
+                if (i == n - 1) {
+                    for (int s = 0; s < specs.size(); s++) {
+                        beforeLast[s] = states[s] == null ? null : states[s].checkpoint.get();
+                    }
+                }
+                for (int s = 0; s < specs.size(); s++) step(s, series, i);
+            }
+            bars = series;
+            size = n;
+
+            Map<String, double[]> values = new HashMap<>();
+            for (int s = 0; s < specs.size(); s++) {
+                List<String> keys = specs.get(s).keys;
+                for (int k = 0; k < keys.size(); k++) {
+                    if (!values.containsKey(keys.get(k))) values.put(keys.get(k), Arrays.copyOf(outputs[s][k], n));
+                }
+            }
+            return new Result(values);
+        }
+
+        // Whether bar i (if any) of series is the one consumed at i; positions before 0 match
+        private boolean sameBar(BarSeries series, int i) {
+            if (i < 0) return series.isEmpty() || size == 0 || series.epochDay(0) == bars.epochDay(0);
+            return series.size() > i && series.epochDay(0) == bars.epochDay(0)
+                && series.epochDay(i) == bars.epochDay(i)
+                && same(series.high(i), bars.high(i)) && same(series.low(i), bars.low(i))
+                && same(series.close(i), bars.close(i)) && same(series.volume(i), bars.volume(i))
+                && same(series.vwap(i), bars.vwap(i));
+        }
+
+        // Equal values, NaN included
+        private static boolean same(double a, double b) {
+            return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+        }
+
+        private void step(int s, BarSeries series, int i) {
+            double[][] out = outputs[s];
+            if (states[s] == null) {
+                for (double[] o : out) o[i] = Double.NaN;
+            } else {
+                states[s].step.step(out, i, series.high(i), series.low(i), series.close(i), series.volume(i), series.vwap(i));
+            }
+        }
+
+        private void grow(int n) {
+            capacity = Math.max(n, capacity * 2);
+            for (double[][] out : outputs) {
+                for (int k = 0; k < out.length; k++) out[k] = Arrays.copyOf(out[k], capacity);
+            }
+        }
+    }
+
+    public static Result run(BarSeries bars, Request request) {
+        return run(bars, request, null);
+    }
+
+    /**
+     * Runs the request over bars. Indicators whose outputs are all in memo are not recomputed;
+     * the rest share one sweep and their outputs are offered to memo afterwards. An indicator
+     * whose window is longer than the series never warms up and is filled with NaN without
+     * building its streaming state, so a huge requested period allocates nothing beyond its output.
+     */
+    public static Result run(BarSeries bars, Request request, IndicatorGraph.Memo memo) {
+        int n = bars.size();
+        long fingerprint = memo != null ? bars.fingerprint() : 0;
+        Map<String, double[]> values = new HashMap<>();
+        List<Step> steps = new ArrayList<>();
+        List<double[][]> stepOutputs = new ArrayList<>();
+        List<double[][]> outputs = new ArrayList<>();
+        List<Spec> computed = new ArrayList<>();
+
+        for (Spec spec : request.specs) {
+            if (values.keySet().containsAll(spec.keys)) continue;
+            double[][] cached = memo != null ? lookup(memo, fingerprint, n, spec.keys) : null;
+            if (cached != null) {
+                for (int k = 0; k < spec.keys.size(); k++) values.putIfAbsent(spec.keys.get(k), cached[k]);
+                continue;
+            }
+            double[][] out = new double[spec.keys.size()][n];
+            if (spec.window > n) {
+                for (double[] o : out) Arrays.fill(o, Double.NaN);
+            } else {
+                steps.add(spec.factory.apply(null).step);
+                stepOutputs.add(out);
+            }
+            outputs.add(out);
+            computed.add(spec);
+        }
+
+        if (!steps.isEmpty()) {
+            Step[] stepArray = steps.toArray(new Step[0]);
+            double[][][] outArray = stepOutputs.toArray(new double[0][][]);
+            double[] high = bars.highColumn();
+            double[] low = bars.lowColumn();
+            double[] close = bars.closeColumn();
+            double[] volume = bars.volumeColumn();
+            double[] vwap = bars.vwapColumn();
+            int offset = bars.columnOffset();
+            for (int i = 0; i < n; i++) {
+                int j = offset + i;
+                double h = high[j], l = low[j], c = close[j], v = volume[j], w = vwap[j];
+                for (int s = 0; s < stepArray.length; s++) {
+                    stepArray[s].step(outArray[s], i, h, l, c, v, w);
+                }
+            }
+        }
+
+        for (int s = 0; s < computed.size(); s++) {
+            List<String> keys = computed.get(s).keys;
+            for (int k = 0; k < keys.size(); k++) {
+                if (values.putIfAbsent(keys.get(k), outputs.get(s)[k]) == null && memo != null) {
+                    memo.put(fingerprint, n, keys.get(k), outputs.get(s)[k]);
+                }
+            }
+        }
+        return new Result(values);
+    }
+
+    private static double[][] lookup(IndicatorGraph.Memo memo, long fingerprint, int n, List<String> keys) {
+        double[][] found = new double[keys.size()][];
+        for (int k = 0; k < keys.size(); k++) {
+            found[k] = memo.get(fingerprint, n, keys.get(k));
+            if (found[k] == null) return null;
+        }
+        return found;
+    }
+}
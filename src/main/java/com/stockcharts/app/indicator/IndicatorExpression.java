@@ -0,0 +1,254 @@
+package com.stockcharts.app.indicator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Indicator expression compiled to a graph of {@link IndicatorNode}s, e.g.
+ * "EMA(close,12)-EMA(close,26)", "SMA(high-low,14)/close" or "RSI(AAPL/SPY,14)".
+ *
+ * Grammar: + - * / with the usual precedence, unary minus, parentheses, numbers, the columns
+ * open, high, low, close, volume and vwap, the functions SMA(x,n), EMA(x,n), RSI(x,n), DPO(x,n),
+ * MAX(x,n), MIN(x,n), STDEV(x,n) and DIFF(x), and any other identifier as a ticker whose daily closes are aligned by date.
+ * close[TICKER] names a ticker explicitly, including one that shares a column's name (close[LOW]).
+ * Names are case-insensitive.
+ *
+ * Compilation happens once per distinct text (compiled plans are cached). The plan lists the
+ * distinct nodes in dependency order, so evaluation is one whole-array kernel call per node and
+ * shared sub-expressions are computed once.
+ */
+public final class IndicatorExpression {
+
+    private static final int CACHE_SIZE = 256;
+    private static final Map<String, IndicatorExpression> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IndicatorExpression> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final String text;
+    private final IndicatorNode root;
+    private final List<IndicatorNode> plan;
+    private final List<String> tickers;
+
+    private IndicatorExpression(String text, IndicatorNode root) {
+        this.text = text;
+        this.root = root;
+        Set<IndicatorNode> ordered = new LinkedHashSet<>();
+        order(root, ordered);
+        this.plan = List.copyOf(ordered);
+        Set<String> symbols = new TreeSet<>();
+        for (IndicatorNode node : plan) {
+            if (node.getOp() == IndicatorNode.Op.TICKER) symbols.add(node.getSymbol());
+        }
+        this.tickers = List.copyOf(symbols);
+    }
+
+    /**
+     * Parses and compiles text, or returns the cached compilation of the same text.
+     * Throws IllegalArgumentException describing the first syntax error.
+     */
+    public static IndicatorExpression compile(String text) {
+        String key = text.trim();
+        synchronized (CACHE) {
+            IndicatorExpression cached = CACHE.get(key);
+            if (cached != null) return cached;
+        }
+        IndicatorExpression compiled = new IndicatorExpression(key, new Parser(key).parse());
+        synchronized (CACHE) {
+            CACHE.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    public String getText() { return text; }
+    public IndicatorNode getRoot() { return root; }
+    public List<IndicatorNode> getPlan() { return plan; }
+
+    // Tickers referenced by the expression; their bars must be registered on the graph
+    public List<String> getTickers() { return tickers; }
+
+    // One value per bar of the graph's series, NaN where undefined; shared and read-only
+    public double[] evaluate(IndicatorGraph graph) {
+        for (IndicatorNode node : plan) {
+            if (!node.isSource()) graph.values(node);
+        }
+        return graph.values(root);
+    }
+
+    private static void order(IndicatorNode node, Set<IndicatorNode> ordered) {
+        if (ordered.contains(node)) return;
+        for (IndicatorNode input : node.getInputs()) order(input, ordered);
+        ordered.add(node);
+    }
+
+    private static final class Parser {
+        private static final List<String> FUNCTIONS = List.of("SMA", "EMA", "RSI", "DPO", "MAX", "MIN", "STDEV", "DIFF");
+
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        IndicatorNode parse() {
+            if (text.isEmpty()) throw error("empty expression");
+            IndicatorNode node = expression();
+            skipSpaces();
+            if (pos < text.length()) throw error("unexpected '" + text.charAt(pos) + "'");
+            return node;
+        }
+
+        private IndicatorNode expression() {
+            IndicatorNode node = term();
+            while (true) {
+                if (accept('+')) node = IndicatorNode.add(node, term());
+                else if (accept('-')) node = IndicatorNode.subtract(node, term());
+                else return node;
+            }
+        }
+
+        private IndicatorNode term() {
+            IndicatorNode node = unary();
+            while (true) {
+                if (accept('*')) node = IndicatorNode.multiply(node, unary());
+                else if (accept('/')) node = IndicatorNode.divide(node, unary());
+                else return node;
+            }
+        }
+
+        private IndicatorNode unary() {
+            if (accept('-')) return IndicatorNode.subtract(IndicatorNode.constant(0.0), unary());
+            return primary();
+        }
+
+        private IndicatorNode primary() {
+            skipSpaces();
+            if (pos >= text.length()) throw error("unexpected end of expression");
+            char c = text.charAt(pos);
+            if (accept('(')) {
+                IndicatorNode node = expression();
+                expect(')');
+                return node;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return IndicatorNode.constant(number());
+            }
+            if (Character.isLetter(c)) {
+                int nameAt = pos;
+                String name = identifier();
+                if (accept('(')) return function(name, nameAt);
+                if (name.equalsIgnoreCase("close") && accept('[')) return tickerCloses();
+                return switch (name.toLowerCase()) {
+                    case "open" -> IndicatorNode.OPEN;
+                    case "high" -> IndicatorNode.HIGH;
+                    case "low" -> IndicatorNode.LOW;
+                    case "close" -> IndicatorNode.CLOSE;
+                    case "volume" -> IndicatorNode.VOLUME;
+                    case "vwap" -> IndicatorNode.VWAP;
+                    default -> IndicatorNode.ticker(name);
+                };
+            }
+            throw error("unexpected '" + c + "'");
+        }
+
+        private IndicatorNode function(String name, int nameAt) {
+            String fn = name.toUpperCase();
+            if (!FUNCTIONS.contains(fn)) {
+                pos = nameAt;
+                throw error("unknown function " + name + " (supported: " + String.join(", ", FUNCTIONS) + ")");
+            }
+            IndicatorNode source = expression();
+            if (fn.equals("DIFF")) {
+                expect(')');
+                return IndicatorNode.diff(source);
+            }
+            expect(',');
+            skipSpaces();
+            int periodAt = pos;
+            double period = number();
+            if (period != Math.floor(period) || period < 1) {
+                pos = periodAt;
+                throw error("period must be a positive integer");
+            }
+            expect(')');
+            int n = (int) period;
+            return switch (fn) {
+                case "SMA" -> IndicatorNode.sma(source, n);
+                case "EMA" -> IndicatorNode.ema(source, n);
+                case "RSI" -> IndicatorNode.rsi(source, n);
+                case "DPO" -> IndicatorNode.dpo(source, n);
+                case "MAX" -> IndicatorNode.max(source, n);
+                case "MIN" -> IndicatorNode.min(source, n);
+                case "STDEV" -> IndicatorNode.stdDev(source, n);
+                default -> throw new IllegalStateException(fn);
+            };
+        }
+
+        // close[TICKER]: another ticker's closes, even one named like a column (close[LOW])
+        private IndicatorNode tickerCloses() {
+            skipSpaces();
+            int symbolAt = pos;
+            String symbol = pos < text.length() && Character.isLetterOrDigit(text.charAt(pos)) ? identifier() : "";
+            if (symbol.isEmpty()) {
+                pos = symbolAt;
+                throw error("expected a ticker after 'close['");
+            }
+            expect(']');
+            return IndicatorNode.ticker(symbol);
+        }
+
+        private double number() {
+            skipSpaces();
+            int start = pos;
+            while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) pos++;
+            try {
+                return Double.parseDouble(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("expected a number");
+            }
+        }
+
+        private String identifier() {
+            int start = pos;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (!Character.isLetterOrDigit(c) && c != '.' && c != '_') break;
+                pos++;
+            }
+            return text.substring(start, pos);
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw error(pos < text.length() ? "expected '" + c + "' but found '" + text.charAt(pos) + "'" : "expected '" + c + "'");
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid indicator expression '" + text + "' at position " + (pos + 1) + ": " + message);
+        }
+    }
+}
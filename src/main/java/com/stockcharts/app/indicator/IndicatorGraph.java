@@ -0,0 +1,152 @@
+package com.stockcharts.app.indicator;
+
+import com.stockcharts.app.model.BarSeries;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Evaluates indicator nodes over one bar series. Every node is computed at most once per graph,
+ * after its inputs, by one whole-array kernel call; results can also come from, and are offered
+ * to, a {@link Memo} shared across graphs and keyed by the series fingerprint. Nodes that read
+ * other tickers (registered with {@link #withTicker}) are never memoized across graphs, since the
+ * fingerprint only covers this graph's own bars.
+ *
+ * Returned arrays hold one value per bar (NaN during warm-up) and may be shared with other
+ * callers through the memo, so they must be treated as read-only.
+ */
+public final class IndicatorGraph {
+
+    // Cross-request store of computed node values
+    public interface Memo {
+        double[] get(long fingerprint, int size, String nodeKey);
+        void put(long fingerprint, int size, String nodeKey, double[] values);
+    }
+
+    private final BarSeries bars;
+    private final Memo memo;
+    private final Map<IndicatorNode, double[]> computed = new HashMap<>();
+    private final Map<String, double[]> tickerCloses = new HashMap<>();
+    private long fingerprint;
+    private boolean fingerprinted;
+
+    public IndicatorGraph(BarSeries bars) {
+        this(bars, null);
+    }
+
+    public IndicatorGraph(BarSeries bars, Memo memo) {
+        this.bars = bars;
+        this.memo = memo;
+    }
+
+    public BarSeries getBars() { return bars; }
+
+    /**
+     * Supplies the bars of a ticker referenced by TICKER nodes. Its closes are aligned to this
+     * graph's dates, carrying the last close forward over days it has no bar; days before its
+     * first bar are NaN.
+     */
+    public IndicatorGraph withTicker(String symbol, BarSeries tickerBars) {
+        int n = bars.size();
+        double[] aligned = new double[n];
+        double last = Double.NaN;
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            int day = bars.epochDay(i);
+            while (j < tickerBars.size() && tickerBars.epochDay(j) <= day) {
+                last = tickerBars.close(j++);
+            }
+            aligned[i] = last;
+        }
+        tickerCloses.put(symbol.trim().toUpperCase(), aligned);
+        return this;
+    }
+
+    public double[] values(IndicatorNode node) {
+        if (node.isSource()) {
+            return Arrays.copyOfRange(column(node), bars.columnOffset(), bars.columnOffset() + bars.size());
+        }
+        double[] values = computed.get(node);
+        if (values != null) return values;
+
+        boolean memoized = memo != null && !node.usesTickers();
+        if (memoized) {
+            values = memo.get(fingerprint(), bars.size(), node.getKey());
+        }
+        if (values == null) {
+            values = compute(node);
+            if (memoized) memo.put(fingerprint(), bars.size(), node.getKey(), values);
+        }
+        computed.put(node, values);
+        return values;
+    }
+
+    private double[] compute(IndicatorNode node) {
+        int n = bars.size();
+        double[] out = new double[n];
+        if (node.getOp() == IndicatorNode.Op.CONST) {
+            Arrays.fill(out, node.getConstant());
+            return out;
+        }
+        if (node.getOp() == IndicatorNode.Op.TICKER) {
+            double[] closes = tickerCloses.get(node.getSymbol());
+            if (closes == null) throw new IllegalStateException("No bars supplied for ticker " + node.getSymbol());
+            return closes;
+        }
+        IndicatorNode first = node.getInputs().get(0);
+        double[] in = input(first);
+        int from = inputOffset(first);
+        switch (node.getOp()) {
+            case DIFF -> IndicatorKernels.diff(in, from, n, out);
+            case SMA -> IndicatorKernels.sma(in, from, n, node.getPeriod(), out);
+            case EMA -> IndicatorKernels.ema(in, from, n, node.getPeriod(), out);
+            case RSI -> IndicatorKernels.rsiFromChanges(in, from, n, node.getPeriod(), out);
+            case MAX -> RollingWindow.max(in, from, n, node.getPeriod(), out);
+            case MIN -> RollingWindow.min(in, from, n, node.getPeriod(), out);
+            case STDEV -> RollingWindow.stdDev(in, from, n, node.getPeriod(), out);
+            case ADD, SUB, MUL, DIV -> {
+                IndicatorNode second = node.getInputs().get(1);
+                double[] in2 = input(second);
+                int from2 = inputOffset(second);
+                switch (node.getOp()) {
+                    case ADD -> IndicatorKernels.add(in, from, in2, from2, out, 0, n);
+                    case SUB -> IndicatorKernels.subtract(in, from, in2, from2, out, 0, n);
+                    case MUL -> IndicatorKernels.multiply(in, from, in2, from2, out, 0, n);
+                    default -> IndicatorKernels.divide(in, from, in2, from2, out, 0, n);
+                }
+            }
+            default -> throw new IllegalArgumentException("Not a derived node: " + node);
+        }
+        return out;
+    }
+
+    // Source columns are read in place; derived values start at index 0
+    private double[] input(IndicatorNode node) {
+        return node.isSource() ? column(node) : values(node);
+    }
+
+    private int inputOffset(IndicatorNode node) {
+        return node.isSource() ? bars.columnOffset() : 0;
+    }
+
+    private double[] column(IndicatorNode node) {
+        return switch (node.getOp()) {
+            case OPEN -> bars.openColumn();
+            case HIGH -> bars.highColumn();
+            case LOW -> bars.lowColumn();
+            case CLOSE -> bars.closeColumn();
+            case VOLUME -> bars.volumeColumn();
+            case VWAP -> bars.vwapColumn();
+            default -> throw new IllegalArgumentException("Not a source node: " + node);
+        };
+    }
+
+    private long fingerprint() {
+        if (!fingerprinted) {
+            fingerprint = bars.fingerprint();
+            fingerprinted = true;
+        }
+        return fingerprint;
+    }
+}
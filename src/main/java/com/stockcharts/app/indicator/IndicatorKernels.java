@@ -0,0 +1,221 @@
+package com.stockcharts.app.indicator;
+
+import com.stockcharts.app.config.Config;
+
+/**
+ * Allocation-free indicator kernels over primitive arrays.
+ *
+ * Every kernel reads n inputs starting at in[from] and writes exactly n outputs to out[0, n).
+ * Bars before the indicator is defined (the warm-up) are written as NaN, so out[i] always lines
+ * up with input bar i. Leading NaN inputs are treated as not yet available, which lets kernels be
+ * chained (e.g. an EMA over a MACD line). out must not alias in unless a kernel says otherwise.
+ */
+public final class IndicatorKernels {
+
+    // Null unless the Vector API kernels are built, enabled and linkable
+    private static final ElementwiseKernels VECTOR = loadVectorKernels();
+
+    private IndicatorKernels() {}
+
+    // True when element-wise kernels run on the Vector API (needs the vector build profile and
+    // --add-modules jdk.incubator.vector at runtime)
+    public static boolean isVectorized() {
+        return VECTOR != null;
+    }
+
+    public static void sma(double[] in, int from, int n, int period, double[] out) {
+        checkPeriod(period);
+        int start = firstDefined(in, from, n);
+        int ready = start + period - 1;
+        fillNaN(out, 0, Math.min(ready, n));
+        if (ready >= n) return;
+
+        double sum = 0.0;
+        for (int i = start; i < n; i++) {
+            sum += in[from + i];
+            if (i - start >= period) {
+                sum -= in[from + i - period];
+            }
+            if (i >= ready) {
+                out[i] = sum / period;
+            }
+        }
+    }
+
+    // EMA seeded with the SMA of its first period defined inputs
+    public static void ema(double[] in, int from, int n, int period, double[] out) {
+        checkPeriod(period);
+        int start = firstDefined(in, from, n);
+        int ready = start + period - 1;
+        fillNaN(out, 0, Math.min(ready, n));
+        if (ready >= n) return;
+
+        double sum = 0.0;
+        for (int i = start; i <= ready; i++) sum += in[from + i];
+        double prev = sum / period;
+        out[ready] = prev;
+
+        double k = 2.0 / (period + 1);
+        for (int i = ready + 1; i < n; i++) {
+            prev = (in[from + i] - prev) * k + prev;
+            out[i] = prev;
+        }
+    }
+
+    // Wilder RSI; the first value is at start + period, after period price changes
+    public static void rsi(double[] in, int from, int n, int period, double[] out) {
+        checkPeriod(period);
+        int start = firstDefined(in, from, n);
+        int ready = start + period;
+        fillNaN(out, 0, Math.min(ready, n));
+        if (ready >= n) return;
+
+        double gainSum = 0.0;
+        double lossSum = 0.0;
+        for (int i = start + 1; i <= ready; i++) {
+            double change = in[from + i] - in[from + i - 1];
+            if (change >= 0) gainSum += change; else lossSum -= change;
+        }
+        double avgGain = gainSum / period;
+        double avgLoss = lossSum / period;
+        out[ready] = rsiValue(avgGain, avgLoss);
+
+        for (int i = ready + 1; i < n; i++) {
+            double change = in[from + i] - in[from + i - 1];
+            double gain = Math.max(change, 0);
+            double loss = Math.max(-change, 0);
+            avgGain = ((avgGain * (period - 1)) + gain) / period;
+            avgLoss = ((avgLoss * (period - 1)) + loss) / period;
+            out[i] = rsiValue(avgGain, avgLoss);
+        }
+    }
+
+    // Wilder RSI over precomputed price changes (see diff); same values as rsi on the prices
+    public static void rsiFromChanges(double[] changes, int from, int n, int period, double[] out) {
+        checkPeriod(period);
+        int start = firstDefined(changes, from, n);
+        int ready = start + period - 1;
+        fillNaN(out, 0, Math.min(ready, n));
+        if (ready >= n) return;
+
+        double gainSum = 0.0;
+        double lossSum = 0.0;
+        for (int i = start; i <= ready; i++) {
+            double change = changes[from + i];
+            if (change >= 0) gainSum += change; else lossSum -= change;
+        }
+        double avgGain = gainSum / period;
+        double avgLoss = lossSum / period;
+        out[ready] = rsiValue(avgGain, avgLoss);
+
+        for (int i = ready + 1; i < n; i++) {
+            double change = changes[from + i];
+            double gain = Math.max(change, 0);
+            double loss = Math.max(-change, 0);
+            avgGain = ((avgGain * (period - 1)) + gain) / period;
+            avgLoss = ((avgLoss * (period - 1)) + loss) / period;
+            out[i] = rsiValue(avgGain, avgLoss);
+        }
+    }
+
+    // Change from the previous input; the first output is NaN
+    public static void diff(double[] in, int from, int n, double[] out) {
+        if (n == 0) return;
+        out[0] = Double.NaN;
+        subtract(in, from + 1, in, from, out, 1, n - 1);
+    }
+
+    // Price minus its SMA(period) on the same bar
+    public static void dpo(double[] in, int from, int n, int period, double[] out) {
+        sma(in, from, n, period, out);
+        subtract(in, from, out, 0, out, 0, n);
+    }
+
+    /**
+     * MACD line, signal line and histogram. The MACD line is defined once both EMAs are; the
+     * signal is an EMA over the defined part of the MACD line.
+     */
+    public static void macd(double[] in, int from, int n, int fast, int slow, int signal,
+                            double[] macdOut, double[] signalOut, double[] histogramOut) {
+        ema(in, from, n, fast, macdOut);
+        ema(in, from, n, slow, histogramOut);
+        subtract(macdOut, 0, histogramOut, 0, macdOut, 0, n);
+        ema(macdOut, 0, n, signal, signalOut);
+        subtract(macdOut, 0, signalOut, 0, histogramOut, 0, n);
+    }
+
+    // out[outFrom + i] = a[aFrom + i] - b[bFrom + i]; out may alias a or b at the same offset
+    public static void subtract(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n) {
+        if (VECTOR != null) {
+            VECTOR.subtract(a, aFrom, b, bFrom, out, outFrom, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            out[outFrom + i] = a[aFrom + i] - b[bFrom + i];
+        }
+    }
+
+    public static void add(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n) {
+        if (VECTOR != null) {
+            VECTOR.add(a, aFrom, b, bFrom, out, outFrom, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            out[outFrom + i] = a[aFrom + i] + b[bFrom + i];
+        }
+    }
+
+    public static void multiply(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n) {
+        if (VECTOR != null) {
+            VECTOR.multiply(a, aFrom, b, bFrom, out, outFrom, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            out[outFrom + i] = a[aFrom + i] * b[bFrom + i];
+        }
+    }
+
+    // Division by zero follows IEEE rules (infinity or NaN)
+    public static void divide(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n) {
+        if (VECTOR != null) {
+            VECTOR.divide(a, aFrom, b, bFrom, out, outFrom, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            out[outFrom + i] = a[aFrom + i] / b[bFrom + i];
+        }
+    }
+
+    // Index of the first non-NaN input relative to from, or n if there is none
+    public static int firstDefined(double[] in, int from, int n) {
+        int i = 0;
+        while (i < n && Double.isNaN(in[from + i])) i++;
+        return i;
+    }
+
+    private static double rsiValue(double avgGain, double avgLoss) {
+        return avgLoss == 0 ? 100.0 : (100.0 - (100.0 / (1.0 + avgGain / avgLoss)));
+    }
+
+    private static void fillNaN(double[] out, int from, int to) {
+        for (int i = from; i < to; i++) out[i] = Double.NaN;
+    }
+
+    private static void checkPeriod(int period) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+    }
+
+    private static ElementwiseKernels loadVectorKernels() {
+        if (!Config.getBooleanSetting("INDICATOR_VECTOR_ENABLED", true)) return null;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            ElementwiseKernels kernels = (ElementwiseKernels) Class.forName("com.stockcharts.app.indicator.VectorKernels")
+                .getDeclaredConstructor().newInstance();
+            kernels.subtract(new double[1], 0, new double[1], 0, new double[1], 0, 1);
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Built without the vector profile
+            return null;
+        }
+    }
+}
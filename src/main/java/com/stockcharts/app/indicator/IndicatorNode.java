@@ -0,0 +1,171 @@
+package com.stockcharts.app.indicator;
+
+import java.util.List;
+
+/**
+ * One node of an indicator computation graph: a bar column, a constant, another ticker's closes,
+ * or an operation over other nodes.
+ *
+ * Nodes are values: two nodes built the same way have the same canonical key (e.g.
+ * "ema(close,12)") and are equal, so sub-results shared between indicators (the EMAs inside a
+ * MACD, the SMA inside a DPO, close-to-close changes) are computed once per graph.
+ */
+public final class IndicatorNode {
+
+    public enum Op { OPEN, HIGH, LOW, CLOSE, VOLUME, VWAP, CONST, TICKER, DIFF, SMA, EMA, RSI, MAX, MIN, STDEV, ADD, SUB, MUL, DIV }
+
+    public static final IndicatorNode OPEN = new IndicatorNode(Op.OPEN, 0);
+    public static final IndicatorNode HIGH = new IndicatorNode(Op.HIGH, 0);
+    public static final IndicatorNode LOW = new IndicatorNode(Op.LOW, 0);
+    public static final IndicatorNode CLOSE = new IndicatorNode(Op.CLOSE, 0);
+    public static final IndicatorNode VOLUME = new IndicatorNode(Op.VOLUME, 0);
+    public static final IndicatorNode VWAP = new IndicatorNode(Op.VWAP, 0);
+
+    private final Op op;
+    private final int period;
+    private final List<IndicatorNode> inputs;
+    private final String key;
+    private final double constant;
+    private final String symbol;
+    private final boolean usesTickers;
+
+    private IndicatorNode(Op op, int period, IndicatorNode... inputs) {
+        this(op, period, null, 0.0, null, inputs);
+    }
+
+    private IndicatorNode(Op op, int period, String key, double constant, String symbol, IndicatorNode... inputs) {
+        this.op = op;
+        this.period = period;
+        this.inputs = List.of(inputs);
+        this.constant = constant;
+        this.symbol = symbol;
+        boolean tickers = op == Op.TICKER;
+        for (IndicatorNode input : inputs) tickers |= input.usesTickers;
+        this.usesTickers = tickers;
+        this.key = key != null ? key : buildKey(op, period, inputs);
+    }
+
+    private static String buildKey(Op op, int period, IndicatorNode[] inputs) {
+        StringBuilder sb = new StringBuilder(op.name().toLowerCase());
+        if (inputs.length > 0 || period > 0) {
+            sb.append('(');
+            for (int i = 0; i < inputs.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(inputs[i].key);
+            }
+            if (period > 0) sb.append(inputs.length > 0 ? "," : "").append(period);
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    public static IndicatorNode constant(double value) {
+        return new IndicatorNode(Op.CONST, 0, Double.toString(value), value, null);
+    }
+
+    // Daily closes of another ticker, aligned to the graph's bars by date
+    public static IndicatorNode ticker(String symbol) {
+        String normalized = symbol.trim().toUpperCase();
+        return new IndicatorNode(Op.TICKER, 0, "close[" + normalized + "]", 0.0, normalized);
+    }
+
+    public static IndicatorNode diff(IndicatorNode source) {
+        return new IndicatorNode(Op.DIFF, 0, source);
+    }
+
+    public static IndicatorNode sma(IndicatorNode source, int period) {
+        return new IndicatorNode(Op.SMA, checkPeriod(period), source);
+    }
+
+    public static IndicatorNode ema(IndicatorNode source, int period) {
+        return new IndicatorNode(Op.EMA, checkPeriod(period), source);
+    }
+
+    // Wilder RSI, computed from the close-to-close changes of source
+    public static IndicatorNode rsi(IndicatorNode source, int period) {
+        return new IndicatorNode(Op.RSI, checkPeriod(period), diff(source));
+    }
+
+    // Highest / lowest value of the last period bars (e.g. a Donchian channel over high and low)
+    public static IndicatorNode max(IndicatorNode source, int period) {
+        return new IndicatorNode(Op.MAX, checkPeriod(period), source);
+    }
+
+    public static IndicatorNode min(IndicatorNode source, int period) {
+        return new IndicatorNode(Op.MIN, checkPeriod(period), source);
+    }
+
+    // Population standard deviation of the last period bars, as in Bollinger bands
+    public static IndicatorNode stdDev(IndicatorNode source, int period) {
+        return new IndicatorNode(Op.STDEV, checkPeriod(period), source);
+    }
+
+    public static IndicatorNode add(IndicatorNode a, IndicatorNode b) {
+        return new IndicatorNode(Op.ADD, 0, a, b);
+    }
+
+    public static IndicatorNode subtract(IndicatorNode a, IndicatorNode b) {
+        return new IndicatorNode(Op.SUB, 0, a, b);
+    }
+
+    public static IndicatorNode multiply(IndicatorNode a, IndicatorNode b) {
+        return new IndicatorNode(Op.MUL, 0, a, b);
+    }
+
+    public static IndicatorNode divide(IndicatorNode a, IndicatorNode b) {
+        return new IndicatorNode(Op.DIV, 0, a, b);
+    }
+
+    public static IndicatorNode dpo(IndicatorNode source, int period) {
+        return subtract(source, sma(source, period));
+    }
+
+    public static IndicatorNode macdLine(IndicatorNode source, int fast, int slow) {
+        return subtract(ema(source, fast), ema(source, slow));
+    }
+
+    public static IndicatorNode macdSignal(IndicatorNode source, int fast, int slow, int signal) {
+        return ema(macdLine(source, fast, slow), signal);
+    }
+
+    public static IndicatorNode macdHistogram(IndicatorNode source, int fast, int slow, int signal) {
+        return subtract(macdLine(source, fast, slow), macdSignal(source, fast, slow, signal));
+    }
+
+    public Op getOp() { return op; }
+    public int getPeriod() { return period; }
+    public List<IndicatorNode> getInputs() { return inputs; }
+    public String getKey() { return key; }
+    public double getConstant() { return constant; }
+    public String getSymbol() { return symbol; }
+
+    // Bar columns of the graph's own series; constants and tickers are leaves but not sources
+    public boolean isSource() {
+        return inputs.isEmpty() && op != Op.CONST && op != Op.TICKER;
+    }
+
+    // True when the value depends on another ticker's bars, which the series fingerprint does not cover
+    public boolean usesTickers() {
+        return usesTickers;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof IndicatorNode && key.equals(((IndicatorNode) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    private static int checkPeriod(int period) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+        return period;
+    }
+}
@@ -0,0 +1,182 @@
+package com.stockcharts.app.indicator;
+
+import java.util.Arrays;
+
+/**
+ * Range maximum (or minimum) index over a series of values: built in O(n), then the extreme of
+ * any inclusive range [from, to] is answered in O(1). Values can be appended one at a time in
+ * O(1) amortized, so the index can follow a growing series without being rebuilt.
+ *
+ * The values are split into blocks of 32. Each block stores running extremes from its start
+ * (prefix) and to its end (suffix), and a sparse table over the block extremes answers any run of
+ * whole blocks with two overlapping power-of-two lookups. A range spanning several blocks is then
+ * suffix + whole blocks + prefix; a range inside one block is scanned directly (at most 32 values).
+ * This keeps the sparse table's O(1) query with O(n) memory, so long intraday series stay small.
+ * Appending a value touches its block's suffixes and one table entry per level.
+ */
+public final class RangeExtremes {
+
+    private static final int BLOCK_BITS = 5;
+    private static final int BLOCK = 1 << BLOCK_BITS;
+
+    private final boolean max;
+    private double[] values;
+    private int n;
+    private double[] prefix;
+    private double[] suffix;
+    // table[k][b] = extreme of blocks [b, b + 2^k)
+    private double[][] table;
+
+    private RangeExtremes(double[] values, int from, int n, boolean max) {
+        this.max = max;
+        this.values = Arrays.copyOfRange(values, from, from + Math.max(n, BLOCK));
+        this.prefix = new double[this.values.length];
+        this.suffix = new double[this.values.length];
+        this.table = new double[levels(blocks(this.values.length))][blocks(this.values.length)];
+        this.n = n;
+        int blocks = blocks(n);
+        for (int b = 0; b < blocks; b++) {
+            int start = b << BLOCK_BITS;
+            int end = Math.min(n, start + BLOCK);
+            double running = this.values[start];
+            for (int i = start; i < end; i++) {
+                running = better(running, this.values[i]);
+                prefix[i] = running;
+            }
+            table[0][b] = prefix[end - 1];
+            fillSuffix(start, end);
+        }
+        for (int k = 1; k < table.length; k++) {
+            int half = 1 << (k - 1);
+            for (int b = 0; b + 2 * half <= blocks; b++) {
+                table[k][b] = better(table[k - 1][b], table[k - 1][b + half]);
+            }
+        }
+    }
+
+    // Index over values[from, from + n) answering range maxima
+    public static RangeExtremes max(double[] values, int from, int n) {
+        return new RangeExtremes(values, from, n, true);
+    }
+
+    // Index over values[from, from + n) answering range minima
+    public static RangeExtremes min(double[] values, int from, int n) {
+        return new RangeExtremes(values, from, n, false);
+    }
+
+    // Empty range maximum index, filled by append
+    public static RangeExtremes max() {
+        return max(new double[0], 0, 0);
+    }
+
+    // Empty range minimum index, filled by append
+    public static RangeExtremes min() {
+        return min(new double[0], 0, 0);
+    }
+
+    // Adds the value at position size()
+    public void append(double value) {
+        if (n == values.length) grow();
+        int i = n++;
+        values[i] = value;
+        int start = (i >>> BLOCK_BITS) << BLOCK_BITS;
+        prefix[i] = i == start ? value : better(prefix[i - 1], value);
+        fillSuffix(start, i + 1);
+
+        // The last block's extreme changed: refresh the one entry per level that ends at it
+        int block = i >>> BLOCK_BITS;
+        table[0][block] = prefix[i];
+        for (int k = 1; k < table.length; k++) {
+            int half = 1 << (k - 1);
+            int b = block - 2 * half + 1;
+            if (b < 0) break;
+            table[k][b] = better(table[k - 1][b], table[k - 1][b + half]);
+        }
+    }
+
+    // Extreme of positions [start, end], both inclusive
+    public double query(int start, int end) {
+        if (start < 0 || end >= n || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + "] outside [0, " + n + ")");
+        }
+        int first = start >>> BLOCK_BITS;
+        int last = end >>> BLOCK_BITS;
+        if (first == last) {
+            double result = values[start];
+            for (int i = start + 1; i <= end; i++) result = better(result, values[i]);
+            return result;
+        }
+        double result = better(suffix[start], prefix[end]);
+        if (last - first > 1) {
+            int lo = first + 1;
+            int k = 31 - Integer.numberOfLeadingZeros(last - lo);
+            result = better(result, better(table[k][lo], table[k][last - (1 << k)]));
+        }
+        return result;
+    }
+
+    /**
+     * First position at or after start whose value is strictly beyond threshold (above it for a
+     * max index, below it for a min index), or -1 if none: an O(1) check of the whole suffix, then
+     * a galloping and binary search over range queries, O(log n).
+     */
+    public int firstBeyond(int start, double threshold) {
+        if (start >= n || !beyond(query(start, n - 1), threshold)) return -1;
+        // Smallest end with the extreme of [start, end] beyond threshold
+        int lo = start;
+        int hi = start;
+        int step = 1;
+        while (!beyond(query(start, hi), threshold)) {
+            lo = hi + 1;
+            hi = Math.min(n - 1, hi + step);
+            step <<= 1;
+        }
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (beyond(query(start, mid), threshold)) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    public int size() { return n; }
+
+    // Suffix extremes of positions [start, end) within one block
+    private void fillSuffix(int start, int end) {
+        double running = values[end - 1];
+        for (int i = end - 1; i >= start; i--) {
+            running = better(running, values[i]);
+            suffix[i] = running;
+        }
+    }
+
+    private void grow() {
+        int capacity = values.length * 2;
+        values = Arrays.copyOf(values, capacity);
+        prefix = Arrays.copyOf(prefix, capacity);
+        suffix = Arrays.copyOf(suffix, capacity);
+        int blocks = blocks(capacity);
+        double[][] grown = new double[levels(blocks)][];
+        for (int k = 0; k < grown.length; k++) {
+            grown[k] = k < table.length ? Arrays.copyOf(table[k], blocks) : new double[blocks];
+        }
+        table = grown;
+    }
+
+    private static int blocks(int values) {
+        return (values + BLOCK - 1) >>> BLOCK_BITS;
+    }
+
+    // Levels needed so any run of up to blocks whole blocks has a power-of-two cover
+    private static int levels(int blocks) {
+        return blocks <= 1 ? 1 : 32 - Integer.numberOfLeadingZeros(blocks - 1) + 1;
+    }
+
+    private boolean beyond(double value, double threshold) {
+        return max ? value > threshold : value < threshold;
+    }
+
+    private double better(double a, double b) {
+        return max ? Math.max(a, b) : Math.min(a, b);
+    }
+}
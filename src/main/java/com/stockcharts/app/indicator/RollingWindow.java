@@ -0,0 +1,100 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Sliding-window statistics over primitive arrays, linear in the number of bars whatever the
+ * window length.
+ *
+ * Same layout as IndicatorKernels: reads n inputs starting at in[from], writes n outputs to
+ * out[0, n), where out[i] covers the period inputs ending at bar i. Outputs before the first full
+ * window of defined inputs are NaN, and leading NaN inputs count as not yet available.
+ *
+ * Minimum and maximum keep a monotonic deque of bar indexes (each bar is pushed and popped at
+ * most once, so O(1) amortized per bar). Mean and variance use Welford's add/replace
+ * recurrences, which avoid the cancellation of a running sum of squares.
+ */
+public final class RollingWindow {
+
+    private RollingWindow() {}
+
+    public static void max(double[] in, int from, int n, int period, double[] out) {
+        extreme(in, from, n, period, out, true);
+    }
+
+    public static void min(double[] in, int from, int n, int period, double[] out) {
+        extreme(in, from, n, period, out, false);
+    }
+
+    // Population variance of each window, as used by Bollinger bands
+    public static void variance(double[] in, int from, int n, int period, double[] out) {
+        checkPeriod(period);
+        int start = IndicatorKernels.firstDefined(in, from, n);
+        int ready = start + period - 1;
+        fillNaN(out, 0, Math.min(ready, n));
+        if (ready >= n) return;
+
+        double mean = 0.0;
+        double m2 = 0.0;
+        for (int i = start; i < n; i++) {
+            double x = in[from + i];
+            if (i - start >= period) {
+                double old = in[from + i - period];
+                double newMean = mean + (x - old) / period;
+                m2 += (x - old) * (x - newMean + old - mean);
+                mean = newMean;
+            } else {
+                double delta = x - mean;
+                mean += delta / (i - start + 1);
+                m2 += delta * (x - mean);
+            }
+            if (i >= ready) {
+                out[i] = Math.max(m2 / period, 0.0);
+            }
+        }
+    }
+
+    // Population standard deviation
+    public static void stdDev(double[] in, int from, int n, int period, double[] out) {
+        variance(in, from, n, period, out);
+        for (int i = 0; i < n; i++) out[i] = Math.sqrt(out[i]);
+    }
+
+    private static void extreme(double[] in, int from, int n, int period, double[] out, boolean max) {
+        checkPeriod(period);
+        int start = IndicatorKernels.firstDefined(in, from, n);
+        int ready = start + period - 1;
+        fillNaN(out, 0, Math.min(ready, n));
+        if (ready >= n) return;
+
+        // Ring buffer of indexes whose values decrease (max) or increase (min) from head to tail
+        int[] queue = new int[period];
+        int head = 0;
+        int size = 0;
+        for (int i = start; i < n; i++) {
+            if (size > 0 && queue[head] <= i - period) {
+                head = head + 1 == period ? 0 : head + 1;
+                size--;
+            }
+            double x = in[from + i];
+            while (size > 0) {
+                int last = head + size - 1;
+                double tail = in[from + queue[last >= period ? last - period : last]];
+                if (max ? tail > x : tail < x) break;
+                size--;
+            }
+            int slot = head + size;
+            queue[slot >= period ? slot - period : slot] = i;
+            size++;
+            if (i >= ready) {
+                out[i] = in[from + queue[head]];
+            }
+        }
+    }
+
+    private static void fillNaN(double[] out, int from, int to) {
+        for (int i = from; i < to; i++) out[i] = Double.NaN;
+    }
+
+    private static void checkPeriod(int period) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+    }
+}
@@ -0,0 +1,56 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Average true range with Wilder smoothing. The first bar's true range is its high - low; the
+ * first ATR is the mean of the first period true ranges. Takes whole bars rather than one input.
+ * Checkpoint layout: [period, count, previousClose, trSum, value].
+ */
+public final class StreamingAtr {
+
+    private final int period;
+    private long count;
+    private double previousClose;
+    private double trSum;
+    private double value = Double.NaN;
+
+    public StreamingAtr(int period) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+        this.period = period;
+    }
+
+    public static StreamingAtr restore(double[] checkpoint) {
+        if (checkpoint.length != 5) throw new IllegalArgumentException("Not an ATR checkpoint");
+        StreamingAtr atr = new StreamingAtr((int) checkpoint[0]);
+        atr.count = (long) checkpoint[1];
+        atr.previousClose = checkpoint[2];
+        atr.trSum = checkpoint[3];
+        atr.value = checkpoint[4];
+        return atr;
+    }
+
+    public double update(double high, double low, double close) {
+        double trueRange = high - low;
+        if (count > 0) {
+            trueRange = Math.max(trueRange, Math.max(Math.abs(high - previousClose), Math.abs(low - previousClose)));
+        }
+        count++;
+        if (count < period) {
+            trSum += trueRange;
+        } else if (count == period) {
+            trSum += trueRange;
+            value = trSum / period;
+        } else {
+            value = (value * (period - 1) + trueRange) / period;
+        }
+        previousClose = close;
+        return value;
+    }
+
+    public double value() { return value; }
+
+    public long count() { return count; }
+
+    public double[] checkpoint() {
+        return new double[] {period, count, previousClose, trSum, value};
+    }
+}
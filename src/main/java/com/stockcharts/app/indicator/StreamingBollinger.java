@@ -0,0 +1,89 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Bollinger bands: SMA(period) middle line plus and minus k population standard deviations of
+ * the same window. The variance is updated in O(1) with Welford's add/replace recurrences, which
+ * avoids the cancellation of a running sum of squares. The middle line matches StreamingSma.
+ * Checkpoint layout: [period, k, count, sum, mean, m2, window[0..period)].
+ */
+public final class StreamingBollinger implements StreamingIndicator {
+
+    private static final int HEADER = 6;
+
+    private final int period;
+    private final double k;
+    private final double[] window;
+    private long count;
+    private double sum;
+    private double mean;
+    private double m2;
+
+    public StreamingBollinger(int period, double k) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+        this.period = period;
+        this.k = k;
+        this.window = new double[period];
+    }
+
+    public static StreamingBollinger restore(double[] checkpoint) {
+        StreamingBollinger bands = new StreamingBollinger((int) checkpoint[0], checkpoint[1]);
+        if (checkpoint.length != HEADER + bands.period) throw new IllegalArgumentException("Not a Bollinger checkpoint");
+        bands.count = (long) checkpoint[2];
+        bands.sum = checkpoint[3];
+        bands.mean = checkpoint[4];
+        bands.m2 = checkpoint[5];
+        System.arraycopy(checkpoint, HEADER, bands.window, 0, bands.period);
+        return bands;
+    }
+
+    // Returns the middle line
+    @Override
+    public double update(double input) {
+        if (count == 0 && Double.isNaN(input)) return Double.NaN;
+        int slot = (int) (count % period);
+        sum += input;
+        if (count >= period) {
+            double old = window[slot];
+            sum -= old;
+            double newMean = mean + (input - old) / period;
+            m2 += (input - old) * (input - newMean + old - mean);
+            mean = newMean;
+        } else {
+            double delta = input - mean;
+            mean += delta / (count + 1);
+            m2 += delta * (input - mean);
+        }
+        window[slot] = input;
+        count++;
+        return value();
+    }
+
+    @Override
+    public double value() {
+        return count >= period ? sum / period : Double.NaN;
+    }
+
+    public double stdDev() {
+        return count >= period ? Math.sqrt(Math.max(m2 / period, 0.0)) : Double.NaN;
+    }
+
+    public double upper() { return value() + k * stdDev(); }
+
+    public double lower() { return value() - k * stdDev(); }
+
+    @Override
+    public long count() { return count; }
+
+    @Override
+    public double[] checkpoint() {
+        double[] state = new double[HEADER + period];
+        state[0] = period;
+        state[1] = k;
+        state[2] = count;
+        state[3] = sum;
+        state[4] = mean;
+        state[5] = m2;
+        System.arraycopy(window, 0, state, HEADER, period);
+        return state;
+    }
+}
@@ -0,0 +1,52 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Price minus its SMA(period) on the same bar.
+ * Checkpoint layout: [last input, SMA checkpoint...].
+ */
+public final class StreamingDpo implements StreamingIndicator {
+
+    private final StreamingSma sma;
+    private double last = Double.NaN;
+
+    public StreamingDpo(int period) {
+        this(new StreamingSma(period));
+    }
+
+    private StreamingDpo(StreamingSma sma) {
+        this.sma = sma;
+    }
+
+    public static StreamingDpo restore(double[] checkpoint) {
+        double[] smaState = new double[checkpoint.length - 1];
+        System.arraycopy(checkpoint, 1, smaState, 0, smaState.length);
+        StreamingDpo dpo = new StreamingDpo(StreamingSma.restore(smaState));
+        dpo.last = checkpoint[0];
+        return dpo;
+    }
+
+    @Override
+    public double update(double input) {
+        if (sma.count() == 0 && Double.isNaN(input)) return Double.NaN;
+        last = input;
+        sma.update(input);
+        return value();
+    }
+
+    @Override
+    public double value() { return last - sma.value(); }
+
+    @Override
+    public long count() { return sma.count(); }
+
+    public int getPeriod() { return sma.getPeriod(); }
+
+    @Override
+    public double[] checkpoint() {
+        double[] smaState = sma.checkpoint();
+        double[] state = new double[smaState.length + 1];
+        state[0] = last;
+        System.arraycopy(smaState, 0, state, 1, smaState.length);
+        return state;
+    }
+}
@@ -0,0 +1,57 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Exponential moving average seeded with the SMA of its first period inputs.
+ * Checkpoint layout: [period, count, seedSum, value].
+ */
+public final class StreamingEma implements StreamingIndicator {
+
+    private final int period;
+    private final double k;
+    private long count;
+    private double seedSum;
+    private double value = Double.NaN;
+
+    public StreamingEma(int period) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+        this.period = period;
+        this.k = 2.0 / (period + 1);
+    }
+
+    public static StreamingEma restore(double[] checkpoint) {
+        if (checkpoint.length != 4) throw new IllegalArgumentException("Not an EMA checkpoint");
+        StreamingEma ema = new StreamingEma((int) checkpoint[0]);
+        ema.count = (long) checkpoint[1];
+        ema.seedSum = checkpoint[2];
+        ema.value = checkpoint[3];
+        return ema;
+    }
+
+    @Override
+    public double update(double input) {
+        if (count == 0 && Double.isNaN(input)) return value;
+        count++;
+        if (count < period) {
+            seedSum += input;
+        } else if (count == period) {
+            seedSum += input;
+            value = seedSum / period;
+        } else {
+            value = (input - value) * k + value;
+        }
+        return value;
+    }
+
+    @Override
+    public double value() { return value; }
+
+    @Override
+    public long count() { return count; }
+
+    public int getPeriod() { return period; }
+
+    @Override
+    public double[] checkpoint() {
+        return new double[] {period, count, seedSum, value};
+    }
+}
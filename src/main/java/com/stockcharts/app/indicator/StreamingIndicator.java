@@ -0,0 +1,29 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Indicator state that advances one input at a time in O(1).
+ *
+ * Values agree with the {@link IndicatorKernels} version of the same indicator, bar for bar:
+ * NaN during the warm-up, and leading NaN inputs are skipped. {@link #checkpoint()} captures the
+ * full state as a flat array; each implementation has a static restore method that resumes from
+ * it, so a long history only has to be replayed once.
+ */
+public interface StreamingIndicator {
+
+    // Consumes the next input and returns the indicator value for it (NaN until defined)
+    double update(double input);
+
+    // Value after the last input (NaN until defined)
+    double value();
+
+    // Inputs consumed, not counting leading NaNs
+    long count();
+
+    double[] checkpoint();
+
+    // Feeds in[from, from + n) and returns the value after the last one
+    default double updateAll(double[] in, int from, int n) {
+        for (int i = 0; i < n; i++) update(in[from + i]);
+        return value();
+    }
+}
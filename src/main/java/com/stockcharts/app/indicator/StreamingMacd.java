@@ -0,0 +1,64 @@
+package com.stockcharts.app.indicator;
+
+import java.util.Arrays;
+
+/**
+ * MACD from a fast and a slow EMA, with an EMA signal line over the MACD line.
+ * {@link #update} returns the MACD line; signal and histogram are read separately.
+ * Checkpoint layout: [fast EMA (4), slow EMA (4), signal EMA (4)].
+ */
+public final class StreamingMacd implements StreamingIndicator {
+
+    private static final int EMA_STATE = 4;
+
+    private final StreamingEma fast;
+    private final StreamingEma slow;
+    private final StreamingEma signal;
+    private double macd = Double.NaN;
+
+    public StreamingMacd(int fast, int slow, int signal) {
+        this(new StreamingEma(fast), new StreamingEma(slow), new StreamingEma(signal));
+    }
+
+    private StreamingMacd(StreamingEma fast, StreamingEma slow, StreamingEma signal) {
+        this.fast = fast;
+        this.slow = slow;
+        this.signal = signal;
+        this.macd = fast.value() - slow.value();
+    }
+
+    public static StreamingMacd restore(double[] checkpoint) {
+        if (checkpoint.length != 3 * EMA_STATE) throw new IllegalArgumentException("Not a MACD checkpoint");
+        return new StreamingMacd(
+            StreamingEma.restore(Arrays.copyOfRange(checkpoint, 0, EMA_STATE)),
+            StreamingEma.restore(Arrays.copyOfRange(checkpoint, EMA_STATE, 2 * EMA_STATE)),
+            StreamingEma.restore(Arrays.copyOfRange(checkpoint, 2 * EMA_STATE, 3 * EMA_STATE)));
+    }
+
+    @Override
+    public double update(double input) {
+        if (fast.count() == 0 && Double.isNaN(input)) return macd;
+        macd = fast.update(input) - slow.update(input);
+        signal.update(macd);
+        return macd;
+    }
+
+    @Override
+    public double value() { return macd; }
+
+    public double signal() { return signal.value(); }
+
+    public double histogram() { return macd - signal.value(); }
+
+    @Override
+    public long count() { return fast.count(); }
+
+    @Override
+    public double[] checkpoint() {
+        double[] state = new double[3 * EMA_STATE];
+        System.arraycopy(fast.checkpoint(), 0, state, 0, EMA_STATE);
+        System.arraycopy(slow.checkpoint(), 0, state, EMA_STATE, EMA_STATE);
+        System.arraycopy(signal.checkpoint(), 0, state, 2 * EMA_STATE, EMA_STATE);
+        return state;
+    }
+}
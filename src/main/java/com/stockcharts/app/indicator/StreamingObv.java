@@ -0,0 +1,42 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * On-balance volume: starts at 0 on the first bar, then adds the bar's volume on an up close and
+ * subtracts it on a down close. Checkpoint layout: [count, previousClose, value].
+ */
+public final class StreamingObv {
+
+    private long count;
+    private double previousClose;
+    private double value = Double.NaN;
+
+    public static StreamingObv restore(double[] checkpoint) {
+        if (checkpoint.length != 3) throw new IllegalArgumentException("Not an OBV checkpoint");
+        StreamingObv obv = new StreamingObv();
+        obv.count = (long) checkpoint[0];
+        obv.previousClose = checkpoint[1];
+        obv.value = checkpoint[2];
+        return obv;
+    }
+
+    public double update(double close, double volume) {
+        if (count == 0) {
+            value = 0.0;
+        } else if (close > previousClose) {
+            value += volume;
+        } else if (close < previousClose) {
+            value -= volume;
+        }
+        previousClose = close;
+        count++;
+        return value;
+    }
+
+    public double value() { return value; }
+
+    public long count() { return count; }
+
+    public double[] checkpoint() {
+        return new double[] {count, previousClose, value};
+    }
+}
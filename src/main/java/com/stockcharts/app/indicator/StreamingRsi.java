@@ -0,0 +1,72 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Wilder RSI. The first value comes after period price changes, i.e. on input period + 1.
+ * Checkpoint layout: [period, count, previous, gainSum, lossSum, avgGain, avgLoss].
+ */
+public final class StreamingRsi implements StreamingIndicator {
+
+    private final int period;
+    private long count;
+    private double previous;
+    private double gainSum;
+    private double lossSum;
+    private double avgGain;
+    private double avgLoss;
+
+    public StreamingRsi(int period) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+        this.period = period;
+    }
+
+    public static StreamingRsi restore(double[] checkpoint) {
+        if (checkpoint.length != 7) throw new IllegalArgumentException("Not an RSI checkpoint");
+        StreamingRsi rsi = new StreamingRsi((int) checkpoint[0]);
+        rsi.count = (long) checkpoint[1];
+        rsi.previous = checkpoint[2];
+        rsi.gainSum = checkpoint[3];
+        rsi.lossSum = checkpoint[4];
+        rsi.avgGain = checkpoint[5];
+        rsi.avgLoss = checkpoint[6];
+        return rsi;
+    }
+
+    @Override
+    public double update(double input) {
+        if (count == 0 && Double.isNaN(input)) return Double.NaN;
+        count++;
+        if (count > 1) {
+            double change = input - previous;
+            if (count <= period + 1) {
+                if (change >= 0) gainSum += change; else lossSum -= change;
+                if (count == period + 1) {
+                    avgGain = gainSum / period;
+                    avgLoss = lossSum / period;
+                }
+            } else {
+                double gain = Math.max(change, 0);
+                double loss = Math.max(-change, 0);
+                avgGain = ((avgGain * (period - 1)) + gain) / period;
+                avgLoss = ((avgLoss * (period - 1)) + loss) / period;
+            }
+        }
+        previous = input;
+        return value();
+    }
+
+    @Override
+    public double value() {
+        if (count <= period) return Double.NaN;
+        return avgLoss == 0 ? 100.0 : (100.0 - (100.0 / (1.0 + avgGain / avgLoss)));
+    }
+
+    @Override
+    public long count() { return count; }
+
+    public int getPeriod() { return period; }
+
+    @Override
+    public double[] checkpoint() {
+        return new double[] {period, count, previous, gainSum, lossSum, avgGain, avgLoss};
+    }
+}
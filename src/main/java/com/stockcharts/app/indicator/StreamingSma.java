@@ -0,0 +1,64 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Simple moving average over a ring buffer of the last period inputs.
+ * Checkpoint layout: [period, count, sum, window[0..period)].
+ */
+public final class StreamingSma implements StreamingIndicator {
+
+    private final int period;
+    private final double[] window;
+    private long count;
+    private double sum;
+    private double value = Double.NaN;
+
+    public StreamingSma(int period) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+        this.period = period;
+        this.window = new double[period];
+    }
+
+    public static StreamingSma restore(double[] checkpoint) {
+        StreamingSma sma = new StreamingSma((int) checkpoint[0]);
+        if (checkpoint.length != 3 + sma.period) throw new IllegalArgumentException("Not an SMA checkpoint");
+        sma.count = (long) checkpoint[1];
+        sma.sum = checkpoint[2];
+        System.arraycopy(checkpoint, 3, sma.window, 0, sma.period);
+        sma.value = sma.count >= sma.period ? sma.sum / sma.period : Double.NaN;
+        return sma;
+    }
+
+    @Override
+    public double update(double input) {
+        if (count == 0 && Double.isNaN(input)) return value;
+        int slot = (int) (count % period);
+        sum += input;
+        if (count >= period) {
+            sum -= window[slot];
+        }
+        window[slot] = input;
+        count++;
+        if (count >= period) {
+            value = sum / period;
+        }
+        return value;
+    }
+
+    @Override
+    public double value() { return value; }
+
+    @Override
+    public long count() { return count; }
+
+    public int getPeriod() { return period; }
+
+    @Override
+    public double[] checkpoint() {
+        double[] state = new double[3 + period];
+        state[0] = period;
+        state[1] = count;
+        state[2] = sum;
+        System.arraycopy(window, 0, state, 3, period);
+        return state;
+    }
+}
@@ -0,0 +1,107 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Stochastic oscillator: %K = 100 * (close - lowest low) / (highest high - lowest low) over
+ * period bars, %D = SMA(dPeriod) of %K. Window extremes come from monotonic deques, so each bar
+ * is O(1) amortized. A flat window (high == low) gives %K = 50. Takes whole bars.
+ * Checkpoint layout: [period, count, %K, highs[0..period), lows[0..period), %D SMA checkpoint...].
+ */
+public final class StreamingStochastic {
+
+    private final int period;
+    private final double[] highs;
+    private final double[] lows;
+    // Bar indexes with decreasing highs / increasing lows; ring buffers of at most period entries
+    private final long[] maxQueue;
+    private final long[] minQueue;
+    private long maxHead, maxTail, minHead, minTail;
+    private long count;
+    private double k = Double.NaN;
+    private final StreamingSma d;
+
+    public StreamingStochastic(int period, int dPeriod) {
+        this(period, new StreamingSma(dPeriod));
+    }
+
+    private StreamingStochastic(int period, StreamingSma d) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+        this.period = period;
+        this.highs = new double[period];
+        this.lows = new double[period];
+        this.maxQueue = new long[period];
+        this.minQueue = new long[period];
+        this.d = d;
+    }
+
+    public static StreamingStochastic restore(double[] checkpoint) {
+        int period = (int) checkpoint[0];
+        int smaFrom = 3 + 2 * period;
+        double[] smaState = new double[checkpoint.length - smaFrom];
+        System.arraycopy(checkpoint, smaFrom, smaState, 0, smaState.length);
+        StreamingStochastic stochastic = new StreamingStochastic(period, StreamingSma.restore(smaState));
+        long count = (long) checkpoint[1];
+        System.arraycopy(checkpoint, 3, stochastic.highs, 0, period);
+        System.arraycopy(checkpoint, 3 + period, stochastic.lows, 0, period);
+        // Rebuild the deques from the stored window
+        for (long i = Math.max(0, count - period); i < count; i++) {
+            int slot = (int) (i % period);
+            stochastic.pushMax(i, stochastic.highs[slot]);
+            stochastic.pushMin(i, stochastic.lows[slot]);
+        }
+        stochastic.count = count;
+        stochastic.k = checkpoint[2];
+        return stochastic;
+    }
+
+    // Returns %K
+    public double update(double high, double low, double close) {
+        long i = count;
+        long expired = i - period;
+        if (maxHead < maxTail && maxQueue[(int) (maxHead % period)] <= expired) maxHead++;
+        if (minHead < minTail && minQueue[(int) (minHead % period)] <= expired) minHead++;
+        int slot = (int) (i % period);
+        highs[slot] = high;
+        lows[slot] = low;
+        pushMax(i, high);
+        pushMin(i, low);
+        count++;
+        k = count >= period ? percentK(close) : Double.NaN;
+        d.update(k);
+        return k;
+    }
+
+    public double value() { return k; }
+
+    public double d() { return d.value(); }
+
+    public long count() { return count; }
+
+    public double[] checkpoint() {
+        double[] smaState = d.checkpoint();
+        double[] state = new double[3 + 2 * period + smaState.length];
+        state[0] = period;
+        state[1] = count;
+        state[2] = k;
+        System.arraycopy(highs, 0, state, 3, period);
+        System.arraycopy(lows, 0, state, 3 + period, period);
+        System.arraycopy(smaState, 0, state, 3 + 2 * period, smaState.length);
+        return state;
+    }
+
+    private double percentK(double close) {
+        double highest = highs[(int) (maxQueue[(int) (maxHead % period)] % period)];
+        double lowest = lows[(int) (minQueue[(int) (minHead % period)] % period)];
+        double range = highest - lowest;
+        return range == 0 ? 50.0 : 100.0 * (close - lowest) / range;
+    }
+
+    private void pushMax(long i, double high) {
+        while (maxHead < maxTail && highs[(int) (maxQueue[(int) ((maxTail - 1) % period)] % period)] <= high) maxTail--;
+        maxQueue[(int) (maxTail++ % period)] = i;
+    }
+
+    private void pushMin(long i, double low) {
+        while (minHead < minTail && lows[(int) (minQueue[(int) ((minTail - 1) % period)] % period)] >= low) minTail--;
+        minQueue[(int) (minTail++ % period)] = i;
+    }
+}
@@ -0,0 +1,40 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Cumulative volume-weighted average price anchored at the first bar. Each bar contributes its
+ * own VWAP when the source provided one, otherwise its typical price (high + low + close) / 3.
+ * NaN until some volume has traded. Checkpoint layout: [count, priceVolume, volume].
+ */
+public final class StreamingVwap {
+
+    private long count;
+    private double priceVolume;
+    private double volume;
+
+    public static StreamingVwap restore(double[] checkpoint) {
+        if (checkpoint.length != 3) throw new IllegalArgumentException("Not a VWAP checkpoint");
+        StreamingVwap vwap = new StreamingVwap();
+        vwap.count = (long) checkpoint[0];
+        vwap.priceVolume = checkpoint[1];
+        vwap.volume = checkpoint[2];
+        return vwap;
+    }
+
+    public double update(double high, double low, double close, double barVolume, double barVwap) {
+        double price = barVwap > 0 ? barVwap : (high + low + close) / 3;
+        priceVolume += price * barVolume;
+        volume += barVolume;
+        count++;
+        return value();
+    }
+
+    public double value() {
+        return volume > 0 ? priceVolume / volume : Double.NaN;
+    }
+
+    public long count() { return count; }
+
+    public double[] checkpoint() {
+        return new double[] {count, priceVolume, volume};
+    }
+}
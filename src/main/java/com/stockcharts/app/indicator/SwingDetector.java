@@ -0,0 +1,117 @@
+package com.stockcharts.app.indicator;
+
+/**
+ * Fractal swing points for one or more widths in a single pass over the bars. Bar c is a swing
+ * high of width w when its high is strictly above the highs of the w bars on each side (a
+ * 2w+1-bar fractal), and a swing low likewise on lows. A swing is only known once its w right-hand
+ * bars exist, so it is emitted to the listener on the update of bar c + w, in bar order per width
+ * (a high before a low on the same bar).
+ *
+ * Each width keeps a monotonic deque of the bar indexes in its 2w+1-bar window, so every bar is
+ * O(1) amortized per width and the cost does not grow with the fractal width. Equal values are
+ * kept in the deque: the window's head is then the earliest occurrence of its extreme, and the
+ * centre is a strict fractal exactly when it is the head and the entry after it is strictly
+ * lower (higher for lows).
+ */
+public final class SwingDetector {
+
+    @FunctionalInterface
+    public interface Listener {
+        void onSwing(int width, long index, boolean high, double price);
+    }
+
+    private final int[] widths;
+    private final Listener listener;
+    // Ring buffers are sized to powers of two so positions are masks rather than divisions
+    private final int mask;
+    private final double[] highs;
+    private final double[] lows;
+    // Per width: ring buffers of bar indexes with non-increasing highs / non-decreasing lows
+    private final long[][] maxQueues;
+    private final long[][] minQueues;
+    private final int[] queueMasks;
+    private final long[] maxHead, maxTail, minHead, minTail;
+    private long count;
+
+    public SwingDetector(Listener listener, int... widths) {
+        if (widths.length == 0) throw new IllegalArgumentException("At least one swing width is required");
+        int widest = 0;
+        for (int width : widths) {
+            if (width <= 0) throw new IllegalArgumentException("Swing width must be positive: " + width);
+            widest = Math.max(widest, width);
+        }
+        this.widths = widths.clone();
+        this.listener = listener;
+        this.mask = ringSize(2 * widest + 1) - 1;
+        this.highs = new double[mask + 1];
+        this.lows = new double[mask + 1];
+        this.maxQueues = new long[widths.length][];
+        this.minQueues = new long[widths.length][];
+        this.queueMasks = new int[widths.length];
+        for (int k = 0; k < widths.length; k++) {
+            int size = ringSize(2 * widths[k] + 1);
+            maxQueues[k] = new long[size];
+            minQueues[k] = new long[size];
+            queueMasks[k] = size - 1;
+        }
+        this.maxHead = new long[widths.length];
+        this.maxTail = new long[widths.length];
+        this.minHead = new long[widths.length];
+        this.minTail = new long[widths.length];
+    }
+
+    // Consumes the next bar and emits every swing it confirms
+    public void update(double high, double low) {
+        long i = count;
+        int slot = (int) (i & mask);
+        highs[slot] = high;
+        lows[slot] = low;
+        count++;
+        for (int k = 0; k < widths.length; k++) {
+            int width = widths[k];
+            long[] maxQueue = maxQueues[k];
+            long[] minQueue = minQueues[k];
+            int m = queueMasks[k];
+            long expired = i - (2L * width + 1);
+            if (maxHead[k] < maxTail[k] && maxQueue[(int) (maxHead[k] & m)] <= expired) maxHead[k]++;
+            if (minHead[k] < minTail[k] && minQueue[(int) (minHead[k] & m)] <= expired) minHead[k]++;
+            while (maxHead[k] < maxTail[k] && high(maxQueue[(int) ((maxTail[k] - 1) & m)]) < high) maxTail[k]--;
+            maxQueue[(int) (maxTail[k]++ & m)] = i;
+            while (minHead[k] < minTail[k] && low(minQueue[(int) ((minTail[k] - 1) & m)]) > low) minTail[k]--;
+            minQueue[(int) (minTail[k]++ & m)] = i;
+
+            long centre = i - width;
+            if (centre < width) continue;
+            if (maxQueue[(int) (maxHead[k] & m)] == centre) {
+                double price = high(centre);
+                if (maxTail[k] - maxHead[k] == 1 || high(maxQueue[(int) ((maxHead[k] + 1) & m)]) < price) {
+                    listener.onSwing(width, centre, true, price);
+                }
+            }
+            if (minQueue[(int) (minHead[k] & m)] == centre) {
+                double price = low(centre);
+                if (minTail[k] - minHead[k] == 1 || low(minQueue[(int) ((minHead[k] + 1) & m)]) > price) {
+                    listener.onSwing(width, centre, false, price);
+                }
+            }
+        }
+    }
+
+    // Feeds bars [from, from + n) of the columns
+    public void updateAll(double[] high, double[] low, int from, int n) {
+        for (int i = 0; i < n; i++) update(high[from + i], low[from + i]);
+    }
+
+    // Bars consumed
+    public long count() { return count; }
+
+    public int[] widths() { return widths.clone(); }
+
+    private double high(long index) { return highs[(int) (index & mask)]; }
+
+    private double low(long index) { return lows[(int) (index & mask)]; }
+
+    private static int ringSize(int entries) {
+        return Integer.highestOneBit(entries - 1) << 1;
+    }
+}
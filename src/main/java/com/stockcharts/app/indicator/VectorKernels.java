@@ -0,0 +1,56 @@
+package com.stockcharts.app.indicator;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the element-wise kernels. Compiled only in the vector Maven profile and
+ * loaded by name when jdk.incubator.vector is in the boot layer; see
+ * {@link IndicatorKernels#isVectorized()}.
+ */
+final class VectorKernels implements ElementwiseKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    VectorKernels() {}
+
+    @Override
+    public void add(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n) {
+        lanewise(VectorOperators.ADD, a, aFrom, b, bFrom, out, outFrom, n);
+    }
+
+    @Override
+    public void subtract(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n) {
+        lanewise(VectorOperators.SUB, a, aFrom, b, bFrom, out, outFrom, n);
+    }
+
+    @Override
+    public void multiply(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n) {
+        lanewise(VectorOperators.MUL, a, aFrom, b, bFrom, out, outFrom, n);
+    }
+
+    @Override
+    public void divide(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int n) {
+        lanewise(VectorOperators.DIV, a, aFrom, b, bFrom, out, outFrom, n);
+    }
+
+    private static void lanewise(VectorOperators.Binary op, double[] a, int aFrom, double[] b, int bFrom,
+                                 double[] out, int outFrom, int n) {
+        int upper = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aFrom + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bFrom + i);
+            va.lanewise(op, vb).intoArray(out, outFrom + i);
+        }
+        for (; i < n; i++) {
+            double x = a[aFrom + i];
+            double y = b[bFrom + i];
+            out[outFrom + i] = op == VectorOperators.ADD ? x + y
+                : op == VectorOperators.SUB ? x - y
+                : op == VectorOperators.MUL ? x * y
+                : x / y;
+        }
+    }
+}
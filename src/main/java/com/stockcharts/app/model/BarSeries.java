@@ -0,0 +1,325 @@
+package com.stockcharts.app.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable columnar series of daily-keyed bars. Dates are stored as epoch days; prices, volume,
+ * volume-weighted average price and trade count as parallel primitive arrays. VWAP and trade
+ * count are 0 when the source did not provide them.
+ *
+ * A series may be a window [offset, offset + size) over shared columns: slicing by date range
+ * is a binary search plus a new view, never a copy. Index i always means the i-th bar of this
+ * series.
+ */
+public final class BarSeries {
+
+    private static final BarSeries EMPTY = new BarSeries(new int[0], new double[0], new double[0], new double[0], new double[0]);
+
+    private final int[] epochDays;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] volume;
+    private final double[] vwap;
+    private final double[] trades;
+    private final int offset;
+    private final int size;
+
+    public BarSeries(int[] epochDays, double[] open, double[] high, double[] low, double[] close) {
+        this(epochDays, open, high, low, close, new double[epochDays.length]);
+    }
+
+    public BarSeries(int[] epochDays, double[] open, double[] high, double[] low, double[] close, double[] volume) {
+        this(epochDays, open, high, low, close, volume, new double[epochDays.length], new double[epochDays.length]);
+    }
+
+    public BarSeries(int[] epochDays, double[] open, double[] high, double[] low, double[] close, double[] volume,
+                     double[] vwap, double[] trades) {
+        int n = epochDays.length;
+        if (open.length != n || high.length != n || low.length != n || close.length != n || volume.length != n
+                || vwap.length != n || trades.length != n) {
+            throw new IllegalArgumentException("Column lengths differ");
+        }
+        this.epochDays = epochDays;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.vwap = vwap;
+        this.trades = trades;
+        this.offset = 0;
+        this.size = n;
+    }
+
+    private BarSeries(BarSeries base, int offset, int size) {
+        this.epochDays = base.epochDays;
+        this.open = base.open;
+        this.high = base.high;
+        this.low = base.low;
+        this.close = base.close;
+        this.volume = base.volume;
+        this.vwap = base.vwap;
+        this.trades = base.trades;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public static BarSeries empty() {
+        return EMPTY;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public int epochDay(int i) { return epochDays[offset + i]; }
+    public LocalDate date(int i) { return LocalDate.ofEpochDay(epochDays[offset + i]); }
+    public double open(int i) { return open[offset + i]; }
+    public double high(int i) { return high[offset + i]; }
+    public double low(int i) { return low[offset + i]; }
+    public double close(int i) { return close[offset + i]; }
+    public double volume(int i) { return volume[offset + i]; }
+    public double vwap(int i) { return vwap[offset + i]; }
+    public long trades(int i) { return (long) trades[offset + i]; }
+
+    public int firstEpochDay() { return epochDays[offset]; }
+    public int lastEpochDay() { return epochDays[offset + size - 1]; }
+
+    // Index of the first bar with epochDay >= day (size() if none)
+    public int lowerBound(int day) {
+        int lo = offset, hi = offset + size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochDays[mid] < day) lo = mid + 1; else hi = mid;
+        }
+        return lo - offset;
+    }
+
+    // Index of the bar on day, or -1
+    public int indexOf(int day) {
+        int i = lowerBound(day);
+        return i < size && epochDay(i) == day ? i : -1;
+    }
+
+    // Bars with fromDay <= epochDay <= toDay (inclusive), sharing this series' columns
+    public BarSeries between(int fromDay, int toDay) {
+        if (toDay < fromDay) return slice(0, 0);
+        int start = lowerBound(fromDay);
+        int end = toDay == Integer.MAX_VALUE ? size : lowerBound(toDay + 1);
+        return slice(start, end);
+    }
+
+    // Bars [start, end) by index, sharing this series' columns
+    public BarSeries slice(int start, int end) {
+        if (start < 0 || end > size || start > end) {
+            throw new IndexOutOfBoundsException("Slice [" + start + ", " + end + ") of " + size + " bars");
+        }
+        if (start == 0 && end == size) return this;
+        if (start == end) return EMPTY;
+        return new BarSeries(this, offset + start, end - start);
+    }
+
+    // This series with the days in [fromDay, toDay] replaced by the bars of incoming
+    public BarSeries splice(BarSeries incoming, int fromDay, int toDay) {
+        Builder merged = new Builder(size() + incoming.size());
+        merged.addAll(between(Integer.MIN_VALUE, fromDay - 1));
+        merged.addAll(incoming.between(fromDay, toDay));
+        merged.addAll(between(toDay + 1, Integer.MAX_VALUE));
+        return merged.build();
+    }
+
+    public BarSeries first(int count) {
+        return slice(0, Math.max(0, Math.min(count, size)));
+    }
+
+    public BarSeries last(int count) {
+        return slice(size - Math.max(0, Math.min(count, size)), size);
+    }
+
+    // Backing columns for kernels that read in place: bar i is at column[columnOffset() + i].
+    // They are shared with every view of the same data and must not be written to.
+    public int columnOffset() { return offset; }
+    public double[] openColumn() { return open; }
+    public double[] highColumn() { return high; }
+    public double[] lowColumn() { return low; }
+    public double[] closeColumn() { return close; }
+    public double[] volumeColumn() { return volume; }
+    public double[] vwapColumn() { return vwap; }
+    public double[] tradesColumn() { return trades; }
+
+    // Copies of single columns, for kernels that work on plain arrays
+    public int[] epochDayArray() { return Arrays.copyOfRange(epochDays, offset, offset + size); }
+    public double[] openArray() { return Arrays.copyOfRange(open, offset, offset + size); }
+    public double[] highArray() { return Arrays.copyOfRange(high, offset, offset + size); }
+    public double[] lowArray() { return Arrays.copyOfRange(low, offset, offset + size); }
+    public double[] closeArray() { return Arrays.copyOfRange(close, offset, offset + size); }
+    public double[] volumeArray() { return Arrays.copyOfRange(volume, offset, offset + size); }
+    public double[] vwapArray() { return Arrays.copyOfRange(vwap, offset, offset + size); }
+    public double[] tradesArray() { return Arrays.copyOfRange(trades, offset, offset + size); }
+
+    // 64-bit content hash of every bar (date and all columns), for keying derived results
+    public long fingerprint() {
+        long h = 0x9E3779B97F4A7C15L ^ size;
+        for (int i = offset; i < offset + size; i++) {
+            h = mix(h ^ epochDays[i]);
+            h = mix(h ^ Double.doubleToLongBits(open[i]));
+            h = mix(h ^ Double.doubleToLongBits(high[i]));
+            h = mix(h ^ Double.doubleToLongBits(low[i]));
+            h = mix(h ^ Double.doubleToLongBits(close[i]));
+            h = mix(h ^ Double.doubleToLongBits(volume[i]));
+            h = mix(h ^ Double.doubleToLongBits(vwap[i]));
+            h = mix(h ^ Double.doubleToLongBits(trades[i]));
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Bar-by-bar ratio of two series, joined on date. Days missing from either side, or with a
+     * zero price in the denominator, are skipped. The ratio carries no volume.
+     */
+    public static BarSeries ratio(BarSeries numerator, BarSeries denominator) {
+        Builder ratio = new Builder(Math.min(numerator.size(), denominator.size()));
+        int j = 0;
+        for (int i = 0; i < numerator.size(); i++) {
+            int day = numerator.epochDay(i);
+            while (j < denominator.size() && denominator.epochDay(j) < day) j++;
+            if (j == denominator.size()) break;
+            if (denominator.epochDay(j) != day) continue;
+            if (denominator.open(j) == 0 || denominator.high(j) == 0 || denominator.low(j) == 0 || denominator.close(j) == 0) continue;
+            ratio.add(day,
+                numerator.open(i) / denominator.open(j),
+                numerator.high(i) / denominator.high(j),
+                numerator.low(i) / denominator.low(j),
+                numerator.close(i) / denominator.close(j));
+        }
+        return ratio.build();
+    }
+
+    public List<OhlcData> toOhlcData() {
+        List<OhlcData> list = new ArrayList<>(size());
+        double previousClose = 0.0;
+        for (int i = 0; i < size(); i++) {
+            double c = close(i);
+            // Percent return is current close / previous close, 1.0 for the first bar
+            double percentReturn = (i == 0 || previousClose == 0.0) ? 1.0 : c / previousClose;
+            list.add(new OhlcData(date(i), open(i), high(i), low(i), c, percentReturn, volume(i), vwap(i), trades(i)));
+            previousClose = c;
+        }
+        return list;
+    }
+
+    public static BarSeries fromOhlcData(List<OhlcData> data) {
+        if (data == null) return EMPTY;
+        Builder builder = new Builder(data.size());
+        for (OhlcData d : data) {
+            builder.add((int) d.getDate().toEpochDay(), d.getOpen(), d.getHigh(), d.getLow(), d.getClose(),
+                d.getVolume(), d.getVwap(), d.getTrades());
+        }
+        return builder.build();
+    }
+
+    public static class Builder {
+        private int[] epochDays;
+        private double[] open;
+        private double[] high;
+        private double[] low;
+        private double[] close;
+        private double[] volume;
+        private double[] vwap;
+        private double[] trades;
+        private int size;
+
+        public Builder() {
+            this(64);
+        }
+
+        public Builder(int initialCapacity) {
+            int capacity = Math.max(1, initialCapacity);
+            epochDays = new int[capacity];
+            open = new double[capacity];
+            high = new double[capacity];
+            low = new double[capacity];
+            close = new double[capacity];
+            volume = new double[capacity];
+            vwap = new double[capacity];
+            trades = new double[capacity];
+        }
+
+        public Builder add(int epochDay, double o, double h, double l, double c) {
+            return add(epochDay, o, h, l, c, 0.0);
+        }
+
+        public Builder add(int epochDay, double o, double h, double l, double c, double v) {
+            return add(epochDay, o, h, l, c, v, 0.0, 0);
+        }
+
+        public Builder add(int epochDay, double o, double h, double l, double c, double v, double vw, long n) {
+            if (size == epochDays.length) ensureCapacity(size + 1);
+            epochDays[size] = epochDay;
+            open[size] = o;
+            high[size] = h;
+            low[size] = l;
+            close[size] = c;
+            volume[size] = v;
+            vwap[size] = vw;
+            trades[size] = n;
+            size++;
+            return this;
+        }
+
+        public Builder addAll(BarSeries bars) {
+            int n = bars.size();
+            ensureCapacity(size + n);
+            System.arraycopy(bars.epochDays, bars.offset, epochDays, size, n);
+            System.arraycopy(bars.open, bars.offset, open, size, n);
+            System.arraycopy(bars.high, bars.offset, high, size, n);
+            System.arraycopy(bars.low, bars.offset, low, size, n);
+            System.arraycopy(bars.close, bars.offset, close, size, n);
+            System.arraycopy(bars.volume, bars.offset, volume, size, n);
+            System.arraycopy(bars.vwap, bars.offset, vwap, size, n);
+            System.arraycopy(bars.trades, bars.offset, trades, size, n);
+            size += n;
+            return this;
+        }
+
+        public int size() { return size; }
+
+        public int lastEpochDay() { return epochDays[size - 1]; }
+
+        public void ensureCapacity(int minCapacity) {
+            if (minCapacity <= epochDays.length) return;
+            int capacity = Math.max(minCapacity, epochDays.length * 2);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            open = Arrays.copyOf(open, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+            close = Arrays.copyOf(close, capacity);
+            volume = Arrays.copyOf(volume, capacity);
+            vwap = Arrays.copyOf(vwap, capacity);
+            trades = Arrays.copyOf(trades, capacity);
+        }
+
+        public BarSeries build() {
+            if (size == 0) return EMPTY;
+            return new BarSeries(
+                Arrays.copyOf(epochDays, size),
+                Arrays.copyOf(open, size),
+                Arrays.copyOf(high, size),
+                Arrays.copyOf(low, size),
+                Arrays.copyOf(close, size),
+                Arrays.copyOf(volume, size),
+                Arrays.copyOf(vwap, size),
+                Arrays.copyOf(trades, size));
+        }
+    }
+}
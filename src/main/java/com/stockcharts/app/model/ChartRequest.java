@@ -4,11 +4,14 @@ import java.util.List;
 
 public class ChartRequest {
     private String symbol;
+    // Identity of the bars across requests (symbol and period) for incremental indicators; null for ad-hoc data
+    private String series;
     private String chartType = "candlestick";
     private String period = "1D";
     private String startDate;
     private String endDate;
     private List<OhlcData> ohlcData;
+    private BarSeries bars;
     private List<LineData> lines;
     private String title = "Stock Chart";
     private int width = 800*5;
@@ -28,6 +31,17 @@ public class ChartRequest {
 
     public void setOhlcData(List<OhlcData> ohlcData) {
         this.ohlcData = ohlcData;
+        this.bars = null;
+    }
+
+    // Columnar bars; when unset, the bars are derived from ohlcData
+    public BarSeries getBars() {
+        if (bars == null && ohlcData != null) bars = BarSeries.fromOhlcData(ohlcData);
+        return bars;
+    }
+
+    public void setBars(BarSeries bars) {
+        this.bars = bars;
     }
 
     public List<LineData> getLines() {
@@ -70,6 +84,14 @@ public class ChartRequest {
         this.symbol = symbol;
     }
 
+    public String getSeries() {
+        return series;
+    }
+
+    public void setSeries(String series) {
+        this.series = series;
+    }
+
     public String getChartType() {
         return chartType;
     }
@@ -0,0 +1,87 @@
+package com.stockcharts.app.model;
+
+import java.time.LocalDate;
+
+/**
+ * One Dinapoli Fibonacci set between two swing anchors. Indices refer to the series the set was
+ * computed on; the inside levels are 23.6%, 38.2%, 50% and 61.8% of the anchor range.
+ */
+public class FibonacciRetracement {
+    public static final double[] INSIDE_RATIOS = {0.236, 0.382, 0.500, 0.618};
+
+    private int startIndex;
+    private int endIndex;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private double high;
+    private double low;
+    private boolean uptrend;
+    private boolean[] invalidatedLevels; // parallel to INSIDE_RATIOS
+    private LocalDate[] invalidationDates; // first bar breaking each inside level, null while intact
+
+    public FibonacciRetracement() {}
+
+    public FibonacciRetracement(int startIndex, int endIndex, LocalDate startDate, LocalDate endDate,
+                                double high, double low, boolean uptrend, boolean[] invalidatedLevels,
+                                LocalDate[] invalidationDates) {
+        this.startIndex = startIndex;
+        this.endIndex = endIndex;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.high = high;
+        this.low = low;
+        this.uptrend = uptrend;
+        this.invalidatedLevels = invalidatedLevels;
+        this.invalidationDates = invalidationDates;
+    }
+
+    // Price at a ratio of the anchor range, measured up from the low anchor
+    public double level(double ratio) {
+        return low + (high - low) * ratio;
+    }
+
+    // Whether the inside level closest to ratio has been broken since the second anchor
+    public boolean isInvalidated(double ratio) {
+        return invalidatedLevels[nearestLevel(ratio)];
+    }
+
+    // Date of the first bar that broke the inside level closest to ratio, or null if it holds
+    public LocalDate getInvalidationDate(double ratio) {
+        return invalidationDates != null ? invalidationDates[nearestLevel(ratio)] : null;
+    }
+
+    private static int nearestLevel(double ratio) {
+        int nearest = 0;
+        for (int i = 1; i < INSIDE_RATIOS.length; i++) {
+            if (Math.abs(INSIDE_RATIOS[i] - ratio) < Math.abs(INSIDE_RATIOS[nearest] - ratio)) nearest = i;
+        }
+        return nearest;
+    }
+
+    public int getStartIndex() { return startIndex; }
+    public void setStartIndex(int startIndex) { this.startIndex = startIndex; }
+
+    public int getEndIndex() { return endIndex; }
+    public void setEndIndex(int endIndex) { this.endIndex = endIndex; }
+
+    public LocalDate getStartDate() { return startDate; }
+    public void setStartDate(LocalDate startDate) { this.startDate = startDate; }
+
+    public LocalDate getEndDate() { return endDate; }
+    public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
+
+    public double getHigh() { return high; }
+    public void setHigh(double high) { this.high = high; }
+
+    public double getLow() { return low; }
+    public void setLow(double low) { this.low = low; }
+
+    public boolean isUptrend() { return uptrend; }
+    public void setUptrend(boolean uptrend) { this.uptrend = uptrend; }
+
+    public boolean[] getInvalidatedLevels() { return invalidatedLevels; }
+    public void setInvalidatedLevels(boolean[] invalidatedLevels) { this.invalidatedLevels = invalidatedLevels; }
+
+    public LocalDate[] getInvalidationDates() { return invalidationDates; }
+    public void setInvalidationDates(LocalDate[] invalidationDates) { this.invalidationDates = invalidationDates; }
+}
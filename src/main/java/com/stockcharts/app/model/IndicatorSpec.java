@@ -6,6 +6,7 @@ public class IndicatorSpec {
     private String type; // e.g., SMA, RSI, DPO, MACD
     private int period;  // e.g., 20, 14
     private Display display; // OVERLAY or PANEL
+    private String expression; // e.g., EMA(close,12)-EMA(close,26); null for the fixed types
 
     public IndicatorSpec() {}
 
@@ -15,6 +16,12 @@ public class IndicatorSpec {
         this.display = display;
     }
 
+    public IndicatorSpec(String expression, Display display) {
+        this.type = "EXPR";
+        this.expression = expression;
+        this.display = display;
+    }
+
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
 
@@ -23,5 +30,10 @@ public class IndicatorSpec {
 
     public Display getDisplay() { return display; }
     public void setDisplay(Display display) { this.display = display; }
+
+    public String getExpression() { return expression; }
+    public void setExpression(String expression) { this.expression = expression; }
+
+    public boolean isExpression() { return expression != null; }
 }
 
@@ -9,6 +9,9 @@ public class OhlcData {
     private double low;
     private double close;
     private double percentReturn; // Current day's close / previous day's close
+    private double volume;
+    private double vwap; // Volume-weighted average price, 0 when unknown
+    private long trades; // Number of trades, 0 when unknown
 
     public OhlcData() {}
 
@@ -30,6 +33,14 @@ public class OhlcData {
         this.percentReturn = percentReturn;
     }
 
+    public OhlcData(LocalDate date, double open, double high, double low, double close, double percentReturn,
+                    double volume, double vwap, long trades) {
+        this(date, open, high, low, close, percentReturn);
+        this.volume = volume;
+        this.vwap = vwap;
+        this.trades = trades;
+    }
+
     public LocalDate getDate() {
         return date;
     }
@@ -77,4 +88,28 @@ public class OhlcData {
     public void setPercentReturn(double percentReturn) {
         this.percentReturn = percentReturn;
     }
-}
\ No newline at end of file
+
+    public double getVolume() {
+        return volume;
+    }
+
+    public void setVolume(double volume) {
+        this.volume = volume;
+    }
+
+    public double getVwap() {
+        return vwap;
+    }
+
+    public void setVwap(double vwap) {
+        this.vwap = vwap;
+    }
+
+    public long getTrades() {
+        return trades;
+    }
+
+    public void setTrades(long trades) {
+        this.trades = trades;
+    }
+}
@@ -0,0 +1,94 @@
+package com.stockcharts.app.risk;
+
+import com.stockcharts.app.model.BarSeries;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Daily log returns of several tickers on one shared date axis, stored time-major
+ * (returns[t * count + k] is ticker k's return into day t + 1) so a pass over one day reads
+ * consecutive memory. Days a ticker has no bar carry its last close forward (a zero return).
+ * Tickers with bars on fewer than minCoverage of the axis days are dropped, and the axis starts
+ * at the latest first bar among the kept tickers so every kept ticker has a price throughout.
+ */
+public final class AlignedReturns {
+
+    private final List<String> tickers;
+    private final List<String> dropped;
+    private final int[] days;
+    private final double[] returns;
+
+    private AlignedReturns(List<String> tickers, List<String> dropped, int[] days, double[] returns) {
+        this.tickers = tickers;
+        this.dropped = dropped;
+        this.days = days;
+        this.returns = returns;
+    }
+
+    public static AlignedReturns align(List<String> tickers, List<BarSeries> series, double minCoverage) {
+        int total = 0;
+        for (BarSeries bars : series) total += bars.size();
+        int[] all = new int[total];
+        int at = 0;
+        for (BarSeries bars : series) {
+            for (int i = 0; i < bars.size(); i++) all[at++] = bars.epochDay(i);
+        }
+        int[] axis = distinctSorted(all);
+
+        List<Integer> kept = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        int start = Integer.MIN_VALUE;
+        for (int k = 0; k < series.size(); k++) {
+            BarSeries bars = series.get(k);
+            if (bars.size() >= 2 && bars.size() >= minCoverage * axis.length) {
+                kept.add(k);
+                start = Math.max(start, bars.firstEpochDay());
+            } else {
+                dropped.add(tickers.get(k));
+            }
+        }
+        int from = Math.max(0, Arrays.binarySearch(axis, start));
+        int[] days = Arrays.copyOfRange(axis, Math.min(from, axis.length), axis.length);
+
+        int count = kept.size();
+        int steps = Math.max(0, days.length - 1);
+        double[] returns = new double[steps * count];
+        List<String> keptTickers = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) {
+            int k = kept.get(c);
+            keptTickers.add(tickers.get(k));
+            BarSeries bars = series.get(k);
+            int j = 0;
+            double previous = Double.NaN;
+            for (int t = 0; t < days.length; t++) {
+                double close = previous;
+                while (j < bars.size() && bars.epochDay(j) <= days[t]) close = bars.close(j++);
+                if (t > 0) returns[(t - 1) * count + c] = Math.log(close / previous);
+                previous = close;
+            }
+        }
+        return new AlignedReturns(keptTickers, dropped, days, returns);
+    }
+
+    private static int[] distinctSorted(int[] values) {
+        Arrays.sort(values);
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) values[n++] = values[i];
+        }
+        return Arrays.copyOf(values, n);
+    }
+
+    public List<String> tickers() { return tickers; }
+    // Requested tickers left out for too little history
+    public List<String> dropped() { return dropped; }
+    public int count() { return tickers.size(); }
+    // Number of return steps (one less than the number of days)
+    public int steps() { return Math.max(0, days.length - 1); }
+    // Date whose close ends return step t
+    public LocalDate date(int t) { return LocalDate.ofEpochDay(days[t + 1]); }
+    public double[] returns() { return returns; }
+}
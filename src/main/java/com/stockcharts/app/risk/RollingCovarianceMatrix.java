@@ -0,0 +1,195 @@
+package com.stockcharts.app.risk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Rolling-window covariance and correlation of every pair of aligned return series. Each window
+ * step adds the entering day's products and subtracts the leaving day's, so a pair costs O(1) per
+ * step instead of O(window); the sums are recomputed exactly once per window length so rounding
+ * cannot accumulate. Pairs are processed in square tiles of the upper triangle, in parallel.
+ *
+ * Keeps the matrices of the last window and, for every step, the average correlation over the
+ * pairs defined in that window (a market-wide correlation regime series); pairs with a ticker
+ * that is flat over the window have no correlation and are left out of that step's average.
+ */
+public final class RollingCovarianceMatrix {
+
+    private static final int TILE = 32;
+
+    private final AlignedReturns returns;
+    private final int window;
+    private final double[] covariance;
+    private final double[] correlation;
+    private final double[] averageCorrelation;
+
+    private RollingCovarianceMatrix(AlignedReturns returns, int window, double[] covariance, double[] correlation,
+                                    double[] averageCorrelation) {
+        this.returns = returns;
+        this.window = window;
+        this.covariance = covariance;
+        this.correlation = correlation;
+        this.averageCorrelation = averageCorrelation;
+    }
+
+    public static RollingCovarianceMatrix compute(AlignedReturns returns, int window, ForkJoinPool pool) {
+        int n = returns.count();
+        int steps = returns.steps();
+        if (window < 2 || steps < window) {
+            throw new IllegalArgumentException("Need at least " + Math.max(2, window) + " aligned returns, have " + steps);
+        }
+        double[] x = returns.returns();
+        double[] mean = new double[steps * n];
+        double[] inverseDeviation = new double[steps * n];
+        rollingMoments(x, n, steps, window, mean, inverseDeviation);
+
+        List<int[]> tiles = new ArrayList<>();
+        for (int bi = 0; bi < n; bi += TILE) {
+            for (int bj = bi; bj < n; bj += TILE) tiles.add(new int[] {bi, bj});
+        }
+        double[] covariance = new double[n * n];
+        double[] correlation = new double[n * n];
+        // Per-step correlation sums in [0, steps), counts of defined pairs in [steps, 2 * steps)
+        double[] correlationSums = pool.submit(() -> tiles.parallelStream()
+                .map(tile -> tile(x, n, steps, window, tile[0], tile[1], mean, inverseDeviation, covariance, correlation))
+                .reduce(new double[2 * steps], RollingCovarianceMatrix::addInto))
+            .join();
+
+        double[] average = new double[steps];
+        for (int t = 0; t < steps; t++) {
+            double pairs = correlationSums[steps + t];
+            average[t] = t < window - 1 || pairs == 0 ? Double.NaN : correlationSums[t] / pairs;
+        }
+        return new RollingCovarianceMatrix(returns, window, covariance, correlation, average);
+    }
+
+    // Per-ticker window mean and 1 / standard deviation (0 when flat) ending at each step
+    private static void rollingMoments(double[] x, int n, int steps, int window, double[] mean, double[] inverseDeviation) {
+        double[] s = new double[n];
+        double[] q = new double[n];
+        for (int t = 0; t < steps; t++) {
+            if (t % window == 0 && t >= window) {
+                // Re-anchor: exact sums of the window ending at t - 1
+                Arrays.fill(s, 0);
+                Arrays.fill(q, 0);
+                for (int u = t - window + 1; u < t; u++) {
+                    for (int k = 0; k < n; k++) {
+                        double v = x[u * n + k];
+                        s[k] += v;
+                        q[k] += v * v;
+                    }
+                }
+                for (int k = 0; k < n; k++) {
+                    double v = x[t * n + k];
+                    s[k] += v;
+                    q[k] += v * v;
+                }
+            } else {
+                for (int k = 0; k < n; k++) {
+                    double v = x[t * n + k];
+                    s[k] += v;
+                    q[k] += v * v;
+                    if (t >= window) {
+                        double old = x[(t - window) * n + k];
+                        s[k] -= old;
+                        q[k] -= old * old;
+                    }
+                }
+            }
+            for (int k = 0; k < n; k++) {
+                double m = s[k] / window;
+                double variance = (q[k] - s[k] * m) / (window - 1);
+                mean[t * n + k] = m;
+                inverseDeviation[t * n + k] = variance > 0 ? 1 / Math.sqrt(variance) : 0;
+            }
+        }
+    }
+
+    /**
+     * Rolls the cross sums of tickers [bi, bi + TILE) x [bj, bj + TILE) over all steps. Writes the
+     * last window's cells (both halves of the symmetric matrices; tiles own disjoint cells) and
+     * returns the per-step sum of correlations of the tile's distinct pairs, followed by the
+     * per-step number of those pairs whose correlation is defined (neither ticker flat).
+     */
+    private static double[] tile(double[] x, int n, int steps, int window, int bi, int bj,
+                                 double[] mean, double[] inverseDeviation, double[] covariance, double[] correlation) {
+        int ei = Math.min(n, bi + TILE);
+        int ej = Math.min(n, bj + TILE);
+        int width = ej - bj;
+        double[] cross = new double[(ei - bi) * width];
+        double[] correlationSums = new double[2 * steps];
+        double w = window;
+
+        for (int t = 0; t < steps; t++) {
+            int row = t * n;
+            if (t % window == 0 && t >= window) {
+                Arrays.fill(cross, 0);
+                for (int u = t - window + 1; u <= t; u++) addProducts(x, u * n, bi, ei, bj, ej, cross, 1.0);
+            } else {
+                addProducts(x, row, bi, ei, bj, ej, cross, 1.0);
+                if (t >= window) addProducts(x, (t - window) * n, bi, ei, bj, ej, cross, -1.0);
+            }
+            if (t < window - 1) continue;
+
+            boolean last = t == steps - 1;
+            double total = 0;
+            int defined = 0;
+            for (int i = bi; i < ei; i++) {
+                double mi = mean[row + i] * w;
+                double di = inverseDeviation[row + i];
+                int base = (i - bi) * width - bj;
+                for (int j = Math.max(bj, bi == bj ? i : bj); j < ej; j++) {
+                    double cov = (cross[base + j] - mi * mean[row + j]) / (w - 1);
+                    double scale = di * inverseDeviation[row + j];
+                    if (i != j && scale > 0) {
+                        total += cov * scale;
+                        defined++;
+                    }
+                    if (last) {
+                        double corr = i == j ? 1.0 : scale > 0 ? cov * scale : Double.NaN;
+                        covariance[i * n + j] = cov;
+                        covariance[j * n + i] = cov;
+                        correlation[i * n + j] = corr;
+                        correlation[j * n + i] = corr;
+                    }
+                }
+            }
+            correlationSums[t] = total;
+            correlationSums[steps + t] = defined;
+        }
+        return correlationSums;
+    }
+
+    private static void addProducts(double[] x, int row, int bi, int ei, int bj, int ej, double[] cross, double sign) {
+        int width = ej - bj;
+        for (int i = bi; i < ei; i++) {
+            double xi = sign * x[row + i];
+            int base = (i - bi) * width - bj;
+            for (int j = bj; j < ej; j++) cross[base + j] += xi * x[row + j];
+        }
+    }
+
+    private static double[] addInto(double[] a, double[] b) {
+        double[] out = a.clone();
+        for (int t = 0; t < out.length; t++) out[t] += b[t];
+        return out;
+    }
+
+    public AlignedReturns getReturns() { return returns; }
+    public int getWindow() { return window; }
+
+    // Sample covariance of daily log returns over the last window
+    public double covariance(int i, int j) { return covariance[i * returns.count() + j]; }
+    public double correlation(int i, int j) { return correlation[i * returns.count() + j]; }
+
+    // Beta of ticker i against ticker j over the last window
+    public double beta(int i, int j) {
+        double variance = covariance(j, j);
+        return variance > 0 ? covariance(i, j) / variance : Double.NaN;
+    }
+
+    // Mean defined pairwise correlation of the window ending at each step; NaN during the first window or if none is defined
+    public double[] getAverageCorrelation() { return averageCorrelation; }
+}
@@ -0,0 +1,258 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.model.BarSeries;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory LRU/TTL cache of aggregate bars keyed by (ticker, multiplier, timespan, adjusted).
+ * Each entry remembers the day range it fully covers, so sub-range requests are answered by slicing.
+ * Concurrent identical misses share a single load. A load whose caller is interrupted or cancelled
+ * is not shared as a failure: the callers waiting on it load again, one of them as the new leader.
+ */
+@Service
+public class AggregateCache {
+
+    @FunctionalInterface
+    public interface Loader {
+        BarSeries load() throws IOException, InterruptedException;
+    }
+
+    private static class Key {
+        final String ticker;
+        final String multiplier;
+        final String timespan;
+        final boolean adjusted;
+
+        Key(String ticker, String multiplier, String timespan, boolean adjusted) {
+            this.ticker = ticker.trim().toUpperCase();
+            this.multiplier = multiplier;
+            this.timespan = timespan;
+            this.adjusted = adjusted;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return adjusted == k.adjusted && ticker.equals(k.ticker)
+                && multiplier.equals(k.multiplier) && timespan.equals(k.timespan);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ticker, multiplier, timespan, adjusted);
+        }
+    }
+
+    private static class FlightKey {
+        final Key key;
+        final int fromDay;
+        final int toDay;
+        final int limit;
+
+        FlightKey(Key key, int fromDay, int toDay, int limit) {
+            this.key = key;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FlightKey)) return false;
+            FlightKey f = (FlightKey) o;
+            return fromDay == f.fromDay && toDay == f.toDay && limit == f.limit && key.equals(f.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, fromDay, toDay, limit);
+        }
+    }
+
+    private static class Entry {
+        final BarSeries bars;
+        final int fromDay;
+        final int toDay;
+        final long loadedAtNanos;
+
+        Entry(BarSeries bars, int fromDay, int toDay, long loadedAtNanos) {
+            this.bars = bars;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBars;
+    private final long ttlNanos;
+
+    // Access-ordered map gives LRU iteration order; guarded by this
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBars;
+    private final ConcurrentHashMap<FlightKey, CompletableFuture<BarSeries>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sharedLoads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public AggregateCache() {
+        this(Config.getIntSetting("AGGREGATE_CACHE_MAX_ENTRIES", 512),
+             Config.getIntSetting("AGGREGATE_CACHE_MAX_BARS", 2_000_000),
+             Config.getIntSetting("AGGREGATE_CACHE_TTL_SECONDS", 600));
+    }
+
+    public AggregateCache(int maxEntries, long maxBars, long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.maxBars = maxBars;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Return the bars in [fromDay, toDay], loading them on a miss. Loaded results with at least
+     * truncationLimit bars may have been cut short by the API and are returned but not cached.
+     */
+    public BarSeries get(String ticker, String multiplier, String timespan, boolean adjusted,
+                         int fromDay, int toDay, int truncationLimit, Loader loader) throws IOException, InterruptedException {
+        Key key = new Key(ticker, multiplier, timespan, adjusted);
+        BarSeries cached = lookup(key, fromDay, toDay);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        FlightKey flightKey = new FlightKey(key, fromDay, toDay, truncationLimit);
+        while (true) {
+            CompletableFuture<BarSeries> flight = new CompletableFuture<>();
+            CompletableFuture<BarSeries> leader = inFlight.putIfAbsent(flightKey, flight);
+            if (leader == null) {
+                return lead(key, flightKey, flight, fromDay, toDay, truncationLimit, loader);
+            }
+            sharedLoads.increment();
+            BarSeries shared = await(leader);
+            if (shared != null) return shared;
+            // The leader was interrupted; its flight may not be removed yet
+            inFlight.remove(flightKey, leader);
+        }
+    }
+
+    // Loads for every caller of the flight; an interrupted load completes it with null so they retry
+    private BarSeries lead(Key key, FlightKey flightKey, CompletableFuture<BarSeries> flight, int fromDay, int toDay,
+                           int truncationLimit, Loader loader) throws IOException, InterruptedException {
+        try {
+            BarSeries loaded = loader.load();
+            if (loaded.size() < truncationLimit) {
+                store(key, loaded, fromDay, toDay);
+            }
+            flight.complete(loaded);
+            return loaded;
+        } catch (InterruptedException e) {
+            flight.complete(null);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // An interrupt can also surface as an I/O failure (e.g. a closed channel)
+            if (Thread.currentThread().isInterrupted()) flight.complete(null);
+            else flight.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    public synchronized void invalidate(String ticker, String multiplier, String timespan, boolean adjusted) {
+        Entry removed = entries.remove(new Key(ticker, multiplier, timespan, adjusted));
+        if (removed != null) cachedBars -= removed.bars.size();
+    }
+
+    public String stats() {
+        int entryCount;
+        long barCount;
+        synchronized (this) {
+            entryCount = entries.size();
+            barCount = cachedBars;
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return String.format("Aggregate cache: %d/%d entries, %d/%d bars\n" +
+                "Hits: %d, Misses: %d (hit rate %.1f%%), Shared in-flight loads: %d\n" +
+                "Evictions: %d, Expirations: %d, TTL: %ds\n",
+            entryCount, maxEntries, barCount, maxBars,
+            hitCount, missCount, total == 0 ? 0.0 : 100.0 * hitCount / total, sharedLoads.sum(),
+            evictions.sum(), expirations.sum(), TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+    }
+
+    private synchronized BarSeries lookup(Key key, int fromDay, int toDay) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.loadedAtNanos > ttlNanos) {
+            entries.remove(key);
+            cachedBars -= entry.bars.size();
+            expirations.increment();
+            return null;
+        }
+        if (entry.fromDay > fromDay || entry.toDay < toDay) return null;
+        return entry.bars.between(fromDay, toDay);
+    }
+
+    private synchronized void store(Key key, BarSeries bars, int fromDay, int toDay) {
+        long now = System.nanoTime();
+        Entry existing = entries.remove(key);
+        Entry entry = new Entry(bars, fromDay, toDay, now);
+        if (existing != null) {
+            cachedBars -= existing.bars.size();
+            boolean fresh = now - existing.loadedAtNanos <= ttlNanos;
+            boolean touching = fromDay <= existing.toDay + 1 && toDay >= existing.fromDay - 1;
+            if (fresh && touching) {
+                // Grow the cached range instead of dropping what we already had; the union keeps
+                // the older entry's age so it still expires on time
+                entry = new Entry(existing.bars.splice(bars, fromDay, toDay),
+                    Math.min(fromDay, existing.fromDay), Math.max(toDay, existing.toDay), existing.loadedAtNanos);
+            }
+        }
+        entries.put(key, entry);
+        cachedBars += entry.bars.size();
+
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || cachedBars > maxBars) && it.hasNext()) {
+            Map.Entry<Key, Entry> eldest = it.next();
+            if (eldest.getKey().equals(key) && entries.size() == 1) break;
+            it.remove();
+            cachedBars -= eldest.getValue().bars.size();
+            evictions.increment();
+        }
+    }
+
+    // The leader's result, or null if its load was interrupted and must be retried
+    private static BarSeries await(CompletableFuture<BarSeries> flight) throws IOException, InterruptedException {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.stockcharts.app.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.stockcharts.app.model.BarSeries;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Token-by-token decoder for Polygon aggregate responses. Bars are appended straight into the
+ * primitive columns of a BarSeries.Builder without building a String or a JSON tree.
+ */
+final class AggregatesDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // US sessions (04:00-20:00 ET) and daily bars (stamped at midnight ET) all fall on the same
+    // calendar day once shifted by -4h, in both EST and EDT, so no per-bar zone lookup is needed
+    private static final long EXCHANGE_DAY_SHIFT_MILLIS = 4 * 3_600_000L;
+
+    private AggregatesDecoder() {}
+
+    static int epochDay(long epochMillis) {
+        return (int) Math.floorDiv(epochMillis - EXCHANGE_DAY_SHIFT_MILLIS, MILLIS_PER_DAY);
+    }
+
+    // Receives each decoded bar; ticker is only present in grouped (whole-market) responses
+    @FunctionalInterface
+    interface BarSink {
+        void bar(String ticker, int epochDay, double open, double high, double low, double close,
+                 double volume, double vwap, long trades);
+    }
+
+    // Appends the page's bars and returns its next_url, or null on the last page
+    static String decode(InputStream body, BarSeries.Builder bars) throws IOException {
+        return decode(body, (ticker, day, o, h, l, c, v, vw, n) -> bars.add(day, o, h, l, c, v, vw, n), bars::ensureCapacity, bars.size());
+    }
+
+    // Decodes a grouped-daily response, which carries one bar per ticker
+    static void decodeGrouped(InputStream body, BarSink sink) throws IOException {
+        decode(body, sink, capacity -> {}, 0);
+    }
+
+    private static String decode(InputStream body, BarSink sink, java.util.function.IntConsumer presize, int existing) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Invalid response format from Polygon API");
+            }
+            boolean sawResults = false;
+            int resultsCount = -1;
+            String nextUrl = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "results" -> {
+                        if (value != JsonToken.START_ARRAY) {
+                            throw new IOException("Invalid response format from Polygon API");
+                        }
+                        sawResults = true;
+                        readResults(parser, sink);
+                    }
+                    case "resultsCount" -> {
+                        resultsCount = parser.getValueAsInt();
+                        presize.accept(existing + resultsCount);
+                    }
+                    case "next_url" -> nextUrl = parser.getValueAsString();
+                    default -> parser.skipChildren();
+                }
+            }
+            // Polygon omits "results" when the range holds no bars (weekends, holidays)
+            if (!sawResults && resultsCount != 0) {
+                throw new IOException("Invalid response format from Polygon API");
+            }
+            return nextUrl;
+        }
+    }
+
+    private static void readResults(JsonParser parser, BarSink sink) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String ticker = null;
+            long timestamp = 0;
+            double open = Double.NaN, high = Double.NaN, low = Double.NaN, close = Double.NaN, volume = 0.0, vwap = 0.0;
+            long trades = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "T" -> ticker = parser.getText();
+                    case "t" -> timestamp = parser.getLongValue();
+                    case "o" -> open = parser.getDoubleValue();
+                    case "h" -> high = parser.getDoubleValue();
+                    case "l" -> low = parser.getDoubleValue();
+                    case "c" -> close = parser.getDoubleValue();
+                    case "v" -> volume = parser.getDoubleValue();
+                    case "vw" -> vwap = parser.getDoubleValue();
+                    case "n" -> trades = parser.getLongValue();
+                    default -> parser.skipChildren();
+                }
+            }
+            sink.bar(ticker, epochDay(timestamp), open, high, low, close, volume, vwap, trades);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.backtest.BacktestResult;
+import com.stockcharts.app.backtest.Backtester;
+import com.stockcharts.app.backtest.ParameterGrid;
+import com.stockcharts.app.backtest.Signals;
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.indicator.IndicatorGraph;
+import com.stockcharts.app.indicator.IndicatorNode;
+import com.stockcharts.app.model.BarSeries;
+import com.stockcharts.app.model.FibonacciRetracement;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Rule-based backtests over daily bars, optionally swept over a parameter grid. Every indicator
+ * array (or set of Fibonacci snapshots) the grid needs is computed once up front and shared
+ * read-only by all parameter sets, which then run in parallel on a fork-join pool.
+ */
+@Service
+public class BacktestService {
+
+    private static final int MIN_FIBONACCI_BARS = 50;
+
+    private final PolygonService polygonService;
+    private final IndicatorService indicatorService;
+    private final ChartService chartService;
+    private final ForkJoinPool pool;
+    private final long maxCombinations;
+
+    // Indicator arrays and Fibonacci snapshots shared by every parameter set of one sweep
+    private static class SharedInputs {
+        final Map<Integer, double[]> averages = new HashMap<>();
+        final Map<Integer, double[]> rsiSeries = new HashMap<>();
+        final Map<Integer, List<FibonacciRetracement>> fibonacciSnapshots = new ConcurrentHashMap<>();
+    }
+
+    public BacktestService(PolygonService polygonService, IndicatorService indicatorService, ChartService chartService) {
+        this.polygonService = polygonService;
+        this.indicatorService = indicatorService;
+        this.chartService = chartService;
+        int parallelism = Config.getIntSetting("BACKTEST_PARALLELISM", Runtime.getRuntime().availableProcessors());
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.maxCombinations = Math.max(1, Config.getIntSetting("BACKTEST_MAX_COMBINATIONS", 20_000));
+    }
+
+    // Parameter names and defaults of each strategy, in grid order
+    static Map<String, Double> defaults(String strategy) {
+        Map<String, Double> defaults = new LinkedHashMap<>();
+        switch (strategy) {
+            case "SMA_CROSS", "EMA_CROSS" -> {
+                defaults.put("fast", 10.0);
+                defaults.put("slow", 50.0);
+            }
+            case "RSI" -> {
+                defaults.put("period", 14.0);
+                defaults.put("lower", 30.0);
+                defaults.put("upper", 70.0);
+            }
+            case "FIB" -> {
+                defaults.put("level", 0.618);
+                defaults.put("refit", 20.0);
+            }
+            default -> throw new IllegalArgumentException("Unsupported strategy: " + strategy
+                + ". Supported: SMA_CROSS, EMA_CROSS, RSI, FIB");
+        }
+        return defaults;
+    }
+
+    /**
+     * Runs every parameter set of the grid and returns the results in grid order. Sets that make
+     * no sense (fast >= slow, lower >= upper) are left out.
+     */
+    private List<BacktestResult> sweep(BarSeries bars, String strategy, ParameterGrid grid, double costPerUnit,
+                                       SharedInputs inputs) throws InterruptedException {
+        try {
+            return pool.submit(() -> LongStream.range(0, grid.size()).parallel()
+                    .mapToObj(index -> runOne(bars, strategy, grid.combination(index), inputs, costPerUnit, false))
+                    .filter(Objects::nonNull)
+                    .toList())
+                .get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private SharedInputs prepare(BarSeries bars, String strategy, ParameterGrid grid) {
+        if (grid.size() > maxCombinations) {
+            throw new IllegalArgumentException("Parameter grid has " + grid.size() + " combinations; the limit is "
+                + maxCombinations + " (BACKTEST_MAX_COMBINATIONS)");
+        }
+        SharedInputs inputs = new SharedInputs();
+        IndicatorGraph graph = indicatorService.graph(bars);
+        switch (strategy) {
+            case "SMA_CROSS", "EMA_CROSS" -> {
+                TreeSet<Integer> periods = new TreeSet<>();
+                for (double p : grid.values("fast")) periods.add(period(p, "fast"));
+                for (double p : grid.values("slow")) periods.add(period(p, "slow"));
+                for (int p : periods) {
+                    IndicatorNode node = strategy.equals("SMA_CROSS")
+                        ? IndicatorNode.sma(IndicatorNode.CLOSE, p) : IndicatorNode.ema(IndicatorNode.CLOSE, p);
+                    inputs.averages.put(p, graph.values(node));
+                }
+            }
+            case "RSI" -> {
+                for (double p : grid.values("period")) {
+                    int period = period(p, "period");
+                    inputs.rsiSeries.put(period, graph.values(IndicatorNode.rsi(IndicatorNode.CLOSE, period)));
+                }
+            }
+            case "FIB" -> {
+                // Snapshot ends of every refit interval, each computed once from one analysis advanced
+                // through the ends, so the cost is linear in the bars rather than ends x bars
+                TreeSet<Integer> ends = new TreeSet<>();
+                for (double r : grid.values("refit")) {
+                    for (int end : snapshotEnds(bars.size(), period(r, "refit"))) ends.add(end);
+                }
+                inputs.fibonacciSnapshots.putAll(chartService.fibonacciRetracements(bars,
+                    ends.stream().mapToInt(Integer::intValue).toArray()));
+            }
+            default -> throw new IllegalArgumentException("Unsupported strategy: " + strategy);
+        }
+        return inputs;
+    }
+
+    private BacktestResult runOne(BarSeries bars, String strategy, double[] parameters,
+                                  SharedInputs inputs, double costPerUnit, boolean keepDetail) {
+        int n = bars.size();
+        double[] position = new double[n];
+        switch (strategy) {
+            case "SMA_CROSS", "EMA_CROSS" -> {
+                int fast = period(parameters[0], "fast");
+                int slow = period(parameters[1], "slow");
+                if (fast >= slow) return null;
+                Signals.crossover(inputs.averages.get(fast), inputs.averages.get(slow), position, n);
+            }
+            case "RSI" -> {
+                if (parameters[1] >= parameters[2]) return null;
+                Signals.threshold(inputs.rsiSeries.get(period(parameters[0], "period")), parameters[1], parameters[2], position, n);
+            }
+            case "FIB" -> {
+                int[] ends = snapshotEnds(n, period(parameters[1], "refit"));
+                List<List<FibonacciRetracement>> snapshots = new ArrayList<>(ends.length);
+                for (int end : ends) snapshots.add(inputs.fibonacciSnapshots.get(end));
+                Signals.fibonacciPullback(bars, ends, snapshots, parameters[0], position);
+            }
+            default -> throw new IllegalArgumentException("Unsupported strategy: " + strategy);
+        }
+        return Backtester.run(bars.closeColumn(), bars.columnOffset(), position, n, costPerUnit, parameters, keepDetail);
+    }
+
+    // Last bar of each refit window that has enough history for Fibonacci sets
+    private static int[] snapshotEnds(int size, int refit) {
+        return IntStream.iterate(refit - 1, end -> end < size - 1, end -> end + refit)
+            .filter(end -> end + 1 >= MIN_FIBONACCI_BARS)
+            .toArray();
+    }
+
+    private static int period(double value, String name) {
+        if (value < 1 || value != Math.rint(value)) {
+            throw new IllegalArgumentException(name + " must be a positive whole number, got " + value);
+        }
+        return (int) value;
+    }
+
+    @Tool(description = "Backtest a rule-based trading strategy on daily bars, optionally sweeping parameter ranges in parallel. " +
+          "Parameters: symbol (e.g. 'AAPL' or ratio 'AAPL/SPY'); strategy ('SMA_CROSS' long while SMA(fast) > SMA(slow), " +
+          "'EMA_CROSS', 'RSI' enter below lower and exit above upper, 'FIB' buy pullbacks to a Fibonacci level of an uptrend " +
+          "set with the 100% anchor as target and the 0% anchor as stop, sets refit every 'refit' bars); " +
+          "parameters (optional, e.g. 'fast=5..50:5,slow=20..200:10' or 'period=14,lower=25..35:5'; defaults: " +
+          "fast=10, slow=50; period=14, lower=30, upper=70; level=0.618, refit=20); startDate, endDate ('YYYY-MM-DD', " +
+          "default: the last two years); costBps (per trade side, default 5); rankBy ('return'|'sharpe'|'drawdown', default 'return'; " +
+          "drawdown ranks sets without trades last and breaks ties on return). " +
+          "Returns the top parameter sets, then return, drawdown, Sharpe, trade statistics, recent trades and an equity curve for the best.")
+    public String backtestStrategy(String symbol, String strategy, String parameters, String startDate, String endDate,
+                                   Double costBps, String rankBy) {
+        try {
+            String type = strategy == null ? "SMA_CROSS" : strategy.trim().toUpperCase();
+            ParameterGrid grid = ParameterGrid.parse(parameters, defaults(type), maxCombinations);
+            LocalDate end = endDate != null && !endDate.isBlank() ? LocalDate.parse(endDate) : LocalDate.now();
+            LocalDate start = startDate != null && !startDate.isBlank() ? LocalDate.parse(startDate) : end.minusYears(2);
+            double cost = (costBps == null ? 5.0 : costBps) / 10_000.0;
+
+            BarSeries bars;
+            if (symbol.contains("/")) {
+                String[] legs = symbol.split("/");
+                if (legs.length != 2) return "Invalid ratio format. Use format: SYMBOL1/SYMBOL2 (e.g., AAPL/SPY)";
+                bars = polygonService.getRatioBars(legs[0].trim().toUpperCase(), legs[1].trim().toUpperCase(),
+                    start.toString(), end.toString(), 50000);
+            } else {
+                bars = polygonService.getBars(symbol.trim().toUpperCase(), "1", "day", start.toString(), end.toString(),
+                    true, "asc", 50000);
+            }
+            if (bars.size() < 2) return "Not enough data to backtest " + symbol;
+
+            long startNanos = System.nanoTime();
+            SharedInputs inputs = prepare(bars, type, grid);
+            List<BacktestResult> results = sweep(bars, type, grid, cost, inputs);
+            if (results.isEmpty()) return "No valid parameter sets (check that fast < slow and lower < upper)";
+            Comparator<BacktestResult> order = switch (rankBy == null ? "return" : rankBy.trim().toLowerCase()) {
+                case "sharpe" -> Comparator.comparingDouble(BacktestResult::getSharpe).reversed();
+                // A set that never trades has no drawdown, so it ranks after every set that does
+                case "drawdown" -> Comparator.comparing((BacktestResult r) -> r.getTrades() == 0)
+                    .thenComparingDouble(BacktestResult::getMaxDrawdown)
+                    .thenComparing(Comparator.comparingDouble(BacktestResult::getTotalReturn).reversed());
+                default -> Comparator.comparingDouble(BacktestResult::getTotalReturn).reversed();
+            };
+            List<BacktestResult> ranked = new ArrayList<>(results);
+            ranked.sort(order);
+            BacktestResult best = runOne(bars, type, ranked.get(0).getParameters(), inputs, cost, true);
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%s backtest of %s from %s to %s (%d bars, cost %.1f bps): %d parameter sets in %d ms\n\n",
+                type, symbol.toUpperCase(), bars.date(0), bars.date(bars.size() - 1), bars.size(), cost * 10_000,
+                results.size(), millis));
+            if (results.size() > 1) {
+                out.append(String.format("%-32s | %8s | %6s | %7s | %6s | %5s\n", "Parameters", "Return", "Sharpe", "MaxDD", "Trades", "Win%"));
+                for (BacktestResult result : ranked.subList(0, Math.min(10, ranked.size()))) {
+                    out.append(String.format("%-32s | %7.1f%% | %6.2f | %6.1f%% | %6d | %4.0f%%\n",
+                        grid.describe(result.getParameters()), result.getTotalReturn() * 100, result.getSharpe(),
+                        result.getMaxDrawdown() * 100, result.getTrades(), result.getWinRate() * 100));
+                }
+                out.append("\n");
+            }
+            appendDetail(out, bars, grid, best);
+            return out.toString();
+        } catch (Exception e) {
+            return "Error running backtest: " + e.getMessage();
+        }
+    }
+
+    private static void appendDetail(StringBuilder out, BarSeries bars, ParameterGrid grid, BacktestResult result) {
+        out.append("Best: ").append(grid.describe(result.getParameters())).append("\n");
+        out.append(String.format("Total return: %.2f%% (buy and hold %.2f%%)\n",
+            result.getTotalReturn() * 100, result.getBuyAndHoldReturn() * 100));
+        out.append(String.format("Max drawdown: %.2f%%, Sharpe: %.2f, Exposure: %.0f%%\n",
+            result.getMaxDrawdown() * 100, result.getSharpe(), result.getExposure() * 100));
+        out.append(String.format("Trades: %d, Win rate: %.0f%%, Average trade: %.2f%%\n",
+            result.getTrades(), result.getWinRate() * 100, result.getAverageTradeReturn() * 100));
+
+        int[] entries = result.getTradeEntries();
+        if (entries.length > 0) {
+            out.append("\nRecent trades:\nEntry      | Exit       | Return\n");
+            for (int t = Math.max(0, entries.length - 10); t < entries.length; t++) {
+                out.append(String.format("%-10s | %-10s | %6.2f%%\n", bars.date(entries[t]),
+                    bars.date(result.getTradeExits()[t]), result.getTradeReturns()[t] * 100));
+            }
+        }
+
+        double[] equity = result.getEquity();
+        out.append("\nEquity curve:\n");
+        int points = Math.min(12, equity.length);
+        for (int k = 0; k < points; k++) {
+            int i = points == 1 ? 0 : (int) ((long) k * (equity.length - 1) / (points - 1));
+            out.append(String.format("%-10s %8.4f\n", bars.date(i), equity[i]));
+        }
+    }
+}
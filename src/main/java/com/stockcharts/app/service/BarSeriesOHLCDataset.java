@@ -0,0 +1,70 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.model.BarSeries;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.xy.AbstractXYDataset;
+import org.jfree.data.xy.OHLCDataset;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * One-series OHLC dataset reading the bar columns in place: nothing is copied and no change
+ * events fire while it is built, unlike OHLCSeries, which allocates a Day and an item per bar.
+ *
+ * Day positions are computed once per chart, in the default time zone and with Day's own
+ * arithmetic: candles sit at the middle millisecond of their day, as OHLCSeriesCollection plots
+ * them, and dayStarts() gives the first millisecond of each day, where TimeSeriesCollection
+ * plots indicator values, for the indicator datasets of the same chart.
+ */
+// Serializable only through AbstractXYDataset; built per chart and never serialized
+@SuppressWarnings("serial")
+final class BarSeriesOHLCDataset extends AbstractXYDataset implements OHLCDataset {
+
+    private final String key;
+    private final BarSeries bars;
+    private final double[] x;
+    private final double[] dayStarts;
+
+    BarSeriesOHLCDataset(String key, BarSeries bars) {
+        this.key = key;
+        this.bars = bars;
+        this.x = new double[bars.size()];
+        this.dayStarts = new double[bars.size()];
+        ZoneId zone = ZoneId.systemDefault();
+        for (int i = 0; i < x.length; i++) {
+            LocalDate day = LocalDate.ofEpochDay(bars.epochDay(i));
+            long first = day.atStartOfDay(zone).toInstant().toEpochMilli();
+            long last = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+            dayStarts[i] = first;
+            x[i] = first + (last - first) / 2;
+        }
+    }
+
+    // First millisecond of each bar's day, indexed like the bars; shared, so not to be modified
+    double[] dayStarts() { return dayStarts; }
+
+    @Override public int getSeriesCount() { return 1; }
+    @Override public String getSeriesKey(int series) { return key; }
+    @Override public int getItemCount(int series) { return bars.size(); }
+    @Override public DomainOrder getDomainOrder() { return DomainOrder.ASCENDING; }
+
+    @Override public double getXValue(int series, int item) { return x[item]; }
+    @Override public Number getX(int series, int item) { return x[item]; }
+    // The close, as OHLCSeriesCollection reports for y
+    @Override public double getYValue(int series, int item) { return bars.close(item); }
+    @Override public Number getY(int series, int item) { return bars.close(item); }
+
+    @Override public double getOpenValue(int series, int item) { return bars.open(item); }
+    @Override public Number getOpen(int series, int item) { return bars.open(item); }
+    @Override public double getHighValue(int series, int item) { return bars.high(item); }
+    @Override public Number getHigh(int series, int item) { return bars.high(item); }
+    @Override public double getLowValue(int series, int item) { return bars.low(item); }
+    @Override public Number getLow(int series, int item) { return bars.low(item); }
+    @Override public double getCloseValue(int series, int item) { return bars.close(item); }
+    @Override public Number getClose(int series, int item) { return bars.close(item); }
+
+    // No volume on the price pane, as with OHLCSeriesCollection
+    @Override public double getVolumeValue(int series, int item) { return Double.NaN; }
+    @Override public Number getVolume(int series, int item) { return null; }
+}
@@ -0,0 +1,392 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.model.BarSeries;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Local on-disk store of daily bars: one memory-mapped columnar file per ticker/timespan.
+ *
+ * File layout (little endian):
+ *   header (64 bytes): magic, version, capacity, count, coveredFrom, coveredTo, ticker
+ *   int[capacity] epochDay, double[capacity] open, high, low, close, volume, vwap, trades
+ *
+ * The covered range is the span of calendar days known to be complete, so days without bars
+ * (weekends, holidays) inside it are not refetched. Appends that fit the capacity are written in
+ * place and published by updating the header count last; everything else rewrites the file and
+ * atomically moves it into place. A sidecar .lock file serializes access across JVMs.
+ */
+@Service
+public class BarStore {
+
+    private static final int MAGIC = 0x53434253; // "SCBS"
+    private static final int VERSION = 3; // 2 added the volume column, 3 vwap and trade count
+    private static final int HEADER_BYTES = 64;
+    private static final int TICKER_OFFSET = 24;
+    private static final int TICKER_BYTES = 32;
+    private static final int CAPACITY_STEP = 512;
+    private static final int VALUE_COLUMNS = 7; // open, high, low, close, volume, vwap, trades
+    private static final int BYTES_PER_BAR = Integer.BYTES + VALUE_COLUMNS * Double.BYTES;
+
+    private final Path root;
+    private final boolean enabled;
+    // FileLock is per JVM, so threads of this process also need to be serialized per file
+    private final ConcurrentHashMap<Path, Object> monitors = new ConcurrentHashMap<>();
+
+    public static class StoredBars {
+        private final BarSeries bars;
+        private final int coveredFrom;
+        private final int coveredTo;
+
+        public StoredBars(BarSeries bars, int coveredFrom, int coveredTo) {
+            this.bars = bars;
+            this.coveredFrom = coveredFrom;
+            this.coveredTo = coveredTo;
+        }
+
+        public BarSeries getBars() { return bars; }
+        public int getCoveredFrom() { return coveredFrom; }
+        public int getCoveredTo() { return coveredTo; }
+    }
+
+    // Covered range plus the last stored bar, as read from the header without loading the columns
+    public static class Coverage {
+        private final int coveredFrom;
+        private final int coveredTo;
+        private final int lastDay;
+        private final double lastClose;
+
+        public Coverage(int coveredFrom, int coveredTo, int lastDay, double lastClose) {
+            this.coveredFrom = coveredFrom;
+            this.coveredTo = coveredTo;
+            this.lastDay = lastDay;
+            this.lastClose = lastClose;
+        }
+
+        public int getCoveredFrom() { return coveredFrom; }
+        public int getCoveredTo() { return coveredTo; }
+        public boolean hasBars() { return lastDay != Integer.MIN_VALUE; }
+        public int getLastDay() { return lastDay; }
+        public double getLastClose() { return lastClose; }
+    }
+
+    public BarStore() {
+        this(Paths.get(Config.getBarStoreDir()), Config.isBarStoreEnabled());
+    }
+
+    public BarStore(Path root, boolean enabled) {
+        this.root = root;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public StoredBars read(String ticker, String timespan, boolean adjusted) throws IOException {
+        if (!enabled) return null;
+        Path file = dataFile(ticker, timespan, adjusted);
+        if (!Files.exists(file)) return null;
+
+        synchronized (monitor(file)) {
+            FileChannel lock = lock(file, true);
+            try {
+                return readLocked(file);
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    // The last maxBars stored bars only, so universe-wide scans copy a small tail of each file
+    public BarSeries readRecent(String ticker, String timespan, boolean adjusted, int maxBars) throws IOException {
+        if (!enabled) return null;
+        Path file = dataFile(ticker, timespan, adjusted);
+        if (!Files.exists(file)) return null;
+
+        synchronized (monitor(file)) {
+            FileChannel lock = lock(file, true);
+            try {
+                StoredBars stored = readLocked(file, maxBars);
+                return stored == null ? null : stored.bars;
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    // Tickers with a stored file for the timespan, sorted; file names are the sanitized tickers
+    public List<String> tickers(String timespan, boolean adjusted) throws IOException {
+        List<String> tickers = new ArrayList<>();
+        if (!enabled || !Files.isDirectory(root)) return tickers;
+        String suffix = "_" + timespan + "_" + (adjusted ? "adjusted" : "unadjusted") + ".bars";
+        try (Stream<Path> files = Files.list(root)) {
+            files.map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(suffix))
+                .map(name -> name.substring(0, name.length() - suffix.length()))
+                .sorted()
+                .forEach(tickers::add);
+        }
+        return tickers;
+    }
+
+    public Coverage coverage(String ticker, String timespan, boolean adjusted) throws IOException {
+        if (!enabled) return null;
+        Path file = dataFile(ticker, timespan, adjusted);
+        if (!Files.exists(file)) return null;
+
+        synchronized (monitor(file)) {
+            FileChannel lock = lock(file, true);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() < HEADER_BYTES) return null;
+                ByteBuffer header = readAt(channel, 0, HEADER_BYTES);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) return null;
+                int capacity = header.getInt(8);
+                int count = header.getInt(12);
+                if (count < 0 || count > capacity || channel.size() < fileSize(capacity)) return null;
+                if (count == 0) return new Coverage(header.getInt(16), header.getInt(20), Integer.MIN_VALUE, Double.NaN);
+
+                int last = count - 1;
+                int lastDay = readAt(channel, dayOffset() + (long) last * Integer.BYTES, Integer.BYTES).getInt(0);
+                double lastClose = readAt(channel, columnOffset(capacity, 3) + (long) last * Double.BYTES, Double.BYTES).getDouble(0);
+                return new Coverage(header.getInt(16), header.getInt(20), lastDay, lastClose);
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    /**
+     * Merge bars covering [coveredFrom, coveredTo] into the stored file. Incoming bars are
+     * authoritative inside their covered range. A range disjoint from the stored one replaces it
+     * only when it is more recent, so each file always holds one contiguous covered span.
+     */
+    public void merge(String ticker, String timespan, boolean adjusted,
+                      BarSeries incoming, int coveredFrom, int coveredTo) throws IOException {
+        if (!enabled || coveredTo < coveredFrom) return;
+        Path file = dataFile(ticker, timespan, adjusted);
+        Files.createDirectories(file.getParent());
+
+        synchronized (monitor(file)) {
+            FileChannel lock = lock(file, false);
+            try {
+                StoredBars existing = Files.exists(file) ? readLocked(file) : null;
+                if (existing == null) {
+                    writeFile(file, ticker, incoming, coveredFrom, coveredTo);
+                    return;
+                }
+
+                boolean disjoint = coveredFrom > existing.coveredTo + 1 || coveredTo < existing.coveredFrom - 1;
+                if (disjoint) {
+                    if (coveredTo > existing.coveredTo) {
+                        writeFile(file, ticker, incoming, coveredFrom, coveredTo);
+                    }
+                    return;
+                }
+
+                BarSeries stored = existing.bars;
+                boolean afterLastBar = stored.isEmpty() || coveredFrom > stored.lastEpochDay();
+                if (coveredFrom >= existing.coveredFrom && afterLastBar
+                        && appendInPlace(file, stored.size(), incoming, Math.max(coveredTo, existing.coveredTo))) {
+                    return;
+                }
+
+                writeFile(file, ticker, stored.splice(incoming, coveredFrom, coveredTo),
+                    Math.min(coveredFrom, existing.coveredFrom), Math.max(coveredTo, existing.coveredTo));
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    public void delete(String ticker, String timespan, boolean adjusted) throws IOException {
+        if (!enabled) return;
+        Path file = dataFile(ticker, timespan, adjusted);
+        synchronized (monitor(file)) {
+            if (!Files.exists(file)) return;
+            FileChannel lock = lock(file, false);
+            try {
+                Files.deleteIfExists(file);
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    private StoredBars readLocked(Path file) throws IOException {
+        return readLocked(file, Integer.MAX_VALUE);
+    }
+
+    private StoredBars readLocked(Path file, int maxBars) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) return null;
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                return null; // unknown format; caller refetches and rewrites
+            }
+            int capacity = map.getInt(8);
+            int count = map.getInt(12);
+            int coveredFrom = map.getInt(16);
+            int coveredTo = map.getInt(20);
+            if (count < 0 || count > capacity || channel.size() < fileSize(capacity)) return null;
+            int first = Math.max(0, count - Math.max(0, maxBars));
+            count -= first;
+
+            int[] days = new int[count];
+            double[] open = new double[count];
+            double[] high = new double[count];
+            double[] low = new double[count];
+            double[] close = new double[count];
+            double[] volume = new double[count];
+            double[] vwap = new double[count];
+            double[] trades = new double[count];
+            map.position(dayOffset() + first * Integer.BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(days);
+            int skip = first * Double.BYTES;
+            readColumn(map, columnOffset(capacity, 0) + skip, open);
+            readColumn(map, columnOffset(capacity, 1) + skip, high);
+            readColumn(map, columnOffset(capacity, 2) + skip, low);
+            readColumn(map, columnOffset(capacity, 3) + skip, close);
+            readColumn(map, columnOffset(capacity, 4) + skip, volume);
+            readColumn(map, columnOffset(capacity, 5) + skip, vwap);
+            readColumn(map, columnOffset(capacity, 6) + skip, trades);
+            return new StoredBars(new BarSeries(days, open, high, low, close, volume, vwap, trades), coveredFrom, coveredTo);
+        }
+    }
+
+    private boolean appendInPlace(Path file, int count, BarSeries incoming, int coveredTo) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            int capacity = map.getInt(8);
+            if (count + incoming.size() > capacity) return false;
+
+            for (int i = 0; i < incoming.size(); i++) {
+                int slot = count + i;
+                map.putInt(dayOffset() + slot * Integer.BYTES, incoming.epochDay(i));
+                map.putDouble(columnOffset(capacity, 0) + slot * Double.BYTES, incoming.open(i));
+                map.putDouble(columnOffset(capacity, 1) + slot * Double.BYTES, incoming.high(i));
+                map.putDouble(columnOffset(capacity, 2) + slot * Double.BYTES, incoming.low(i));
+                map.putDouble(columnOffset(capacity, 3) + slot * Double.BYTES, incoming.close(i));
+                map.putDouble(columnOffset(capacity, 4) + slot * Double.BYTES, incoming.volume(i));
+                map.putDouble(columnOffset(capacity, 5) + slot * Double.BYTES, incoming.vwap(i));
+                map.putDouble(columnOffset(capacity, 6) + slot * Double.BYTES, incoming.trades(i));
+            }
+            map.force();
+            // Publish: readers only look at slots below count
+            map.putInt(20, coveredTo);
+            map.putInt(12, count + incoming.size());
+            map.force();
+            return true;
+        }
+    }
+
+    private void writeFile(Path file, String ticker, BarSeries bars, int coveredFrom, int coveredTo) throws IOException {
+        int capacity = capacityFor(bars.size());
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                map.putInt(0, MAGIC);
+                map.putInt(4, VERSION);
+                map.putInt(8, capacity);
+                map.putInt(12, bars.size());
+                map.putInt(16, coveredFrom);
+                map.putInt(20, coveredTo);
+                byte[] name = ticker.toUpperCase().getBytes(StandardCharsets.US_ASCII);
+                map.position(TICKER_OFFSET);
+                map.put(name, 0, Math.min(name.length, TICKER_BYTES));
+
+                for (int i = 0; i < bars.size(); i++) {
+                    map.putInt(dayOffset() + i * Integer.BYTES, bars.epochDay(i));
+                    map.putDouble(columnOffset(capacity, 0) + i * Double.BYTES, bars.open(i));
+                    map.putDouble(columnOffset(capacity, 1) + i * Double.BYTES, bars.high(i));
+                    map.putDouble(columnOffset(capacity, 2) + i * Double.BYTES, bars.low(i));
+                    map.putDouble(columnOffset(capacity, 3) + i * Double.BYTES, bars.close(i));
+                    map.putDouble(columnOffset(capacity, 4) + i * Double.BYTES, bars.volume(i));
+                    map.putDouble(columnOffset(capacity, 5) + i * Double.BYTES, bars.vwap(i));
+                    map.putDouble(columnOffset(capacity, 6) + i * Double.BYTES, bars.trades(i));
+                }
+                map.force();
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Truncated bar file");
+        }
+        return buffer;
+    }
+
+    private static void readColumn(MappedByteBuffer map, int offset, double[] target) {
+        ByteBuffer column = map.position(offset).slice().order(ByteOrder.LITTLE_ENDIAN);
+        column.asDoubleBuffer().get(target);
+    }
+
+    private static int capacityFor(int size) {
+        // Leave room for roughly two years of daily appends before a rewrite is needed
+        int wanted = size + Math.max(CAPACITY_STEP, size / 2);
+        return ((wanted + CAPACITY_STEP - 1) / CAPACITY_STEP) * CAPACITY_STEP;
+    }
+
+    private static long fileSize(int capacity) {
+        return HEADER_BYTES + (long) capacity * BYTES_PER_BAR;
+    }
+
+    private static int dayOffset() {
+        return HEADER_BYTES;
+    }
+
+    // column 0..6 = open, high, low, close, volume, vwap, trades; capacity is a multiple of 512 so columns stay 8-byte aligned
+    private static int columnOffset(int capacity, int column) {
+        return HEADER_BYTES + capacity * Integer.BYTES + column * capacity * Double.BYTES;
+    }
+
+    private Path dataFile(String ticker, String timespan, boolean adjusted) {
+        String safeTicker = ticker.trim().toUpperCase().replaceAll("[^A-Z0-9.\\-]", "_");
+        return root.resolve(safeTicker + "_" + timespan + "_" + (adjusted ? "adjusted" : "unadjusted") + ".bars");
+    }
+
+    // Channel of the file's lock file holding a shared or exclusive lock; closing it releases the lock
+    private static FileChannel lock(Path file, boolean shared) throws IOException {
+        Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            channel.lock(0, Long.MAX_VALUE, shared);
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private Object monitor(Path file) {
+        return monitors.computeIfAbsent(file, k -> new Object());
+    }
+}
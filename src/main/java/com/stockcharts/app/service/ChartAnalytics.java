@@ -0,0 +1,404 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.indicator.RangeExtremes;
+import com.stockcharts.app.indicator.SwingDetector;
+import com.stockcharts.app.model.BarSeries;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Convex hull trendlines, swing points and Dinapoli Fibonacci sets of one series, kept up to date
+ * as bars are appended: each call consumes only the bars added since the previous one, so a chart
+ * refreshed with one new bar costs O(new bars) rather than O(history).
+ *
+ * The state advanced per bar is everything whose past never changes:
+ * - the lower and upper hull stacks of the monotone chain (a new point pops from the end only);
+ * - the swing detector frontier, which confirms each swing width bars after it;
+ * - range extreme indexes of highs and lows, for anchor checks and level breaks;
+ * - settled swings: a swing's validation is final once the 10 bars after it exist, and the
+ *   Fibonacci pairs ending at a settled valid swing only depend on bars and swings before it,
+ *   so the best of those pairs are kept and only new settled swings are paired;
+ * - open Fibonacci levels, which only scan bars not already checked for a break.
+ * Swings still inside their 10-bar validation window, and the pairs ending at them, are
+ * provisional and recomputed on each snapshot; there are only a few of them.
+ *
+ * A fresh instance fed a whole series gives the batch result, so every caller shares this code.
+ */
+final class ChartAnalytics {
+
+    // Bars needed before swings and Fibonacci sets are reported
+    static final int MIN_BARS = 50;
+    // Bars after a swing that must not exceed it
+    private static final int VALIDATION_BARS = 10;
+    // Most recent Fibonacci sets kept, to avoid clutter
+    private static final int MAX_SETS = 8;
+    private static final double[] FIB_LEVELS = {0.236, 0.382, 0.500, 0.618};
+    // 0.1% tolerance for minor wicks beyond an anchor
+    private static final double ANCHOR_TOLERANCE = 0.001;
+
+    private final boolean debug;
+    private final SwingDetector detector;
+    private final RangeExtremes highs = RangeExtremes.max();
+    private final RangeExtremes lows = RangeExtremes.min();
+    private final List<Point> lowerHull = new ArrayList<>();
+    private final List<Point> upperHull = new ArrayList<>();
+    // Every confirmed swing; those before settledSwings have final validation
+    private final List<SwingPoint> swings = new ArrayList<>();
+    private int settledSwings;
+    private final List<SwingPoint> validSwings = new ArrayList<>();
+    // Best Fibonacci sets between settled valid swings, keyed by (first position, second position)
+    private final TreeMap<Long, FibonacciSet> settledSets = new TreeMap<>();
+    private BarSeries bars = BarSeries.empty();
+    private int size;
+
+    ChartAnalytics(int width, boolean debug) {
+        this.debug = debug;
+        this.detector = new SwingDetector((w, index, isHigh, price) ->
+            swings.add(new SwingPoint((int) index, bars.date((int) index), isHigh, price)), width);
+    }
+
+    /**
+     * Feeds the bars appended since the last call and returns the analysis of the whole series,
+     * or null when the series does not extend the bars already consumed (different first bar,
+     * fewer bars, or a revised last bar).
+     */
+    synchronized Snapshot advance(BarSeries series) {
+        if (!extendsConsumed(series)) return null;
+        bars = series;
+        for (int i = size; i < series.size(); i++) {
+            double high = series.high(i);
+            double low = series.low(i);
+            highs.append(high);
+            lows.append(low);
+            pushLower(lowerHull, new Point(i, low));
+            pushUpper(upperHull, new Point(i, high));
+            size = i + 1;
+            detector.update(high, low);
+        }
+        settleSwings();
+        return snapshot();
+    }
+
+    int size() { return size; }
+
+    private boolean extendsConsumed(BarSeries series) {
+        if (size == 0) return true;
+        int last = size - 1;
+        return series.size() >= size
+            && series.epochDay(0) == bars.epochDay(0)
+            && series.epochDay(last) == bars.epochDay(last)
+            && series.high(last) == bars.high(last)
+            && series.low(last) == bars.low(last);
+    }
+
+    // Results as of the last bar consumed; the lists are copies safe to use after further advances
+    private Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.hullLines = hullLines();
+        if (size < MIN_BARS) return snapshot;
+
+        snapshot.swingPoints = new ArrayList<>(swings);
+        // Swings still inside their validation window pass on the neighbour checks alone
+        List<SwingPoint> valid = new ArrayList<>(validSwings);
+        for (int k = settledSwings; k < swings.size(); k++) {
+            if (passesNeighbourChecks(k, valid.size())) valid.add(swings.get(k));
+        }
+        snapshot.validSwingPoints = valid;
+
+        TreeMap<Long, FibonacciSet> sets = new TreeMap<>(settledSets);
+        for (int j = validSwings.size(); j < valid.size(); j++) addPairs(valid, j, sets);
+        for (FibonacciSet fibSet : sets.values()) {
+            updateInvalidation(fibSet);
+            snapshot.fibonacciSets.add(fibSet.copy());
+        }
+        return snapshot;
+    }
+
+    // Support (lower hull of lows) then resistance (upper hull of highs) segments, extended to the last bar
+    private List<HullLine> hullLines() {
+        List<HullLine> lines = new ArrayList<>();
+        if (size < 3) return lines;
+        // Extend each hull segment to the right edge (last candle),
+        // and skip painting the final segment if it uses the last candle.
+        addHullLines(lines, lowerHull, size - 1, true);
+        addHullLines(lines, upperHull, size - 1, false);
+        return lines;
+    }
+
+    private static void addHullLines(List<HullLine> lines, List<Point> hull, int lastIndex, boolean support) {
+        for (int i = 0; i + 1 < hull.size(); i++) {
+            Point a = hull.get(i);
+            Point b = hull.get(i + 1);
+            // Skip if this segment uses the last candle as an endpoint
+            if (a.x == lastIndex || b.x == lastIndex) {
+                continue;
+            }
+            // Do not draw segments that span fewer than 3 candles
+            // Assumption: span is measured by index gap between endpoints
+            // (i.e., require at least 3-bar separation: b.x - a.x >= 3)
+            int gap = b.x - a.x;
+            if (gap < 3) {
+                continue;
+            }
+            // Extend from point 'a' to the last index using the segment slope
+            double dx = (double) (b.x - a.x);
+            if (dx == 0) continue; // defensive
+            double slope = (b.y - a.y) / dx;
+            double yEnd = a.y + slope * (lastIndex - a.x);
+            lines.add(new HullLine(support, a.x, b.x, a.y, yEnd, slope));
+        }
+    }
+
+    // Cross product (OA x OB)
+    private static double cross(Point o, Point a, Point b) {
+        return (a.x - o.x) * (b.y - o.y) - (a.y - o.y) * (b.x - o.x);
+    }
+
+    // Monotone chain step of the lower hull for increasing x
+    private static void pushLower(List<Point> hull, Point p) {
+        while (hull.size() >= 2 && cross(hull.get(hull.size() - 2), hull.get(hull.size() - 1), p) <= 0) {
+            hull.remove(hull.size() - 1);
+        }
+        hull.add(p);
+    }
+
+    // Monotone chain step of the upper hull for increasing x
+    private static void pushUpper(List<Point> hull, Point p) {
+        while (hull.size() >= 2 && cross(hull.get(hull.size() - 2), hull.get(hull.size() - 1), p) >= 0) {
+            hull.remove(hull.size() - 1);
+        }
+        hull.add(p);
+    }
+
+    // Finalizes swings whose 10 validation bars now exist, pairing each valid one with earlier swings
+    private void settleSwings() {
+        while (settledSwings < swings.size() && swings.get(settledSwings).index + VALIDATION_BARS < size) {
+            SwingPoint current = swings.get(settledSwings);
+            boolean isValid = passesNeighbourChecks(settledSwings, validSwings.size());
+            // Time-based invalidation: the next 10 bars after swing formation must not exceed it
+            if (isValid) {
+                isValid = current.isHigh
+                    ? !(highs.query(current.index + 1, current.index + VALIDATION_BARS) > current.price)
+                    : !(lows.query(current.index + 1, current.index + VALIDATION_BARS) < current.price);
+            }
+            settledSwings++;
+            if (isValid) {
+                validSwings.add(current);
+                addPairs(validSwings, validSwings.size() - 1, settledSets);
+            }
+        }
+    }
+
+    private boolean passesNeighbourChecks(int k, int validatedBefore) {
+        if (k == 0) return true;
+        SwingPoint current = swings.get(k);
+        SwingPoint previous = swings.get(k - 1);
+        // Check minimum strength (1% price difference from adjacent swings - reduced from 2%)
+        double avgPrice = (current.price + previous.price) / 2.0;
+        double priceDiff = Math.abs(current.price - previous.price);
+        if (priceDiff / avgPrice < 0.01) return false;
+        // Check minimum separation (3 bars)
+        if (Math.abs(current.index - previous.index) < 3) return false;
+        // Check alternating pattern (high must follow low and vice versa)
+        // Allow some flexibility by skipping this check if we have very few swing points
+        return !(validatedBefore > 2 && current.isHigh == previous.isHigh);
+    }
+
+    /**
+     * Adds the Fibonacci sets anchored at every valid pair (first, points[j]) to sets, keeping the
+     * MAX_SETS latest in (first, second) order. Earlier first anchors are visited in reverse, so
+     * the swings strictly between the anchors only grow, and the scan stops once the second anchor
+     * is no longer the range extreme (it cannot be again further back) or once no earlier pair can
+     * be among the kept sets.
+     */
+    private void addPairs(List<SwingPoint> points, int j, TreeMap<Long, FibonacciSet> sets) {
+        SwingPoint second = points.get(j);
+        double insideHigh = Double.NEGATIVE_INFINITY;
+        double insideLow = Double.POSITIVE_INFINITY;
+        int folded = j;
+        for (int i = j - 1; i >= 0; i--) {
+            long key = ((long) i << 32) | j;
+            if (sets.size() >= MAX_SETS && key < sets.firstKey()) break;
+            SwingPoint first = points.get(i);
+            while (folded - 1 > i && points.get(folded - 1).index > first.index) {
+                SwingPoint intermediate = points.get(--folded);
+                if (intermediate.index >= second.index) continue;
+                if (intermediate.isHigh) insideHigh = Math.max(insideHigh, intermediate.price);
+                else insideLow = Math.min(insideLow, intermediate.price);
+            }
+
+            // Ensure chronological ordering
+            if (first.index >= second.index) continue;
+
+            double rangeMin = lows.query(first.index, second.index);
+            double rangeMax = highs.query(first.index, second.index);
+            if (!isExtreme(second.price, second.isHigh ? rangeMax : rangeMin)) break;
+
+            // Valid combinations: (low -> higher high) OR (high -> lower low)
+            boolean isValidUptrend = !first.isHigh && second.isHigh && second.price > first.price;
+            boolean isValidDowntrend = first.isHigh && !second.isHigh && second.price < first.price;
+
+            // Validate that anchors are true extremes within the date range
+            if ((isValidUptrend || isValidDowntrend) && !validateAnchorExtremes(first, second, rangeMin, rangeMax)) {
+                continue;
+            }
+
+            // Additional Dinapoli validation: Check intermediate extrema
+            // For uptrend (low->high), verify no higher high exists between first and second
+            if (isValidUptrend && insideHigh > second.price) isValidUptrend = false;
+            // For downtrend (high->low), verify no lower low exists between first and second
+            if (isValidDowntrend && insideLow < second.price) isValidDowntrend = false;
+
+            if (isValidUptrend || isValidDowntrend) {
+                double high = Math.max(first.price, second.price);
+                double low = Math.min(first.price, second.price);
+
+                // Skip if price range is too small (less than 0.5% of current price)
+                if ((high - low) / high < 0.005) continue;
+
+                sets.put(key, new FibonacciSet(first.index, second.index, first.date, high, low, isValidUptrend));
+                if (sets.size() > MAX_SETS) sets.pollFirstEntry();
+            }
+        }
+    }
+
+    /**
+     * Critical validation: Ensure that anchor points are true extremes within the full date range.
+     * For a valid Fibonacci retracement:
+     * - Low anchor must be the minimum price in the range [firstIndex, secondIndex]
+     * - High anchor must be the maximum price in the range [firstIndex, secondIndex]
+     * rangeMin and rangeMax are the lowest low and highest high of that range.
+     */
+    private boolean validateAnchorExtremes(SwingPoint first, SwingPoint second, double rangeMin, double rangeMax) {
+        // Uptrend: first is low anchor, second is high anchor; downtrend the reverse
+        double expectedLow = first.isHigh ? second.price : first.price;
+        double expectedHigh = first.isHigh ? first.price : second.price;
+
+        boolean lowAnchorValid = isExtreme(expectedLow, rangeMin);
+        boolean highAnchorValid = isExtreme(expectedHigh, rangeMax);
+
+        // Debug logging for failed validations
+        if (debug && (!lowAnchorValid || !highAnchorValid)) {
+            System.out.println("FIBONACCI VALIDATION FAILED:");
+            System.out.printf("  Expected Low: %.2f, Range Min: %.2f, Valid: %b%n", expectedLow, rangeMin, lowAnchorValid);
+            System.out.printf("  Expected High: %.2f, Range Max: %.2f, Valid: %b%n", expectedHigh, rangeMax, highAnchorValid);
+            System.out.printf("  Date Range: [%d, %d], Bars: %d%n", first.index, second.index, second.index - first.index + 1);
+        }
+
+        return lowAnchorValid && highAnchorValid;
+    }
+
+    private static boolean isExtreme(double anchor, double rangeExtreme) {
+        return Math.abs(anchor - rangeExtreme) / rangeExtreme <= ANCHOR_TOLERANCE;
+    }
+
+    /**
+     * Marks each inside level broken by any bar after the second anchor: below it for an uptrend
+     * (support break), above it for a downtrend (resistance break). Open levels only search the
+     * bars not yet scanned, in O(log n); a recorded break is final.
+     */
+    private void updateInvalidation(FibonacciSet fibSet) {
+        double priceRange = fibSet.high - fibSet.low;
+        int from = Math.max(fibSet.scanned, fibSet.endIndex + 1);
+        boolean hasValidLevel = false;
+        for (int j = 0; j < FIB_LEVELS.length; j++) {
+            if (fibSet.invalidatedAt[j] < 0) {
+                double levelPrice = fibSet.low + (priceRange * FIB_LEVELS[j]);
+                int breakIndex = fibSet.isUptrend
+                    ? lows.firstBeyond(from, levelPrice)
+                    : highs.firstBeyond(from, levelPrice);
+                fibSet.invalidatedAt[j] = breakIndex;
+                fibSet.invalidatedLevels[j] = breakIndex >= 0;
+            }
+            hasValidLevel |= !fibSet.invalidatedLevels[j];
+        }
+        // Still valid while at least 1 inside level is not invalidated
+        fibSet.isValid = hasValidLevel;
+        fibSet.scanned = size;
+    }
+
+    // Analysis of a series as of its last bar
+    static class Snapshot {
+        List<SwingPoint> swingPoints = new ArrayList<>();
+        List<SwingPoint> validSwingPoints = new ArrayList<>();
+        List<FibonacciSet> fibonacciSets = new ArrayList<>();
+        List<HullLine> hullLines = new ArrayList<>();
+    }
+
+    private static class Point {
+        final int x; // index in time order
+        final double y; // value (low/high)
+        Point(int x, double y) { this.x = x; this.y = y; }
+    }
+
+    // One hull segment extended to the last bar; slope is per bar
+    static class HullLine {
+        final boolean support;
+        final int startIndex;
+        final int throughIndex; // the segment's second hull point
+        final double startPrice;
+        final double endPrice;
+        final double slope;
+        HullLine(boolean support, int startIndex, int throughIndex, double startPrice, double endPrice, double slope) {
+            this.support = support;
+            this.startIndex = startIndex;
+            this.throughIndex = throughIndex;
+            this.startPrice = startPrice;
+            this.endPrice = endPrice;
+            this.slope = slope;
+        }
+    }
+
+    // Dinapoli Fibonacci data structures
+    static class SwingPoint {
+        final int index;
+        final LocalDate date;
+        final boolean isHigh;
+        final double price;
+
+        SwingPoint(int index, LocalDate date, boolean isHigh, double price) {
+            this.index = index;
+            this.date = date;
+            this.isHigh = isHigh;
+            this.price = price;
+        }
+    }
+
+    static class FibonacciSet {
+        final int startIndex;
+        final int endIndex;
+        final LocalDate startDate;
+        final double high;
+        final double low;
+        final boolean isUptrend;
+        boolean[] invalidatedLevels; // for 23.6%, 38.2%, 50%, 61.8%
+        int[] invalidatedAt; // first bar breaking each inside level, -1 while intact
+        boolean isValid = true;
+        int scanned; // bars before this were searched for level breaks
+
+        FibonacciSet(int startIndex, int endIndex, LocalDate startDate,
+                     double high, double low, boolean isUptrend) {
+            this.startIndex = startIndex;
+            this.endIndex = endIndex;
+            this.startDate = startDate;
+            this.high = high;
+            this.low = low;
+            this.isUptrend = isUptrend;
+            this.invalidatedLevels = new boolean[4]; // 23.6%, 38.2%, 50%, 61.8%
+            this.invalidatedAt = new int[] {-1, -1, -1, -1};
+            this.scanned = endIndex + 1;
+        }
+
+        FibonacciSet copy() {
+            FibonacciSet copy = new FibonacciSet(startIndex, endIndex, startDate, high, low, isUptrend);
+            copy.invalidatedLevels = invalidatedLevels.clone();
+            copy.invalidatedAt = invalidatedAt.clone();
+            copy.isValid = isValid;
+            copy.scanned = scanned;
+            return copy;
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package com.stockcharts.app.service;
 
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.indicator.FusedIndicatorEngine;
+import com.stockcharts.app.indicator.IndicatorExpression;
+import com.stockcharts.app.indicator.IndicatorKernels;
+import com.stockcharts.app.model.BarSeries;
 import com.stockcharts.app.model.ChartRequest;
+import com.stockcharts.app.model.FibonacciRetracement;
 import com.stockcharts.app.model.IndicatorSpec;
 import org.springframework.ai.tool.annotation.Tool;
 import com.stockcharts.app.model.LineData;
-import com.stockcharts.app.model.OhlcData;
+import com.stockcharts.app.service.ChartAnalytics.FibonacciSet;
+import com.stockcharts.app.service.ChartAnalytics.HullLine;
+import com.stockcharts.app.service.ChartAnalytics.Snapshot;
+import com.stockcharts.app.service.ChartAnalytics.SwingPoint;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartUtils;
 import org.jfree.chart.JFreeChart;
@@ -16,10 +25,6 @@ import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.xy.StandardXYItemRenderer;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import org.jfree.data.time.Day;
-import org.jfree.data.time.TimeSeries;
-import org.jfree.data.time.TimeSeriesCollection;
-import org.jfree.data.time.ohlc.OHLCSeriesCollection;
-import org.jfree.data.time.ohlc.OHLCSeries;
 
 import java.awt.*;
 import java.io.ByteArrayOutputStream;
@@ -34,10 +39,25 @@ public class ChartService {
     
     private final PolygonService polygonService;
     private final IndicatorService indicatorService;
+    // Fractal width of Fibonacci swing points: bars on each side a swing must exceed
+    private final int swingWidth;
+    // Print each rejected anchor pair (one line per swing pair, so off by default)
+    private final boolean fibonacciDebug;
+    // Analytics of recently charted series by symbol, swing width and first bar, least recently used evicted
+    private final java.util.Map<String, ChartAnalytics> analyticsCache;
     
     public ChartService(PolygonService polygonService, IndicatorService indicatorService) {
         this.polygonService = polygonService;
         this.indicatorService = indicatorService;
+        this.swingWidth = Math.max(1, Config.getIntSetting("FIBONACCI_SWING_WIDTH", 3));
+        this.fibonacciDebug = Config.getBooleanSetting("FIBONACCI_DEBUG", false);
+        int cacheSize = Math.max(1, Config.getIntSetting("CHART_ANALYTICS_CACHE_SIZE", 64));
+        this.analyticsCache = java.util.Collections.synchronizedMap(new java.util.LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(java.util.Map.Entry<String, ChartAnalytics> eldest) {
+                return size() > cacheSize;
+            }
+        });
     }
 
     static {
@@ -50,6 +70,9 @@ public class ChartService {
           "startDate ('YYYY-MM-DD'), endDate ('YYYY-MM-DD'), " +
           "indicators (comma-separated list: 'SMA:20:overlay,RSI:14:panel,MACD:12:panel'). " +
           "Indicators format: 'TYPE:PERIOD:DISPLAY' where DISPLAY is 'overlay' (same pane) or 'panel' (separate pane). " +
+          "Types: SMA, EMA, BB (Bollinger), VWAP, RSI, DPO, MACD, ATR, STOCH, OBV. " +
+          "An item may also be an expression with an optional ':overlay' or ':panel' suffix, e.g. " +
+          "'EMA(close,12)-EMA(close,26):panel', 'SMA(high-low,14)/close:panel' or 'RSI(AAPL/SPY,14):panel'. " +
           "Includes internal support/resistance trendlines based on convex hulls of highs and lows. " +
           "Returns file path to generated PNG chart.")
     public String generateChart(String symbol, String chartType, String period, String startDate, String endDate,
@@ -57,6 +80,7 @@ public class ChartService {
         try {
             ChartRequest request = new ChartRequest();
             request.setSymbol(symbol);
+            request.setSeries(symbol + "|" + (period != null ? period : "1D"));
             request.setChartType(chartType != null ? chartType : "candlestick");
             request.setPeriod(period != null ? period : "1D");
             request.setStartDate(startDate);
@@ -68,47 +92,15 @@ public class ChartService {
                 request.setIndicators(parseIndicators(indicators));
             }
             
-            // Resolve date range dynamically if not provided
-            java.time.LocalDate today = java.time.LocalDate.now();
-            java.time.LocalDate resolvedEnd = (endDate != null && !endDate.isBlank())
-                    ? java.time.LocalDate.parse(endDate)
-                    : today;
-            java.time.LocalDate resolvedStart;
-            if (startDate != null && !startDate.isBlank()) {
-                resolvedStart = java.time.LocalDate.parse(startDate);
-            } else {
-                // Use period hint to choose a sensible default
-                String p = (period != null) ? period.trim().toUpperCase() : "3M";
-                switch (p) {
-                    case "1D" -> resolvedStart = resolvedEnd.minusDays(7); // 1 week of context
-                    case "1W" -> resolvedStart = resolvedEnd.minusWeeks(1);
-                    case "1M" -> resolvedStart = resolvedEnd.minusMonths(1);
-                    case "3M" -> resolvedStart = resolvedEnd.minusMonths(3);
-                    case "6M" -> resolvedStart = resolvedEnd.minusMonths(6);
-                    case "1Y" -> resolvedStart = resolvedEnd.minusYears(1);
-                    default -> resolvedStart = resolvedEnd.minusMonths(6);
-                }
-            }
-
-            // Check if this is a ratio (contains "/")
-            java.util.List<OhlcData> stockData;
-            if (symbol.contains("/")) {
-                stockData = calculateRatioData(symbol, resolvedStart.toString(), resolvedEnd.toString());
-            } else {
-                // Get stock data from PolygonService
-                stockData = polygonService.getAggregates(
-                    symbol, "1", "day",
-                    resolvedStart.toString(),
-                    resolvedEnd.toString(),
-                    true, "asc", 10000);
-            }
-            request.setOhlcData(stockData);
+            BarSeries stockData = loadBars(symbol, period, startDate, endDate);
+            request.setBars(stockData);
+            Snapshot analysis = analyze(symbol, stockData, swingWidth);
             
             // Build internal trend lines from convex hull of highs/lows (always on; no input required)
-            java.util.List<LineData> lines = generateConvexHullTrendLines(stockData);
+            java.util.List<LineData> lines = generateConvexHullTrendLines(stockData, analysis);
             
             // Generate Dinapoli-style Fibonacci retracements
-            java.util.List<LineData> fibonacciLines = generateFibonacciRetracements(stockData);
+            java.util.List<LineData> fibonacciLines = generateFibonacciRetracements(stockData, analysis);
             lines.addAll(fibonacciLines);
             
             if (!lines.isEmpty()) {
@@ -134,6 +126,127 @@ public class ChartService {
         }
     }
 
+    @Tool(description = "Analyze a symbol or ratio without rendering a chart. Returns compact JSON with the swing points, " +
+          "convex hull support/resistance trendlines and valid Dinapoli Fibonacci sets and levels that generateChart draws, " +
+          "in milliseconds instead of rendering an image. Parameters: symbol (e.g., 'AAPL' or 'AAPL/SPY'), " +
+          "period ('1M'|'3M'|'6M'|'1Y', used when startDate is empty; default '6M'), startDate ('YYYY-MM-DD'), " +
+          "endDate ('YYYY-MM-DD'), swingWidth (bars on each side a swing must exceed; default 3). " +
+          "Swings and Fibonacci sets need at least 50 bars. Trendlines are extended to the last bar; slopes are per bar.")
+    public String analyzeChart(String symbol, String period, String startDate, String endDate, Integer swingWidth) {
+        try {
+            BarSeries bars = loadBars(symbol, period != null && !period.isBlank() ? period : "6M", startDate, endDate);
+            if (bars.isEmpty()) return "No data for " + symbol;
+            int width = swingWidth != null && swingWidth > 0 ? swingWidth : this.swingWidth;
+
+            long startNanos = System.nanoTime();
+            Snapshot analysis = analyze(symbol, bars, width);
+            long micros = (System.nanoTime() - startNanos) / 1_000;
+            return objectMapper.writeValueAsString(analysisJson(symbol, bars, width, analysis, micros));
+        } catch (Exception e) {
+            return "Error analyzing chart: " + e.getMessage();
+        }
+    }
+
+    private com.fasterxml.jackson.databind.node.ObjectNode analysisJson(String symbol, BarSeries bars, int width,
+            Snapshot analysis, long micros) {
+        com.fasterxml.jackson.databind.node.ObjectNode root = objectMapper.createObjectNode();
+        int last = bars.size() - 1;
+        root.put("symbol", symbol.toUpperCase());
+        root.put("from", bars.date(0).toString());
+        root.put("to", bars.date(last).toString());
+        root.put("bars", bars.size());
+        root.put("lastClose", price(bars.close(last)));
+        root.put("swingWidth", width);
+
+        java.util.Set<SwingPoint> validated = java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+        validated.addAll(analysis.validSwingPoints);
+        com.fasterxml.jackson.databind.node.ArrayNode swings = root.putArray("swingPoints");
+        for (SwingPoint swing : analysis.swingPoints) {
+            swings.addObject()
+                .put("date", swing.date.toString())
+                .put("type", swing.isHigh ? "high" : "low")
+                .put("price", price(swing.price))
+                .put("validated", validated.contains(swing));
+        }
+
+        com.fasterxml.jackson.databind.node.ArrayNode trendlines = root.putArray("trendlines");
+        for (HullLine line : analysis.hullLines) {
+            trendlines.addObject()
+                .put("type", line.support ? "support" : "resistance")
+                .put("startDate", bars.date(line.startIndex).toString())
+                .put("startPrice", price(line.startPrice))
+                .put("throughDate", bars.date(line.throughIndex).toString())
+                .put("endDate", bars.date(last).toString())
+                .put("endPrice", price(line.endPrice))
+                .put("slope", price(line.slope));
+        }
+
+        com.fasterxml.jackson.databind.node.ArrayNode fibonacci = root.putArray("fibonacci");
+        for (FibonacciSet fibSet : analysis.fibonacciSets) {
+            if (!fibSet.isValid) continue;
+            com.fasterxml.jackson.databind.node.ObjectNode set = fibonacci.addObject()
+                .put("trend", fibSet.isUptrend ? "up" : "down")
+                .put("startDate", fibSet.startDate.toString())
+                .put("endDate", bars.date(fibSet.endIndex).toString())
+                .put("low", price(fibSet.low))
+                .put("high", price(fibSet.high));
+            com.fasterxml.jackson.databind.node.ArrayNode levels = set.putArray("levels");
+            for (int j = 0; j < FibonacciRetracement.INSIDE_RATIOS.length; j++) {
+                double ratio = FibonacciRetracement.INSIDE_RATIOS[j];
+                com.fasterxml.jackson.databind.node.ObjectNode level = levels.addObject()
+                    .put("ratio", ratio)
+                    .put("price", price(fibSet.low + (fibSet.high - fibSet.low) * ratio))
+                    .put("valid", !fibSet.invalidatedLevels[j]);
+                if (fibSet.invalidatedAt[j] >= 0) level.put("invalidatedOn", bars.date(fibSet.invalidatedAt[j]).toString());
+            }
+        }
+        root.put("computeMicros", micros);
+        return root;
+    }
+
+    // Six significant digits keeps the JSON compact for prices and ratios alike
+    private static double price(double value) {
+        if (!Double.isFinite(value) || value == 0) return value;
+        return new java.math.BigDecimal(value).round(new java.math.MathContext(6)).doubleValue();
+    }
+
+    // Daily bars of a symbol or ratio; without a start date the period picks the lookback
+    private BarSeries loadBars(String symbol, String period, String startDate, String endDate)
+            throws IOException, InterruptedException {
+        // Resolve date range dynamically if not provided
+        java.time.LocalDate today = java.time.LocalDate.now();
+        java.time.LocalDate resolvedEnd = (endDate != null && !endDate.isBlank())
+                ? java.time.LocalDate.parse(endDate)
+                : today;
+        java.time.LocalDate resolvedStart;
+        if (startDate != null && !startDate.isBlank()) {
+            resolvedStart = java.time.LocalDate.parse(startDate);
+        } else {
+            // Use period hint to choose a sensible default
+            String p = (period != null) ? period.trim().toUpperCase() : "3M";
+            switch (p) {
+                case "1D" -> resolvedStart = resolvedEnd.minusDays(7); // 1 week of context
+                case "1W" -> resolvedStart = resolvedEnd.minusWeeks(1);
+                case "1M" -> resolvedStart = resolvedEnd.minusMonths(1);
+                case "3M" -> resolvedStart = resolvedEnd.minusMonths(3);
+                case "6M" -> resolvedStart = resolvedEnd.minusMonths(6);
+                case "1Y" -> resolvedStart = resolvedEnd.minusYears(1);
+                default -> resolvedStart = resolvedEnd.minusMonths(6);
+            }
+        }
+
+        // Check if this is a ratio (contains "/")
+        if (symbol.contains("/")) {
+            return calculateRatioData(symbol, resolvedStart.toString(), resolvedEnd.toString());
+        }
+        // Get stock data from PolygonService
+        return polygonService.getBars(
+            symbol, "1", "day",
+            resolvedStart.toString(),
+            resolvedEnd.toString(),
+            true, "asc", 10000);
+    }
+
     @Tool(description = "Generate a comprehensive stock chart from provided OHLC data with technical indicators and Fibonacci retracements. " +
           "Parameters: ohlcDataJson (JSON array of OHLC objects with format [{\"date\":\"YYYY-MM-DD\",\"open\":123.45,\"high\":125.67,\"low\":121.23,\"close\":124.56}]), " +
           "title (optional chart title), chartType ('candlestick'|'line'|'ohlc'), " +
@@ -143,9 +256,9 @@ public class ChartService {
     public String generateChartFromData(String ohlcDataJson, String title, String chartType, String indicators) {
         try {
             // Parse the OHLC data from JSON
-            java.util.List<OhlcData> stockData = parseOhlcDataFromJson(ohlcDataJson);
+            BarSeries stockData = parseOhlcDataFromJson(ohlcDataJson);
             
-            if (stockData == null || stockData.isEmpty()) {
+            if (stockData.isEmpty()) {
                 return "Error: No valid OHLC data provided";
             }
             
@@ -153,18 +266,20 @@ public class ChartService {
             request.setSymbol(title != null ? title : "Custom Data");
             request.setChartType(chartType != null ? chartType : "candlestick");
             request.setTitle(title != null ? title : "Custom OHLC Chart");
-            request.setOhlcData(stockData);
+            request.setBars(stockData);
 
             // Parse indicators, if provided
             if (indicators != null && !indicators.trim().isEmpty()) {
                 request.setIndicators(parseIndicators(indicators));
             }
             
+            Snapshot analysis = analyze(stockData, swingWidth);
+            
             // Build internal trend lines from convex hull of highs/lows
-            java.util.List<LineData> lines = generateConvexHullTrendLines(stockData);
+            java.util.List<LineData> lines = generateConvexHullTrendLines(stockData, analysis);
             
             // Generate Dinapoli-style Fibonacci retracements
-            java.util.List<LineData> fibonacciLines = generateFibonacciRetracements(stockData);
+            java.util.List<LineData> fibonacciLines = generateFibonacciRetracements(stockData, analysis);
             lines.addAll(fibonacciLines);
             
             if (!lines.isEmpty()) {
@@ -189,13 +304,12 @@ public class ChartService {
         }
     }
 
-    private java.util.List<OhlcData> parseOhlcDataFromJson(String jsonString) {
+    private BarSeries parseOhlcDataFromJson(String jsonString) {
         try {
             com.fasterxml.jackson.databind.JsonNode root = objectMapper.readTree(jsonString);
-            java.util.List<OhlcData> ohlcDataList = new java.util.ArrayList<>();
+            BarSeries.Builder bars = new BarSeries.Builder(root.isArray() ? root.size() : 1);
             
             if (root.isArray()) {
-                double previousClose = 0.0;
                 for (int i = 0; i < root.size(); i++) {
                     com.fasterxml.jackson.databind.JsonNode node = root.get(i);
                     String dateStr = node.has("date") ? node.get("date").asText() : null;
@@ -203,424 +317,62 @@ public class ChartService {
                     double high = node.has("high") ? node.get("high").asDouble() : 0.0;
                     double low = node.has("low") ? node.get("low").asDouble() : 0.0;
                     double close = node.has("close") ? node.get("close").asDouble() : 0.0;
-                    
-                    // Calculate percent return or use provided value
-                    double percentReturn = node.has("percentReturn") ? 
-                        node.get("percentReturn").asDouble() : 
-                        ((i == 0 || previousClose == 0.0) ? 1.0 : close / previousClose);
+                    double volume = node.has("volume") ? node.get("volume").asDouble() : 0.0;
                     
                     if (dateStr != null) {
-                        java.time.LocalDate date = java.time.LocalDate.parse(dateStr);
-                        ohlcDataList.add(new OhlcData(date, open, high, low, close, percentReturn));
-                        previousClose = close;
+                        bars.add((int) java.time.LocalDate.parse(dateStr).toEpochDay(), open, high, low, close, volume);
                     }
                 }
             }
             
-            return ohlcDataList;
+            return bars.build();
         } catch (Exception e) {
             e.printStackTrace();
-            return new java.util.ArrayList<>();
+            return BarSeries.empty();
         }
     }
 
     // Add Jackson ObjectMapper for JSON parsing
     private final com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
 
+    /**
+     * Analysis of a symbol's bars, advancing the cached analytics of the same series by only the
+     * bars appended since its last call. Series that do not extend the cached one (an earlier end,
+     * a revised last bar) are analyzed from scratch and replace it.
+     */
+    private Snapshot analyze(String symbol, BarSeries bars, int width) {
+        if (bars.isEmpty()) return analyze(bars, width);
+        String key = symbol.toUpperCase() + "|" + width + "|" + bars.epochDay(0);
+        ChartAnalytics cached = analyticsCache.get(key);
+        Snapshot analysis = cached != null ? cached.advance(bars) : null;
+        if (analysis != null) return analysis;
+        ChartAnalytics analytics = new ChartAnalytics(width, fibonacciDebug);
+        analysis = analytics.advance(bars);
+        analyticsCache.put(key, analytics);
+        return analysis;
+    }
+
+    // Analysis of bars not tied to a symbol, from scratch
+    private Snapshot analyze(BarSeries bars, int width) {
+        return new ChartAnalytics(width, fibonacciDebug).advance(bars);
+    }
+
     // Compute internal trend lines using Lower/Upper Convex Hulls constructed from lows and highs.
     // Lower hull connects support extrema (lows) with segments that stay below all intervening lows.
     // Upper hull connects resistance extrema (highs) with segments that stay above all intervening highs.
-    private java.util.List<LineData> generateConvexHullTrendLines(java.util.List<OhlcData> data) {
+    private java.util.List<LineData> generateConvexHullTrendLines(BarSeries data, Snapshot analysis) {
         java.util.List<LineData> lines = new java.util.ArrayList<>();
         if (data == null || data.size() < 3) return lines;
-
-        // Build arrays of points: (x=index, y=value, date=LocalDate)
-        java.util.List<Point> lowPoints = new java.util.ArrayList<>(data.size());
-        java.util.List<Point> highPoints = new java.util.ArrayList<>(data.size());
-        for (int i = 0; i < data.size(); i++) {
-            OhlcData d = data.get(i);
-            lowPoints.add(new Point(i, d.getLow(), d.getDate()));
-            highPoints.add(new Point(i, d.getHigh(), d.getDate()));
-        }
-
-        java.util.List<Point> lowerHull = monotoneChainLower(lowPoints);
-        java.util.List<Point> upperHull = monotoneChainUpper(highPoints);
-
-        // Extend each hull segment to the right edge (last candle),
-        // and skip painting the final segment if it uses the last candle.
-        int lastIndex = data.size() - 1;
-        java.time.LocalDate lastDate = data.get(lastIndex).getDate();
-
-        // Lower hull (support) in green
-        for (int i = 0; i + 1 < lowerHull.size(); i++) {
-            Point a = lowerHull.get(i);
-            Point b = lowerHull.get(i + 1);
-            // Skip if this segment uses the last candle as an endpoint
-            if (a.x == lastIndex || b.x == lastIndex) {
-                continue;
-            }
-            // Do not draw segments that span fewer than 3 candles
-            // Assumption: span is measured by index gap between endpoints
-            // (i.e., require at least 3-bar separation: b.x - a.x >= 3)
-            int gap = b.x - a.x;
-            if (gap < 3) {
-                continue;
-            }
-            // Extend from point 'a' to the last index using the segment slope
-            double dx = (double) (b.x - a.x);
-            if (dx == 0) continue; // defensive
-            double slope = (b.y - a.y) / dx;
-            double yEnd = a.y + slope * (lastIndex - a.x);
-            LineData line = new LineData(a.date, lastDate, a.y, yEnd);
-            line.setColor("#2ECC71"); // green
-            line.setStrokeWidth(2.0f);
-            lines.add(line);
-        }
-
-        // Upper hull (resistance) in red
-        for (int i = 0; i + 1 < upperHull.size(); i++) {
-            Point a = upperHull.get(i);
-            Point b = upperHull.get(i + 1);
-            // Skip if this segment uses the last candle as an endpoint
-            if (a.x == lastIndex || b.x == lastIndex) {
-                continue;
-            }
-            // Do not draw segments that span fewer than 3 candles
-            int gap = b.x - a.x;
-            if (gap < 3) {
-                continue;
-            }
-            double dx = (double) (b.x - a.x);
-            if (dx == 0) continue; // defensive
-            double slope = (b.y - a.y) / dx;
-            double yEnd = a.y + slope * (lastIndex - a.x);
-            LineData line = new LineData(a.date, lastDate, a.y, yEnd);
-            line.setColor("#E74C3C"); // red
+        java.time.LocalDate lastDate = data.date(data.size() - 1);
+        for (HullLine hullLine : analysis.hullLines) {
+            LineData line = new LineData(data.date(hullLine.startIndex), lastDate, hullLine.startPrice, hullLine.endPrice);
+            line.setColor(hullLine.support ? "#2ECC71" : "#E74C3C"); // green support, red resistance
             line.setStrokeWidth(2.0f);
             lines.add(line);
         }
-
         return lines;
     }
 
-    // Helper data structure
-    private static class Point {
-        final int x; // index in time order
-        final double y; // value (low/high)
-        final java.time.LocalDate date;
-        Point(int x, double y, java.time.LocalDate date) { this.x = x; this.y = y; this.date = date; }
-    }
-    
-    // Dinapoli Fibonacci data structures
-    private static class SwingPoint {
-        int index;
-        java.time.LocalDate date;
-        boolean isHigh;
-        double price;
-        
-        SwingPoint(int index, java.time.LocalDate date, boolean isHigh, double price) {
-            this.index = index;
-            this.date = date;
-            this.isHigh = isHigh;
-            this.price = price;
-        }
-    }
-    
-    private static class FibonacciSet {
-        int startIndex;
-        int endIndex;
-        java.time.LocalDate startDate;
-        double high;
-        double low;
-        boolean[] invalidatedLevels; // for 23.6%, 38.2%, 50%, 61.8%
-        boolean isValid = true;
-        boolean isUptrend = true;
-        
-        FibonacciSet(int startIndex, int endIndex, java.time.LocalDate startDate, 
-                    double high, double low, boolean isUptrend) {
-            this.startIndex = startIndex;
-            this.endIndex = endIndex;
-            this.startDate = startDate;
-            this.high = high;
-            this.low = low;
-            this.isUptrend = isUptrend;
-            this.invalidatedLevels = new boolean[4]; // 23.6%, 38.2%, 50%, 61.8%
-        }
-    }
-
-    // Cross product (OA x OB)
-    private static double cross(Point o, Point a, Point b) {
-        return (a.x - o.x) * (b.y - o.y) - (a.y - o.y) * (b.x - o.x);
-    }
-
-    // Build lower convex hull for monotone increasing x
-    private static java.util.List<Point> monotoneChainLower(java.util.List<Point> pts) {
-        java.util.List<Point> hull = new java.util.ArrayList<>();
-        for (Point p : pts) {
-            while (hull.size() >= 2 && cross(hull.get(hull.size() - 2), hull.get(hull.size() - 1), p) <= 0) {
-                hull.remove(hull.size() - 1);
-            }
-            hull.add(p);
-        }
-        return hull;
-    }
-
-    // Build upper convex hull for monotone increasing x
-    private static java.util.List<Point> monotoneChainUpper(java.util.List<Point> pts) {
-        java.util.List<Point> hull = new java.util.ArrayList<>();
-        for (Point p : pts) {
-            while (hull.size() >= 2 && cross(hull.get(hull.size() - 2), hull.get(hull.size() - 1), p) >= 0) {
-                hull.remove(hull.size() - 1);
-            }
-            hull.add(p);
-        }
-        return hull;
-    }
-    
-    // Dinapoli Fibonacci implementation
-    private java.util.List<SwingPoint> detectSwingPoints(java.util.List<OhlcData> data) {
-        java.util.List<SwingPoint> swingPoints = new java.util.ArrayList<>();
-        if (data == null || data.size() < 11) return swingPoints; // Need at least 11 bars for 5-bar fractals
-        
-        // Check each bar for swing high/low with 3-bar fractal period (relaxed from 5)
-        for (int i = 3; i < data.size() - 3; i++) {
-            OhlcData current = data.get(i);
-            
-            // Check for swing high
-            boolean isSwingHigh = true;
-            for (int j = i - 3; j < i; j++) {
-                if (data.get(j).getHigh() >= current.getHigh()) {
-                    isSwingHigh = false;
-                    break;
-                }
-            }
-            if (isSwingHigh) {
-                for (int j = i + 1; j <= i + 3; j++) {
-                    if (data.get(j).getHigh() >= current.getHigh()) {
-                        isSwingHigh = false;
-                        break;
-                    }
-                }
-            }
-            
-            // Check for swing low
-            boolean isSwingLow = true;
-            for (int j = i - 3; j < i; j++) {
-                if (data.get(j).getLow() <= current.getLow()) {
-                    isSwingLow = false;
-                    break;
-                }
-            }
-            if (isSwingLow) {
-                for (int j = i + 1; j <= i + 3; j++) {
-                    if (data.get(j).getLow() <= current.getLow()) {
-                        isSwingLow = false;
-                        break;
-                    }
-                }
-            }
-            
-            if (isSwingHigh) {
-                swingPoints.add(new SwingPoint(i, current.getDate(), true, current.getHigh()));
-            }
-            if (isSwingLow) {
-                swingPoints.add(new SwingPoint(i, current.getDate(), false, current.getLow()));
-            }
-        }
-        
-        return swingPoints;
-    }
-    
-    private java.util.List<SwingPoint> validateSwingPoints(java.util.List<SwingPoint> swingPoints, 
-                                                           java.util.List<OhlcData> data) {
-        java.util.List<SwingPoint> validatedPoints = new java.util.ArrayList<>();
-        
-        for (int i = 0; i < swingPoints.size(); i++) {
-            SwingPoint current = swingPoints.get(i);
-            boolean isValid = true;
-            
-            // Check minimum strength (1% price difference from adjacent swings - reduced from 2%)
-            if (i > 0) {
-                SwingPoint previous = swingPoints.get(i - 1);
-                double avgPrice = (current.price + previous.price) / 2.0;
-                double priceDiff = Math.abs(current.price - previous.price);
-                if (priceDiff / avgPrice < 0.01) {
-                    isValid = false;
-                }
-                
-                // Check minimum separation (3 bars)
-                if (Math.abs(current.index - previous.index) < 3) {
-                    isValid = false;
-                }
-                
-                // Check alternating pattern (high must follow low and vice versa)
-                // Allow some flexibility by skipping this check if we have very few swing points
-                if (validatedPoints.size() > 2 && current.isHigh == previous.isHigh) {
-                    isValid = false;
-                }
-            }
-            
-            // Time-based invalidation: check next 10 bars after swing formation
-            if (isValid && current.index + 10 < data.size()) {
-                for (int j = current.index + 1; j <= Math.min(current.index + 10, data.size() - 1); j++) {
-                    OhlcData futureBar = data.get(j);
-                    if (current.isHigh && futureBar.getHigh() > current.price) {
-                        isValid = false;
-                        break;
-                    }
-                    if (!current.isHigh && futureBar.getLow() < current.price) {
-                        isValid = false;
-                        break;
-                    }
-                }
-            }
-            
-            if (isValid) {
-                validatedPoints.add(current);
-            }
-        }
-        
-        return validatedPoints;
-    }
-    
-    /**
-     * Critical validation: Ensure that anchor points are true extremes within the full date range.
-     * For a valid Fibonacci retracement:
-     * - Low anchor must be the minimum price in the range [firstIndex, secondIndex]
-     * - High anchor must be the maximum price in the range [firstIndex, secondIndex]
-     */
-    private boolean validateAnchorExtremes(SwingPoint first, SwingPoint second, java.util.List<OhlcData> data) {
-        int startIndex = Math.min(first.index, second.index);
-        int endIndex = Math.max(first.index, second.index);
-        
-        // Find actual min and max within the date range
-        double rangeMin = Double.MAX_VALUE;
-        double rangeMax = Double.MIN_VALUE;
-        
-        for (int i = startIndex; i <= endIndex; i++) {
-            OhlcData bar = data.get(i);
-            rangeMin = Math.min(rangeMin, bar.getLow());
-            rangeMax = Math.max(rangeMax, bar.getHigh());
-        }
-        
-        // Determine which should be low/high anchor based on swing types
-        double expectedLow, expectedHigh;
-        if (!first.isHigh && second.isHigh) {
-            // Uptrend: first is low anchor, second is high anchor
-            expectedLow = first.price;
-            expectedHigh = second.price;
-        } else if (first.isHigh && !second.isHigh) {
-            // Downtrend: first is high anchor, second is low anchor
-            expectedLow = second.price;
-            expectedHigh = first.price;
-        } else {
-            // Invalid combination
-            return false;
-        }
-        
-        // Validate anchors are true extremes (allow small tolerance for minor wicks)
-        double tolerance = 0.001; // 0.1% tolerance for minor price differences
-        boolean lowAnchorValid = Math.abs(expectedLow - rangeMin) / rangeMin <= tolerance;
-        boolean highAnchorValid = Math.abs(expectedHigh - rangeMax) / rangeMax <= tolerance;
-        
-        // Debug logging for failed validations
-        if (!lowAnchorValid || !highAnchorValid) {
-            System.out.println("FIBONACCI VALIDATION FAILED:");
-            System.out.printf("  Expected Low: %.2f, Range Min: %.2f, Valid: %b%n", expectedLow, rangeMin, lowAnchorValid);
-            System.out.printf("  Expected High: %.2f, Range Max: %.2f, Valid: %b%n", expectedHigh, rangeMax, highAnchorValid);
-            System.out.printf("  Date Range: [%d, %d], Bars: %d%n", startIndex, endIndex, endIndex - startIndex + 1);
-        }
-        
-        return lowAnchorValid && highAnchorValid;
-    }
-    
-    private java.util.List<FibonacciSet> createFibonacciSets(java.util.List<SwingPoint> swingPoints, 
-                                                           java.util.List<OhlcData> data) {
-        java.util.List<FibonacciSet> fibonacciSets = new java.util.ArrayList<>();
-        if (swingPoints.size() < 2) return fibonacciSets;
-        
-        // Process ALL possible pairs of swing points, not just consecutive ones
-        for (int i = 0; i < swingPoints.size(); i++) {
-            SwingPoint first = swingPoints.get(i);
-            
-            // Check all subsequent swing points as potential pairs
-            for (int j = i + 1; j < swingPoints.size(); j++) {
-                SwingPoint second = swingPoints.get(j);
-                
-                // Ensure chronological ordering
-                if (first.index >= second.index) continue;
-                
-                // Valid combinations: (low -> higher high) OR (high -> lower low)
-                boolean isValidUptrend = !first.isHigh && second.isHigh && second.price > first.price;
-                boolean isValidDowntrend = first.isHigh && !second.isHigh && second.price < first.price;
-                
-                // CRITICAL IMPROVEMENT: Validate that anchors are true extremes within the date range
-                if (isValidUptrend || isValidDowntrend) {
-                    boolean validAnchors = validateAnchorExtremes(first, second, data);
-                    if (!validAnchors) {
-                        isValidUptrend = false;
-                        isValidDowntrend = false;
-                    }
-                }
-                
-                // Additional Dinapoli validation: Check intermediate extrema
-                if (isValidUptrend) {
-                    // For uptrend (low->high), verify no higher high exists between first and second
-                    boolean hasHigherHigh = false;
-                    for (int k = 0; k < swingPoints.size(); k++) {
-                        SwingPoint intermediate = swingPoints.get(k);
-                        if (intermediate.index > first.index && intermediate.index < second.index && 
-                            intermediate.isHigh && intermediate.price > second.price) {
-                            hasHigherHigh = true;
-                            break;
-                        }
-                    }
-                    if (hasHigherHigh) isValidUptrend = false;
-                }
-                
-                if (isValidDowntrend) {
-                    // For downtrend (high->low), verify no lower low exists between first and second
-                    boolean hasLowerLow = false;
-                    for (int k = 0; k < swingPoints.size(); k++) {
-                        SwingPoint intermediate = swingPoints.get(k);
-                        if (intermediate.index > first.index && intermediate.index < second.index && 
-                            !intermediate.isHigh && intermediate.price < second.price) {
-                            hasLowerLow = true;
-                            break;
-                        }
-                    }
-                    if (hasLowerLow) isValidDowntrend = false;
-                }
-                
-                if (isValidUptrend || isValidDowntrend) {
-                    double high = Math.max(first.price, second.price);
-                    double low = Math.min(first.price, second.price);
-                    
-                    // Skip if price range is too small (less than 0.5% of current price)
-                    if ((high - low) / high < 0.005) continue;
-                    
-                    FibonacciSet fibSet = new FibonacciSet(
-                        first.index, 
-                        second.index,
-                        first.date, // Start from the earlier date
-                        high, 
-                        low, 
-                        isValidUptrend
-                    );
-                    
-                    fibonacciSets.add(fibSet);
-                }
-            }
-        }
-        
-        // Limit to maximum 8 concurrent sets to avoid clutter
-        if (fibonacciSets.size() > 8) {
-            fibonacciSets = fibonacciSets.subList(fibonacciSets.size() - 8, fibonacciSets.size());
-        }
-        
-        return fibonacciSets;
-    }
-    
     private java.util.Map<Double, Double> calculateFibonacciLevels(FibonacciSet fibSet) {
         java.util.Map<Double, Double> levels = new java.util.LinkedHashMap<>();
         
@@ -637,98 +389,58 @@ public class ChartService {
         return levels;
     }
     
-    private void validateFibonacciLevels(java.util.List<FibonacciSet> fibonacciSets, java.util.List<OhlcData> data) {
-        for (FibonacciSet fibSet : fibonacciSets) {
-            java.util.Map<Double, Double> levels = calculateFibonacciLevels(fibSet);
-            
-            // Check invalidation from swing end + 1 to last bar
-            for (int i = fibSet.endIndex + 1; i < data.size(); i++) {
-                OhlcData bar = data.get(i);
-                
-                // Check each inside level for directional invalidation
-                double[] fibLevels = {0.236, 0.382, 0.500, 0.618};
-                for (int j = 0; j < fibLevels.length; j++) {
-                    double levelPrice = levels.get(fibLevels[j]);
-                    
-                    // Directional invalidation based on trend direction
-                    if (fibSet.isUptrend) {
-                        // Uptrend (low->high): Level invalidated when price breaks BELOW (support break)
-                        if (bar.getLow() < levelPrice) {
-                            fibSet.invalidatedLevels[j] = true;
-                        }
-                    } else {
-                        // Downtrend (high->low): Level invalidated when price breaks ABOVE (resistance break)
-                        if (bar.getHigh() > levelPrice) {
-                            fibSet.invalidatedLevels[j] = true;
-                        }
-                    }
-                }
-            }
-            
-            // Check if set is still valid (at least 1 inside level not invalidated)
-            boolean hasValidLevel = false;
-            for (boolean invalidated : fibSet.invalidatedLevels) {
-                if (!invalidated) {
-                    hasValidLevel = true;
-                    break;
-                }
-            }
-            fibSet.isValid = hasValidLevel;
-        }
+    /**
+     * Valid Fibonacci sets of the series, oldest pair first: the sets generateChart draws.
+     * Uses only the bars given, so a prefix of a series yields the sets known at its last bar.
+     */
+    public java.util.List<FibonacciRetracement> fibonacciRetracements(BarSeries data) {
+        return fibonacciRetracements(data, analyze(data, swingWidth));
     }
-    
-    private java.util.List<LineData> generateFibonacciRetracements(java.util.List<OhlcData> data) {
-        java.util.List<LineData> fibonacciLines = new java.util.ArrayList<>();
-        
-        if (data == null || data.size() < 50) return fibonacciLines; // Minimum 50 bars required
-        
-        // Step 1: Detect swing points
-        java.util.List<SwingPoint> swingPoints = detectSwingPoints(data);
-        
-        // Debug for AAPL: Check if we detect the key swing points
-        if (data.get(0).getDate().getYear() == 2024 && data.get(0).getDate().getMonth().getValue() == 9) {
-            System.out.println("DEBUG AAPL: Total swing points detected: " + swingPoints.size());
-            for (SwingPoint sp : swingPoints) {
-                if ((sp.isHigh && sp.price > 235) || (!sp.isHigh && sp.price < 225)) {
-                    System.out.println("DEBUG AAPL: Key swing - " + (sp.isHigh ? "HIGH" : "LOW") + 
-                                     " at $" + String.format("%.2f", sp.price) + " on " + sp.date);
-                }
-            }
-        }
-        
-        // Step 2: Validate swing points
-        java.util.List<SwingPoint> validSwingPoints = validateSwingPoints(swingPoints, data);
-        
-        if (data.get(0).getDate().getYear() == 2024 && data.get(0).getDate().getMonth().getValue() == 9) {
-            System.out.println("DEBUG AAPL: Valid swing points after validation: " + validSwingPoints.size());
-            for (SwingPoint sp : validSwingPoints) {
-                if ((sp.isHigh && sp.price > 235) || (!sp.isHigh && sp.price < 225)) {
-                    System.out.println("DEBUG AAPL: Valid key swing - " + (sp.isHigh ? "HIGH" : "LOW") + 
-                                     " at $" + String.format("%.2f", sp.price) + " on " + sp.date);
-                }
-            }
+
+    /**
+     * The valid Fibonacci sets as of each end bar, as fibonacciRetracements(bars.first(end + 1))
+     * would return them, from one analysis advanced through the ends in ascending order.
+     */
+    public java.util.Map<Integer, java.util.List<FibonacciRetracement>> fibonacciRetracements(BarSeries bars,
+                                                                                             int[] ends) {
+        int[] sorted = ends.clone();
+        java.util.Arrays.sort(sorted);
+        ChartAnalytics analytics = new ChartAnalytics(swingWidth, fibonacciDebug);
+        java.util.Map<Integer, java.util.List<FibonacciRetracement>> snapshots = new java.util.HashMap<>();
+        for (int end : sorted) {
+            BarSeries prefix = bars.first(end + 1);
+            snapshots.put(end, fibonacciRetracements(prefix, analytics.advance(prefix)));
+        }
+        return snapshots;
+    }
+
+    private static java.util.List<FibonacciRetracement> fibonacciRetracements(BarSeries data, Snapshot analysis) {
+        java.util.List<FibonacciRetracement> result = new java.util.ArrayList<>();
+        for (FibonacciSet fibSet : analysis.fibonacciSets) {
+            if (!fibSet.isValid) continue;
+            result.add(new FibonacciRetracement(fibSet.startIndex, fibSet.endIndex, fibSet.startDate,
+                data.date(fibSet.endIndex), fibSet.high, fibSet.low, fibSet.isUptrend, fibSet.invalidatedLevels.clone(),
+                invalidationDates(fibSet, data)));
         }
-        
-        // Step 3: Create Fibonacci sets (now considers all possible pairs and validates anchor extremes)
-        java.util.List<FibonacciSet> fibonacciSets = createFibonacciSets(validSwingPoints, data);
-        
-        // Step 4: Validate Fibonacci levels
-        validateFibonacciLevels(fibonacciSets, data);
-        
-        if (data.get(0).getDate().getYear() == 2024 && data.get(0).getDate().getMonth().getValue() == 9) {
-            System.out.println("DEBUG AAPL: Fibonacci sets created: " + fibonacciSets.size());
-            for (FibonacciSet fs : fibonacciSets) {
-                if (fs.high > 235 || fs.low < 225) {
-                    System.out.println("DEBUG AAPL: Key Fib set - HIGH: $" + String.format("%.2f", fs.high) + 
-                                     " LOW: $" + String.format("%.2f", fs.low) + " Valid: " + fs.isValid + 
-                                     " Uptrend: " + fs.isUptrend);
-                }
-            }
+        return result;
+    }
+
+    private static java.time.LocalDate[] invalidationDates(FibonacciSet fibSet, BarSeries data) {
+        java.time.LocalDate[] dates = new java.time.LocalDate[fibSet.invalidatedAt.length];
+        for (int j = 0; j < dates.length; j++) {
+            if (fibSet.invalidatedAt[j] >= 0) dates[j] = data.date(fibSet.invalidatedAt[j]);
         }
+        return dates;
+    }
+
+    private java.util.List<LineData> generateFibonacciRetracements(BarSeries data, Snapshot analysis) {
+        java.util.List<LineData> fibonacciLines = new java.util.ArrayList<>();
+        java.util.List<FibonacciSet> fibonacciSets = analysis.fibonacciSets;
+        if (fibonacciSets.isEmpty()) return fibonacciLines;
         
         // Step 5: Generate line data for rendering
         String[] colorPalette = {"#E74C3C", "#3498DB", "#9B59B6", "#F39C12", "#1ABC9C", "#E67E22", "#8E44AD", "#27AE60"};
-        java.time.LocalDate lastDate = data.get(data.size() - 1).getDate();
+        java.time.LocalDate lastDate = data.date(data.size() - 1);
         
         int colorIndex = 0;
         for (FibonacciSet fibSet : fibonacciSets) {
@@ -800,19 +512,16 @@ public class ChartService {
     }
 
     private JFreeChart createOHLCChart(ChartRequest request) {
-        OHLCSeries series = new OHLCSeries("Stock Data");
-        
         double minLow = Double.POSITIVE_INFINITY;
         double maxHigh = Double.NEGATIVE_INFINITY;
-        for (OhlcData data : request.getOhlcData()) {
-            Date date = Date.from(data.getDate().atStartOfDay(ZoneId.systemDefault()).toInstant());
-            series.add(new Day(date), data.getOpen(), data.getHigh(), data.getLow(), data.getClose());
-            if (data.getLow() < minLow) minLow = data.getLow();
-            if (data.getHigh() > maxHigh) maxHigh = data.getHigh();
+        BarSeries bars = request.getBars();
+        for (int i = 0; i < bars.size(); i++) {
+            if (bars.low(i) < minLow) minLow = bars.low(i);
+            if (bars.high(i) > maxHigh) maxHigh = bars.high(i);
         }
         
-        OHLCSeriesCollection dataset = new OHLCSeriesCollection();
-        dataset.addSeries(series);
+        // The bar columns are plotted in place; indicator datasets reuse its day positions
+        BarSeriesOHLCDataset dataset = new BarSeriesOHLCDataset("Stock Data", bars);
         
         JFreeChart chart = ChartFactory.createCandlestickChart(
                 null,
@@ -931,8 +640,12 @@ public class ChartService {
 
     private java.util.List<IndicatorSpec> parseIndicators(String indicatorsArg) {
         java.util.List<IndicatorSpec> list = new java.util.ArrayList<>();
-        for (String part : indicatorsArg.split(",")) {
+        for (String part : splitTopLevel(indicatorsArg)) {
             if (part == null || part.trim().isEmpty()) continue;
+            if (isExpression(part)) {
+                list.add(parseExpression(part.trim()));
+                continue;
+            }
             String[] tokens = part.trim().split(":");
             String type = tokens[0].trim().toUpperCase();
             int period = 0;
@@ -948,7 +661,7 @@ public class ChartService {
             if (period <= 0) {
                 period = switch (type) {
                     case "RSI" -> 14;
-                    case "SMA", "EMA", "DPO", "DETRENDED" -> 20;
+                    case "SMA", "EMA", "DPO", "DETRENDED", "BB", "BOLLINGER" -> 20;
                     case "MACD" -> 12; // main fast setting; MACD handled specially if needed later
                     default -> 14;
                 };
@@ -958,34 +671,83 @@ public class ChartService {
         return list;
     }
 
-    private JFreeChart applyIndicators(JFreeChart baseChart, ChartRequest request) {
+    // Splits on commas outside parentheses, so "SMA:20,EMA(close,12)" yields two items
+    private static java.util.List<String> splitTopLevel(String text) {
+        java.util.List<String> parts = new java.util.ArrayList<>();
+        int depth = 0, start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(') depth++;
+            else if (c == ')') depth--;
+            else if (c == ',' && depth == 0) {
+                parts.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(text.substring(start));
+        return parts;
+    }
+
+    // Items with calls or arithmetic are expressions; "TYPE:PERIOD:DISPLAY" items are not
+    private static boolean isExpression(String part) {
+        return part.matches(".*[()+*/-].*");
+    }
+
+    // Expression with an optional ":overlay"/":panel" suffix; syntax errors surface here, before any fetch
+    private static IndicatorSpec parseExpression(String part) {
+        String text = part;
+        IndicatorSpec.Display display = IndicatorSpec.Display.OVERLAY;
+        int colon = part.lastIndexOf(':');
+        if (colon > part.lastIndexOf(')')) {
+            String disp = part.substring(colon + 1).trim().toLowerCase();
+            display = "panel".equals(disp) ? IndicatorSpec.Display.PANEL : IndicatorSpec.Display.OVERLAY;
+            text = part.substring(0, colon);
+        }
+        return new IndicatorSpec(IndicatorExpression.compile(text).getText(), display);
+    }
+
+    private JFreeChart applyIndicators(JFreeChart baseChart, ChartRequest request) throws IOException {
         XYPlot pricePlot = (XYPlot) baseChart.getPlot();
         DateAxis sharedDomainAxis = (DateAxis) pricePlot.getDomainAxis();
+        BarSeries bars = request.getBars();
+        double[] x = ((BarSeriesOHLCDataset) pricePlot.getDataset()).dayStarts();
+
+        // Every indicator on the chart is computed in one fused pass over the bars
+        FusedIndicatorEngine.Request engineRequest = new FusedIndicatorEngine.Request();
+        java.util.Map<IndicatorSpec, java.util.List<String>> outputs = new java.util.IdentityHashMap<>();
+        for (IndicatorSpec spec : request.getIndicators()) {
+            if (spec.isExpression() || spec.getPeriod() <= 0) continue;
+            try {
+                outputs.put(spec, engineRequest.add(spec.getType(), spec.getPeriod()));
+            } catch (IllegalArgumentException e) {
+                // unsupported type; skip it
+            }
+        }
+        FusedIndicatorEngine.Result fused = indicatorService.indicators(request.getSeries(), bars, engineRequest);
+        java.util.Map<String, double[]> values = new java.util.HashMap<>();
+        for (java.util.List<String> keys : outputs.values()) {
+            for (String key : keys) values.put(key, fused.get(key));
+        }
+
+        // Expressions are compiled plans over the same bars, keyed by their text
+        for (IndicatorSpec spec : request.getIndicators()) {
+            if (!spec.isExpression()) continue;
+            try {
+                values.put(spec.getExpression(), indicatorService.evaluate(bars, spec.getExpression()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted evaluating " + spec.getExpression(), e);
+            }
+            outputs.put(spec, java.util.List.of(spec.getExpression()));
+        }
 
         // Overlay indicators on price plot
         for (IndicatorSpec spec : request.getIndicators()) {
-            if (spec.getDisplay() == IndicatorSpec.Display.OVERLAY) {
-                TimeSeriesCollection tsc = new TimeSeriesCollection();
-                TimeSeries ts = new TimeSeries(spec.getType());
-                switch (spec.getType()) {
-                    case "SMA" -> {
-                        for (IndicatorService.IndicatorValue v : indicatorService.sma(request.getOhlcData(), spec.getPeriod())) {
-                            java.util.Date d = java.util.Date.from(v.getDate().atStartOfDay(java.time.ZoneId.systemDefault()).toInstant());
-                            ts.add(new Day(d), v.getValue());
-                        }
-                    }
-                    case "EMA" -> {
-                        for (IndicatorService.IndicatorValue v : indicatorService.ema(request.getOhlcData(), spec.getPeriod())) {
-                            java.util.Date d = java.util.Date.from(v.getDate().atStartOfDay(java.time.ZoneId.systemDefault()).toInstant());
-                            ts.add(new Day(d), v.getValue());
-                        }
-                    }
-                    default -> { /* skip non-overlay types here */ }
-                }
-                if (ts.getItemCount() > 0) {
-                    tsc.addSeries(ts);
+            if (spec.getDisplay() == IndicatorSpec.Display.OVERLAY && outputs.containsKey(spec)) {
+                ColumnXYDataset lines = definedValues(outputs.get(spec), values, x);
+                if (lines.getSeriesCount() > 0) {
                     int datasetIndex = pricePlot.getDatasetCount();
-                    pricePlot.setDataset(datasetIndex, tsc);
+                    pricePlot.setDataset(datasetIndex, lines);
                     XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer(true, false);
                     
                     // Color palette for overlay indicators
@@ -998,7 +760,8 @@ public class ChartService {
                         new java.awt.Color(0x8c, 0x56, 0x4b), // Brown
                     };
                     
-                    renderer.setSeriesPaint(0, overlayColors[(datasetIndex - 1) % overlayColors.length]);
+                    renderer.setDefaultPaint(overlayColors[(datasetIndex - 1) % overlayColors.length]);
+                    renderer.setAutoPopulateSeriesPaint(false);
                     renderer.setDefaultStroke(new java.awt.BasicStroke(2.0f));
                     pricePlot.setRenderer(datasetIndex, renderer);
                 }
@@ -1008,31 +771,15 @@ public class ChartService {
         // Build panel indicators
         java.util.List<XYPlot> panelPlots = new java.util.ArrayList<>();
         for (IndicatorSpec spec : request.getIndicators()) {
-            if (spec.getDisplay() == IndicatorSpec.Display.PANEL) {
-                TimeSeries ts = new TimeSeries(spec.getType());
-                String yLabel = spec.getType();
+            if (spec.getDisplay() == IndicatorSpec.Display.PANEL && outputs.containsKey(spec)) {
+                String yLabel = spec.isExpression() ? spec.getExpression() : spec.getType();
                 NumberAxis axis = new NumberAxis(yLabel);
-                switch (spec.getType()) {
-                    case "RSI" -> {
-                        for (IndicatorService.IndicatorValue v : indicatorService.rsi(request.getOhlcData(), spec.getPeriod())) {
-                            java.util.Date d = java.util.Date.from(v.getDate().atStartOfDay(java.time.ZoneId.systemDefault()).toInstant());
-                            ts.add(new Day(d), v.getValue());
-                        }
-                        axis.setRange(0, 100);
-                    }
-                    case "DPO", "DETRENDED" -> {
-                        for (IndicatorService.IndicatorValue v : indicatorService.detrendedPriceOscillator(request.getOhlcData(), spec.getPeriod())) {
-                            java.util.Date d = java.util.Date.from(v.getDate().atStartOfDay(java.time.ZoneId.systemDefault()).toInstant());
-                            ts.add(new Day(d), v.getValue());
-                        }
-                    }
-                    // MACD could be added here later
-                    default -> { /* ignore unsupported panels for now */ }
+                if (spec.getType().equals("RSI") || spec.getType().startsWith("STOCH")) {
+                    axis.setRange(0, 100);
                 }
+                ColumnXYDataset lines = definedValues(outputs.get(spec), values, x);
 
-                if (ts.getItemCount() > 0) {
-                    TimeSeriesCollection tsc = new TimeSeriesCollection();
-                    tsc.addSeries(ts);
+                if (lines.getSeriesCount() > 0) {
                     XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer(true, false);
                     
                     // Color palette for panel indicators
@@ -1045,10 +792,11 @@ public class ChartService {
                         new java.awt.Color(0x9e, 0xda, 0xe5), // Light Blue
                     };
                     
-                    renderer.setSeriesPaint(0, panelColors[panelPlots.size() % panelColors.length]);
+                    renderer.setDefaultPaint(panelColors[panelPlots.size() % panelColors.length]);
+                    renderer.setAutoPopulateSeriesPaint(false);
                     renderer.setDefaultStroke(new java.awt.BasicStroke(2.0f));
                     
-                    XYPlot subPlot = new XYPlot(tsc, null, axis, renderer);
+                    XYPlot subPlot = new XYPlot(lines, null, axis, renderer);
                     subPlot.setBackgroundPaint(java.awt.Color.WHITE);
                     subPlot.setDomainGridlinePaint(java.awt.Color.LIGHT_GRAY);
                     subPlot.setRangeGridlinePaint(java.awt.Color.LIGHT_GRAY);
@@ -1075,7 +823,18 @@ public class ChartService {
         return chart;
     }
 
-    private java.util.List<OhlcData> calculateRatioData(String ratioSymbol, String startDate, String endDate) throws IOException, InterruptedException {
+    // One series per output key, plotting each bar whose kernel output is defined (skips the NaN warm-up)
+    private static ColumnXYDataset definedValues(java.util.List<String> keys, java.util.Map<String, double[]> values,
+                                                 double[] x) {
+        ColumnXYDataset dataset = new ColumnXYDataset(x);
+        for (String key : keys) {
+            double[] column = values.get(key);
+            dataset.addSeries(key, column, IndicatorKernels.firstDefined(column, 0, x.length));
+        }
+        return dataset;
+    }
+
+    private BarSeries calculateRatioData(String ratioSymbol, String startDate, String endDate) throws IOException, InterruptedException {
         String[] symbols = ratioSymbol.split("/");
         if (symbols.length != 2) {
             throw new IllegalArgumentException("Invalid ratio format. Use SYMBOL1/SYMBOL2");
@@ -1093,42 +852,8 @@ public class ChartService {
                 ? java.time.LocalDate.parse(startDate)
                 : resolvedEnd.minusMonths(6);
 
-        // Get data for both symbols
-        java.util.List<OhlcData> numeratorData = polygonService.getAggregates(
-            numeratorSymbol, "1", "day",
-            resolvedStart.toString(),
-            resolvedEnd.toString(),
-            true, "asc", 10000);
-            
-        java.util.List<OhlcData> denominatorData = polygonService.getAggregates(
-            denominatorSymbol, "1", "day",
-            resolvedStart.toString(),
-            resolvedEnd.toString(),
-            true, "asc", 10000);
-            
-        // Create a map for denominator data for quick lookup
-        java.util.Map<java.time.LocalDate, OhlcData> denominatorMap = new java.util.HashMap<>();
-        for (OhlcData data : denominatorData) {
-            denominatorMap.put(data.getDate(), data);
-        }
-        
-        // Calculate ratio data
-        java.util.List<OhlcData> ratioData = new java.util.ArrayList<>();
-        for (OhlcData numData : numeratorData) {
-            OhlcData denomData = denominatorMap.get(numData.getDate());
-            if (denomData != null && denomData.getClose() != 0 && denomData.getOpen() != 0 && 
-                denomData.getHigh() != 0 && denomData.getLow() != 0) {
-                
-                double ratioOpen = numData.getOpen() / denomData.getOpen();
-                double ratioHigh = numData.getHigh() / denomData.getHigh();
-                double ratioLow = numData.getLow() / denomData.getLow();
-                double ratioClose = numData.getClose() / denomData.getClose();
-                
-                OhlcData ratioOhlc = new OhlcData(numData.getDate(), ratioOpen, ratioHigh, ratioLow, ratioClose);
-                ratioData.add(ratioOhlc);
-            }
-        }
-        
-        return ratioData;
+        // Get data for both symbols concurrently and join them by date
+        return polygonService.getRatioBars(numeratorSymbol, denominatorSymbol,
+            resolvedStart.toString(), resolvedEnd.toString(), 10000);
     }
 }
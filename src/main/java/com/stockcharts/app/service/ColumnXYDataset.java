@@ -0,0 +1,47 @@
+package com.stockcharts.app.service;
+
+import org.jfree.data.DomainOrder;
+import org.jfree.data.xy.AbstractXYDataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Line series over primitive value columns that share one x array (the bars of a chart). Each
+ * series wraps its column in place from a first item on, so an indicator skips its warm-up
+ * without being copied; NaN values after that break the line as TimeSeries values would.
+ * Series are added before the dataset is given to a plot and no change events are fired.
+ */
+// Serializable only through AbstractXYDataset; built per chart and never serialized
+@SuppressWarnings("serial")
+final class ColumnXYDataset extends AbstractXYDataset {
+
+    private final double[] x;
+    private final List<String> keys = new ArrayList<>();
+    private final List<double[]> columns = new ArrayList<>();
+    private int[] firsts = new int[4];
+
+    ColumnXYDataset(double[] x) {
+        this.x = x;
+    }
+
+    // Plots values[i] at x[i] for i in [first, x.length); skipped when that is empty
+    void addSeries(String key, double[] values, int first) {
+        if (first >= x.length) return;
+        if (keys.size() == firsts.length) firsts = Arrays.copyOf(firsts, firsts.length * 2);
+        firsts[keys.size()] = first;
+        keys.add(key);
+        columns.add(values);
+    }
+
+    @Override public int getSeriesCount() { return keys.size(); }
+    @Override public String getSeriesKey(int series) { return keys.get(series); }
+    @Override public int getItemCount(int series) { return x.length - firsts[series]; }
+    @Override public DomainOrder getDomainOrder() { return DomainOrder.ASCENDING; }
+
+    @Override public double getXValue(int series, int item) { return x[firsts[series] + item]; }
+    @Override public Number getX(int series, int item) { return getXValue(series, item); }
+    @Override public double getYValue(int series, int item) { return columns.get(series)[firsts[series] + item]; }
+    @Override public Number getY(int series, int item) { return getYValue(series, item); }
+}
@@ -0,0 +1,353 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.model.BarSeries;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk loader for Polygon's grouped-daily endpoint, which returns every US stock's bar for one day
+ * in a single response. Backfills and refreshes the local bar store for the whole market a month
+ * at a time, so universe-wide tools and cold tickers are served without per-symbol requests.
+ */
+@Service
+public class GroupedDailyLoader {
+
+    private static final ZoneId MARKET_ZONE = ZoneId.of("America/New_York");
+    private static final int DEFAULT_REFRESH_DAYS = 30;
+
+    private final PolygonHttpClient polygonClient;
+    private final BarStore barStore;
+    private final AggregateCache aggregateCache;
+    private final ExecutorService fetchExecutor;
+
+    public static class LoadResult {
+        private final LocalDate from;
+        private final LocalDate to;
+        private int tradingDays;
+        private long bars;
+        private final Set<String> tickersUpdated = new HashSet<>();
+        private int tickersSkipped;
+        private int historiesReset;
+
+        LoadResult(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public LocalDate getFrom() { return from; }
+        public LocalDate getTo() { return to; }
+        public int getTradingDays() { return tradingDays; }
+        public long getBars() { return bars; }
+        public int getTickersUpdated() { return tickersUpdated.size(); }
+        public int getTickersSkipped() { return tickersSkipped; }
+        public int getHistoriesReset() { return historiesReset; }
+    }
+
+    // One day's grouped response: ticker i owns row i of the bar columns
+    private static class DayBars {
+        final List<String> tickers = new ArrayList<>();
+        final BarSeries.Builder bars = new BarSeries.Builder(16_384);
+    }
+
+    // Covered span of a ticker's stored file as it evolves during one load
+    private static class Span {
+        int from;
+        int to;
+
+        Span(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    public GroupedDailyLoader(PolygonHttpClient polygonClient, BarStore barStore, AggregateCache aggregateCache) {
+        this.polygonClient = polygonClient;
+        this.barStore = barStore;
+        this.aggregateCache = aggregateCache;
+        this.fetchExecutor = PolygonService.boundedPool("grouped-daily", polygonClient.maxConcurrency());
+    }
+
+    /**
+     * Load every ticker's daily bars for [start, end] into the store, one calendar month per
+     * batch. The end is clamped to yesterday (exchange time) since today's bar is still forming.
+     */
+    public LoadResult load(LocalDate start, LocalDate end, boolean adjusted) throws IOException, InterruptedException {
+        LocalDate lastFinalDay = LocalDate.now(MARKET_ZONE).minusDays(1);
+        if (end.isAfter(lastFinalDay)) end = lastFinalDay;
+        LoadResult result = new LoadResult(start, end);
+        if (end.isBefore(start)) return result;
+
+        int endDay = (int) end.toEpochDay();
+        Map<String, Span> spans = new HashMap<>();
+        Map<String, BarSeries.Builder> pending = new HashMap<>();
+        Map<String, Integer> pendingFrom = new HashMap<>();
+        Map<Integer, Map<String, Double>> referenceCloses = new HashMap<>();
+        for (LocalDate chunkStart = start; !chunkStart.isAfter(end); ) {
+            LocalDate chunkEnd = chunkStart.with(TemporalAdjusters.lastDayOfMonth());
+            if (chunkEnd.isAfter(end)) chunkEnd = end;
+
+            List<DayBars> days = fetchDays(chunkStart, chunkEnd, adjusted);
+            Map<String, BarSeries.Builder> byTicker = new HashMap<>();
+            for (DayBars day : days) {
+                if (!day.tickers.isEmpty()) result.tradingDays++;
+                BarSeries columns = day.bars.build();
+                for (int i = 0; i < columns.size(); i++) {
+                    byTicker.computeIfAbsent(day.tickers.get(i), t -> new BarSeries.Builder(days.size()))
+                        .add(columns.epochDay(i), columns.open(i), columns.high(i), columns.low(i), columns.close(i),
+                            columns.volume(i), columns.vwap(i), columns.trades(i));
+                }
+                result.bars += columns.size();
+            }
+
+            storeChunk(byTicker, (int) chunkStart.toEpochDay(), (int) chunkEnd.toEpochDay(), (int) start.toEpochDay(),
+                endDay, adjusted, spans, pending, pendingFrom, referenceCloses, result);
+            advanceWatermark(adjusted, chunkStart, chunkEnd);
+            chunkStart = chunkEnd.plusDays(1);
+        }
+        return result;
+    }
+
+    /**
+     * Merge one month of bars per ticker. Each stored file holds one contiguous covered span, so a
+     * ticker whose stored span starts later than this chunk is buffered until the load reaches it,
+     * and one that starts after the whole load is left alone.
+     */
+    private void storeChunk(Map<String, BarSeries.Builder> byTicker, int chunkFrom, int chunkTo, int loadFrom,
+                            int endDay, boolean adjusted, Map<String, Span> spans, Map<String, BarSeries.Builder> pending,
+                            Map<String, Integer> pendingFrom, Map<Integer, Map<String, Double>> referenceCloses,
+                            LoadResult result) throws IOException, InterruptedException {
+        for (Map.Entry<String, BarSeries.Builder> entry : byTicker.entrySet()) {
+            String ticker = entry.getKey();
+            Span span = spans.get(ticker);
+            if (span == null && !spans.containsKey(ticker)) {
+                span = firstSpan(ticker, adjusted, entry.getValue().build(), loadFrom, referenceCloses, result);
+                spans.put(ticker, span);
+            }
+
+            BarSeries.Builder buffered = pending.get(ticker);
+            int from = chunkFrom;
+            BarSeries bars;
+            if (buffered != null) {
+                from = pendingFrom.get(ticker);
+                bars = buffered.addAll(entry.getValue().build()).build();
+            } else {
+                bars = entry.getValue().build();
+            }
+
+            if (span == null || from >= span.from) {
+                write(ticker, adjusted, bars, from, chunkTo, spans, result);
+            } else if (span.from > endDay + 1) {
+                // Stored span is more recent and this load never reaches it
+                if (buffered == null) result.tickersSkipped++;
+            } else if (chunkTo >= span.from - 1) {
+                write(ticker, adjusted, bars, from, chunkTo, spans, result);
+                pending.remove(ticker);
+                pendingFrom.remove(ticker);
+            } else if (buffered == null) {
+                pending.put(ticker, new BarSeries.Builder(bars.size() * 2).addAll(bars));
+                pendingFrom.put(ticker, chunkFrom);
+            }
+        }
+
+        // A ticker with no bars this month (halted, delisted) still has complete data for it
+        for (Map.Entry<String, Span> entry : new ArrayList<>(spans.entrySet())) {
+            String ticker = entry.getKey();
+            Span span = entry.getValue();
+            if (span == null || byTicker.containsKey(ticker)) continue;
+            BarSeries.Builder buffered = pending.get(ticker);
+            if (buffered != null && chunkTo >= span.from - 1) {
+                write(ticker, adjusted, buffered.build(), pendingFrom.remove(ticker), chunkTo, spans, result);
+                pending.remove(ticker);
+            } else if (buffered == null && span.to == chunkFrom - 1) {
+                write(ticker, adjusted, BarSeries.empty(), chunkFrom, chunkTo, spans, result);
+            }
+        }
+    }
+
+    /**
+     * Stored span on first sight of a ticker; a changed last close means history was re-adjusted.
+     * When the load starts after the stored last day, that day is fetched once per load (shared by
+     * every ticker ending on it) so a split is still caught before post-split bars are appended.
+     */
+    private Span firstSpan(String ticker, boolean adjusted, BarSeries incoming, int loadFrom,
+                           Map<Integer, Map<String, Double>> referenceCloses, LoadResult result)
+            throws IOException, InterruptedException {
+        BarStore.Coverage coverage = barStore.coverage(ticker, "day", adjusted);
+        if (coverage == null) return null;
+        if (coverage.hasBars()) {
+            int lastDay = coverage.getLastDay();
+            Double fetchedClose;
+            if (lastDay < loadFrom) {
+                fetchedClose = referenceCloses(lastDay, adjusted, referenceCloses).get(ticker);
+            } else {
+                BarSeries overlap = incoming.between(lastDay, lastDay);
+                fetchedClose = overlap.isEmpty() ? null : overlap.close(0);
+            }
+            // Only a stored day from before the load must be present; in-load days may be a gap
+            boolean mismatch = fetchedClose == null
+                ? lastDay < loadFrom
+                : !matchesClose(fetchedClose, coverage.getLastClose());
+            if (mismatch) {
+                barStore.delete(ticker, "day", adjusted);
+                aggregateCache.invalidate(ticker, "1", "day", adjusted);
+                result.historiesReset++;
+                return null;
+            }
+        }
+        return new Span(coverage.getCoveredFrom(), coverage.getCoveredTo());
+    }
+
+    // Closes of every ticker on one day before the load, fetched on first use
+    private Map<String, Double> referenceCloses(int epochDay, boolean adjusted,
+                                                Map<Integer, Map<String, Double>> referenceCloses)
+            throws IOException, InterruptedException {
+        Map<String, Double> closes = referenceCloses.get(epochDay);
+        if (closes != null) return closes;
+        closes = new HashMap<>();
+        LocalDate day = LocalDate.ofEpochDay(epochDay);
+        for (DayBars dayBars : fetchDays(day, day, adjusted)) {
+            BarSeries columns = dayBars.bars.build();
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.epochDay(i) == epochDay) closes.put(dayBars.tickers.get(i), columns.close(i));
+            }
+        }
+        referenceCloses.put(epochDay, closes);
+        return closes;
+    }
+
+    // Same tolerance as PolygonService uses for its stored last bar
+    private static boolean matchesClose(double fetchedClose, double storedClose) {
+        return Math.abs(fetchedClose - storedClose) <= 1e-6 * Math.max(1.0, Math.abs(storedClose));
+    }
+
+    private void write(String ticker, boolean adjusted, BarSeries bars, int from, int to,
+                       Map<String, Span> spans, LoadResult result) throws IOException {
+        barStore.merge(ticker, "day", adjusted, bars, from, to);
+        aggregateCache.invalidate(ticker, "1", "day", adjusted);
+        Span span = spans.get(ticker);
+        boolean touching = span != null && from <= span.to + 1 && to >= span.from - 1;
+        if (touching) {
+            span.from = Math.min(span.from, from);
+            span.to = Math.max(span.to, to);
+        } else if (span == null || to > span.to) {
+            spans.put(ticker, new Span(from, to));
+        }
+        if (!bars.isEmpty()) result.tickersUpdated.add(ticker);
+    }
+
+    // Fetch each weekday of [start, end] concurrently; results come back in date order
+    private List<DayBars> fetchDays(LocalDate start, LocalDate end, boolean adjusted) throws IOException, InterruptedException {
+        List<Future<DayBars>> fetches = new ArrayList<>();
+        try {
+            for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) continue;
+                String url = String.format("%s/v2/aggs/grouped/locale/us/market/stocks/%s?adjusted=%s&apikey=%s",
+                    polygonClient.baseUrl(), day, adjusted, Config.getPolygonApiKey());
+                fetches.add(fetchExecutor.submit(() -> polygonClient.get(url, body -> {
+                    DayBars bars = new DayBars();
+                    AggregatesDecoder.decodeGrouped(body, (ticker, epochDay, o, h, l, c, v, vw, n) -> {
+                        if (ticker == null) return;
+                        bars.tickers.add(ticker);
+                        bars.bars.add(epochDay, o, h, l, c, v, vw, n);
+                    });
+                    return bars;
+                })));
+            }
+            List<DayBars> days = new ArrayList<>(fetches.size());
+            for (Future<DayBars> fetch : fetches) {
+                try {
+                    days.add(fetch.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    throw new IOException(cause);
+                }
+            }
+            return days;
+        } finally {
+            for (Future<DayBars> fetch : fetches) fetch.cancel(true);
+        }
+    }
+
+    // Last day loaded from grouped responses, or null before the first load
+    public LocalDate readWatermark(boolean adjusted) throws IOException {
+        Path file = watermarkFile(adjusted);
+        if (!Files.exists(file)) return null;
+        String text = Files.readString(file, StandardCharsets.US_ASCII).trim();
+        return text.isEmpty() ? null : LocalDate.parse(text);
+    }
+
+    // Moves the watermark to loadedThrough only if [loadedFrom, loadedThrough] joins the loaded days,
+    // so a load starting past the watermark cannot skip over the unloaded gap before it
+    private synchronized void advanceWatermark(boolean adjusted, LocalDate loadedFrom, LocalDate loadedThrough) throws IOException {
+        LocalDate current = readWatermark(adjusted);
+        if (current != null && (!loadedThrough.isAfter(current) || loadedFrom.isAfter(current.plusDays(1)))) return;
+        Path file = watermarkFile(adjusted);
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(tmp, loadedThrough.toString(), StandardCharsets.US_ASCII);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path watermarkFile(boolean adjusted) {
+        return barStore.getRoot().resolve("grouped_day_" + (adjusted ? "adjusted" : "unadjusted") + ".watermark");
+    }
+
+    @Tool(description = "Backfill or refresh daily bars for the entire US stock market into the local bar store " +
+          "using Polygon's grouped-daily endpoint (one request per trading day for all tickers). " +
+          "Parameters: startDate ('YYYY-MM-DD', default: the last loaded day, or 30 days back on first use); " +
+          "endDate ('YYYY-MM-DD', default and maximum: yesterday). Each ticker's last stored day is re-checked " +
+          "against Polygon to detect splits and reset affected histories. Returns a summary of days, bars and tickers loaded.")
+    public String loadMarketDailyBars(String startDate, String endDate) {
+        try {
+            if (!barStore.isEnabled()) {
+                return "Local bar store is disabled (BAR_STORE_ENABLED=false); nothing to load into";
+            }
+            LocalDate end = (endDate != null && !endDate.isBlank())
+                ? LocalDate.parse(endDate) : LocalDate.now(MARKET_ZONE).minusDays(1);
+            LocalDate start;
+            if (startDate != null && !startDate.isBlank()) {
+                start = LocalDate.parse(startDate);
+            } else {
+                LocalDate watermark = readWatermark(true);
+                start = watermark != null ? watermark : end.minusDays(DEFAULT_REFRESH_DAYS);
+            }
+
+            long startNanos = System.nanoTime();
+            LoadResult result = load(start, end, true);
+            return String.format("Loaded grouped daily bars from %s to %s in %.1fs\n" +
+                    "Trading days: %d, Bars: %d, Tickers updated: %d, Tickers skipped: %d, Histories reset: %d\n",
+                result.getFrom(), result.getTo(), (System.nanoTime() - startNanos) / 1e9,
+                result.getTradingDays(), result.getBars(), result.getTickersUpdated(),
+                result.getTickersSkipped(), result.getHistoriesReset());
+        } catch (Exception e) {
+            return "Error loading grouped daily bars: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.indicator.IndicatorGraph;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of computed indicator values keyed by (series fingerprint, size, node key),
+ * so repeated charts and indicator calls over the same bars reuse earlier results. Values are
+ * shared read-only arrays.
+ */
+@Service
+public class IndicatorCache implements IndicatorGraph.Memo {
+
+    private static class Key {
+        final long fingerprint;
+        final int size;
+        final String nodeKey;
+
+        Key(long fingerprint, int size, String nodeKey) {
+            this.fingerprint = fingerprint;
+            this.size = size;
+            this.nodeKey = nodeKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return fingerprint == k.fingerprint && size == k.size && nodeKey.equals(k.nodeKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fingerprint, size, nodeKey);
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxValues;
+
+    // Access-ordered map gives LRU iteration order; guarded by this
+    private final LinkedHashMap<Key, double[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedValues;
+
+    public IndicatorCache() {
+        this(Config.getIntSetting("INDICATOR_CACHE_MAX_ENTRIES", 1024),
+             Config.getIntSetting("INDICATOR_CACHE_MAX_VALUES", 4_000_000));
+    }
+
+    public IndicatorCache(int maxEntries, long maxValues) {
+        this.maxEntries = maxEntries;
+        this.maxValues = maxValues;
+    }
+
+    @Override
+    public synchronized double[] get(long fingerprint, int size, String nodeKey) {
+        return entries.get(new Key(fingerprint, size, nodeKey));
+    }
+
+    @Override
+    public synchronized void put(long fingerprint, int size, String nodeKey, double[] values) {
+        if (values.length > maxValues) return;
+        double[] previous = entries.put(new Key(fingerprint, size, nodeKey), values);
+        if (previous != null) cachedValues -= previous.length;
+        cachedValues += values.length;
+
+        Iterator<Map.Entry<Key, double[]>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || cachedValues > maxValues) && it.hasNext()) {
+            Map.Entry<Key, double[]> eldest = it.next();
+            it.remove();
+            cachedValues -= eldest.getValue().length;
+        }
+    }
+}
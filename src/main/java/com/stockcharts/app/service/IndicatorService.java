@@ -1,20 +1,91 @@
 package com.stockcharts.app.service;
 
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.indicator.FusedIndicatorEngine;
+import com.stockcharts.app.indicator.IndicatorExpression;
+import com.stockcharts.app.indicator.IndicatorGraph;
+import com.stockcharts.app.indicator.IndicatorKernels;
+import com.stockcharts.app.indicator.IndicatorNode;
+import com.stockcharts.app.model.BarSeries;
 import com.stockcharts.app.model.OhlcData;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class IndicatorService {
     
     private final PolygonService polygonService;
+    private final IndicatorCache indicatorCache;
+    // Streaming states of recently computed series by series, first bar and outputs, least recently used evicted
+    private final Map<String, FusedIndicatorEngine.Stream> streams;
     
-    public IndicatorService(PolygonService polygonService) {
+    public IndicatorService(PolygonService polygonService, IndicatorCache indicatorCache) {
         this.polygonService = polygonService;
+        this.indicatorCache = indicatorCache;
+        int streamCacheSize = Math.max(1, Config.getIntSetting("INDICATOR_STREAM_CACHE_SIZE", 64));
+        this.streams = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FusedIndicatorEngine.Stream> eldest) {
+                return size() > streamCacheSize;
+            }
+        });
+    }
+
+    // Computation graph over bars, memoized per call and across calls through the indicator cache
+    public IndicatorGraph graph(BarSeries bars) {
+        return new IndicatorGraph(bars, indicatorCache);
+    }
+
+    // Computes a set of indicators in one pass over bars, reusing cached outputs
+    public FusedIndicatorEngine.Result indicators(BarSeries bars, FusedIndicatorEngine.Request request) {
+        return FusedIndicatorEngine.run(bars, request, indicatorCache);
+    }
+
+    /**
+     * Computes a set of indicators over the bars of a named series (e.g. symbol and timespan),
+     * advancing the streaming state of the previous call on the same series by only the bars
+     * appended since. Bars that do not extend that state are computed from scratch and replace it.
+     */
+    public FusedIndicatorEngine.Result indicators(String series, BarSeries bars, FusedIndicatorEngine.Request request) {
+        if (series == null || bars.isEmpty()) return indicators(bars, request);
+        String key = series.toUpperCase() + "|" + bars.epochDay(0) + "|" + request.keys();
+        FusedIndicatorEngine.Stream cached = streams.get(key);
+        FusedIndicatorEngine.Result result = cached != null ? cached.advance(bars) : null;
+        if (result != null) return result;
+        FusedIndicatorEngine.Stream stream = new FusedIndicatorEngine.Stream(request);
+        result = stream.advance(bars);
+        streams.put(key, stream);
+        return result;
+    }
+
+    /**
+     * Evaluates an indicator expression such as "SMA(high-low,14)/close" or "RSI(AAPL/SPY,14)"
+     * over bars. Tickers named in the expression are fetched as daily bars covering the series
+     * and aligned to its dates. Returns one value per bar, NaN where undefined.
+     */
+    public double[] evaluate(BarSeries bars, String expression) throws IOException, InterruptedException {
+        IndicatorExpression compiled = IndicatorExpression.compile(expression);
+        IndicatorGraph graph = graph(bars);
+        List<String> tickers = compiled.getTickers();
+        if (!tickers.isEmpty() && !bars.isEmpty()) {
+            // A week of lead-in so the first bar has a close to carry forward
+            String from = bars.date(0).minusDays(7).toString();
+            String to = bars.date(bars.size() - 1).toString();
+            List<BarSeries> tickerBars = polygonService.getBarsConcurrently(
+                tickers, "1", "day", from, to, true, "asc", 50000);
+            for (int t = 0; t < tickers.size(); t++) {
+                graph = graph.withTicker(tickers.get(t), tickerBars.get(t));
+            }
+        }
+        return compiled.evaluate(graph);
     }
 
     public static class IndicatorValue {
@@ -49,15 +120,17 @@ public class IndicatorService {
         public double getHistogram() { return histogram; }
     }
 
-    @Tool(description = "Calculate technical indicators (SMA, EMA, RSI, MACD, DPO) for a stock symbol or ratio. " +
+    @Tool(description = "Calculate technical indicators (SMA, EMA, RSI, MACD, DPO, BB, ATR, STOCH, OBV, VWAP) for a stock symbol or ratio. " +
           "Supports ratios like 'AAPL/SPY' to analyze relative performance. " +
-          "Parameters: symbol (e.g., 'AAPL' or 'AAPL/SPY'), indicator ('SMA'|'EMA'|'RSI'|'MACD'|'DPO'), period (e.g., 14, 20, 50). " +
+          "Parameters: symbol (e.g., 'AAPL' or 'AAPL/SPY'), indicator ('SMA'|'EMA'|'RSI'|'MACD'|'DPO'|'BB'|'ATR'|'STOCH'|'OBV'|'VWAP', " +
+          "or a comma-separated list such as 'RSI,BB:20,ATR' computed together in one pass, " +
+          "or an expression such as 'EMA(close,12)-EMA(close,26)', 'SMA(high-low,14)/close' or 'RSI(AAPL/SPY,14)'), period (e.g., 14, 20, 50). " +
           "Returns formatted table with indicator values for the last 10 data points.")
     public String calculateIndicator(String symbol, String indicator, Integer period) {
         try {
             if (period == null) period = 14;
             
-            List<OhlcData> stockData;
+            BarSeries stockData;
             String title;
             
             // Check if this is a ratio (contains '/')
@@ -76,7 +149,7 @@ public class IndicatorService {
             } else {
                 title = symbol.toUpperCase();
                 // Fetch stock data for single symbol
-                stockData = polygonService.getAggregates(
+                stockData = polygonService.getBars(
                     symbol, "1", "day", 
                     "2025-08-01", "2025-09-05", 
                     true, "asc", 100);
@@ -90,6 +163,12 @@ public class IndicatorService {
             result.append(String.format("%s Indicator for %s (period: %d):\n\n", 
                 indicator.toUpperCase(), title, period));
             
+            if (isExpression(indicator)) {
+                appendExpressionTable(result, stockData, indicator);
+                result.append(String.format("\nTotal data points: %d", stockData.size()));
+                return result.toString();
+            }
+
             switch (indicator.toLowerCase()) {
                 case "sma":
                     List<IndicatorValue> smaValues = sma(stockData, period);
@@ -139,7 +218,11 @@ public class IndicatorService {
                     break;
                     
                 default:
-                    return "Unsupported indicator: " + indicator + ". Supported: SMA, EMA, RSI, DPO/DETRENDED, MACD";
+                    try {
+                        appendFusedTable(result, title, stockData, indicator, period);
+                    } catch (IllegalArgumentException e) {
+                        return "Unsupported indicator: " + indicator + ". Supported: SMA, EMA, RSI, DPO/DETRENDED, MACD, BB, ATR, STOCH, OBV, VWAP";
+                    }
             }
             
             result.append(String.format("\nTotal data points: %d", stockData.size()));
@@ -150,190 +233,118 @@ public class IndicatorService {
         }
     }
 
-    private List<OhlcData> calculateRatioData(String numerator, String denominator) throws Exception {
-        // Get data for both symbols
-        List<OhlcData> numeratorData = polygonService.getAggregates(
-            numerator, "1", "day", "2025-08-01", "2025-09-05", true, "asc", 100);
-            
-        List<OhlcData> denominatorData = polygonService.getAggregates(
-            denominator, "1", "day", "2025-08-01", "2025-09-05", true, "asc", 100);
-        
-        if (numeratorData.isEmpty() || denominatorData.isEmpty()) {
-            throw new Exception("No data available for one or both symbols: " + numerator + ", " + denominator);
+    // Last 10 rows of every output of a comma-separated indicator list ("TYPE" or "TYPE:PERIOD")
+    private void appendFusedTable(StringBuilder result, String series, BarSeries bars, String indicators, int defaultPeriod) {
+        FusedIndicatorEngine.Request request = new FusedIndicatorEngine.Request();
+        for (String item : indicators.split(",")) {
+            if (item.isBlank()) continue;
+            String[] tokens = item.trim().split(":");
+            int period = tokens.length > 1 ? Integer.parseInt(tokens[1].trim()) : defaultPeriod;
+            request.add(tokens[0], period);
         }
-        
-        // Calculate ratio data
-        List<OhlcData> ratioData = new ArrayList<>();
-        int minSize = Math.min(numeratorData.size(), denominatorData.size());
-        
-        for (int i = 0; i < minSize; i++) {
-            OhlcData num = numeratorData.get(i);
-            OhlcData den = denominatorData.get(i);
-            
-            // Create ratio OHLC data
-            double open = num.getOpen() / den.getOpen();
-            double high = num.getHigh() / den.getHigh();
-            double low = num.getLow() / den.getLow();
-            double close = num.getClose() / den.getClose();
-            
-            ratioData.add(new OhlcData(num.getDate(), open, high, low, close));
+        FusedIndicatorEngine.Result values = indicators(series, bars, request);
+        List<String> keys = request.keys();
+
+        result.append("Date      ");
+        for (String key : keys) result.append(String.format(" | %12s", request.label(key)));
+        result.append("\n-----------");
+        for (int k = 0; k < keys.size(); k++) result.append("|--------------");
+        result.append("\n");
+        for (int i = Math.max(0, bars.size() - 10); i < bars.size(); i++) {
+            result.append(String.format("%-10s", bars.date(i)));
+            for (String key : keys) result.append(String.format(" | %12.2f", values.get(key)[i]));
+            result.append("\n");
         }
-        
-        return ratioData;
     }
 
-    // Technical indicator calculation methods
-    public List<IndicatorValue> sma(List<OhlcData> data, int period) {
-        List<IndicatorValue> result = new ArrayList<>();
-        if (data == null || data.size() < period || period <= 0) return result;
-
-        double sum = 0.0;
-        for (int i = 0; i < data.size(); i++) {
-            sum += data.get(i).getClose();
-            if (i >= period) {
-                sum -= data.get(i - period).getClose();
-            }
-            if (i >= period - 1) {
-                double avg = sum / period;
-                result.add(new IndicatorValue(data.get(i).getDate(), avg));
-            }
-        }
-        return result;
+    // Expressions use calls or arithmetic; plain names and "TYPE:PERIOD" lists do not
+    static boolean isExpression(String indicator) {
+        return indicator.matches(".*[()+*/-].*");
     }
 
-    public List<IndicatorValue> ema(List<OhlcData> data, int period) {
-        List<IndicatorValue> result = new ArrayList<>();
-        if (data == null || data.size() < period || period <= 0) return result;
-
-        double[] closes = new double[data.size()];
-        for (int i = 0; i < data.size(); i++) {
-            closes[i] = data.get(i).getClose();
+    // Last 10 values of an indicator expression
+    private void appendExpressionTable(StringBuilder result, BarSeries bars, String expression)
+            throws IOException, InterruptedException {
+        double[] values = evaluate(bars, expression);
+        result.append("Date       | Value\n");
+        result.append("-----------|------------\n");
+        for (int i = Math.max(0, bars.size() - 10); i < bars.size(); i++) {
+            result.append(String.format("%-10s | %11.4f\n", bars.date(i), values[i]));
         }
+    }
 
-        double[] emaValues = emaSeries(closes, period);
-        
-        for (int i = 0; i < emaValues.length; i++) {
-            if (!Double.isNaN(emaValues[i])) {
-                result.add(new IndicatorValue(data.get(i).getDate(), emaValues[i]));
-            }
+    private BarSeries calculateRatioData(String numerator, String denominator) throws Exception {
+        // Get data for both symbols concurrently, aligned by date
+        BarSeries ratioData = polygonService.getRatioBars(numerator, denominator, "2025-08-01", "2025-09-05", 100);
+        if (ratioData.isEmpty()) {
+            throw new Exception("No data available for one or both symbols: " + numerator + ", " + denominator);
         }
-        return result;
+        return ratioData;
     }
 
-    public List<IndicatorValue> detrendedPriceOscillator(List<OhlcData> data, int period) {
-        List<IndicatorValue> result = new ArrayList<>();
-        if (data == null || data.size() < period || period <= 0) return result;
-
-        // Calculate SMA first
-        List<IndicatorValue> smaValues = sma(data, period);
-        
-        // DPO = Current Price - SMA(period)
-        // Since SMA values start from index (period-1), align them with price data
-        for (int i = 0; i < smaValues.size(); i++) {
-            int priceIndex = i + period - 1; // Align with original data index
-            if (priceIndex < data.size()) {
-                double close = data.get(priceIndex).getClose();
-                double smaValue = smaValues.get(i).getValue();
-                double dpo = close - smaValue;
-                result.add(new IndicatorValue(data.get(priceIndex).getDate(), dpo));
-            }
-        }
-        
-        return result;
+    // Technical indicator calculation methods; the List overloads adapt JSON-shaped input
+    public List<IndicatorValue> sma(List<OhlcData> data, int period) {
+        return sma(BarSeries.fromOhlcData(data), period);
     }
 
-    public List<IndicatorValue> rsi(List<OhlcData> data, int period) {
-        List<IndicatorValue> result = new ArrayList<>();
-        if (data == null || data.size() <= period || period <= 0) return result;
+    public List<IndicatorValue> ema(List<OhlcData> data, int period) {
+        return ema(BarSeries.fromOhlcData(data), period);
+    }
 
-        double gainSum = 0.0;
-        double lossSum = 0.0;
+    public List<IndicatorValue> detrendedPriceOscillator(List<OhlcData> data, int period) {
+        return detrendedPriceOscillator(BarSeries.fromOhlcData(data), period);
+    }
 
-        // Initial averages using first 'period' deltas
-        for (int i = 1; i <= period; i++) {
-            double change = data.get(i).getClose() - data.get(i - 1).getClose();
-            if (change >= 0) gainSum += change; else lossSum -= change;
-        }
-        double avgGain = gainSum / period;
-        double avgLoss = lossSum / period;
-
-        double rs = avgLoss == 0 ? Double.POSITIVE_INFINITY : (avgGain / avgLoss);
-        double rsi = avgLoss == 0 ? 100.0 : (100.0 - (100.0 / (1.0 + rs)));
-        result.add(new IndicatorValue(data.get(period).getDate(), rsi));
-
-        // Wilder's smoothing
-        for (int i = period + 1; i < data.size(); i++) {
-            double change = data.get(i).getClose() - data.get(i - 1).getClose();
-            double gain = Math.max(change, 0);
-            double loss = Math.max(-change, 0);
-            avgGain = ((avgGain * (period - 1)) + gain) / period;
-            avgLoss = ((avgLoss * (period - 1)) + loss) / period;
-            rs = avgLoss == 0 ? Double.POSITIVE_INFINITY : (avgGain / avgLoss);
-            rsi = avgLoss == 0 ? 100.0 : (100.0 - (100.0 / (1.0 + rs)));
-            result.add(new IndicatorValue(data.get(i).getDate(), rsi));
-        }
-        return result;
+    public List<IndicatorValue> rsi(List<OhlcData> data, int period) {
+        return rsi(BarSeries.fromOhlcData(data), period);
     }
 
     public List<MacdValue> macd(List<OhlcData> data, int fast, int slow, int signal) {
-        List<MacdValue> result = new ArrayList<>();
-        if (data == null || data.size() < slow + signal || fast <= 0 || slow <= 0 || signal <= 0) return result;
+        return macd(BarSeries.fromOhlcData(data), fast, slow, signal);
+    }
 
-        double[] closes = new double[data.size()];
-        for (int i = 0; i < data.size(); i++) closes[i] = data.get(i).getClose();
+    public List<IndicatorValue> sma(BarSeries data, int period) {
+        if (data == null || data.size() < period || period <= 0) return new ArrayList<>();
+        return toIndicatorValues(data, graph(data).values(IndicatorNode.sma(IndicatorNode.CLOSE, period)));
+    }
 
-        double[] emaFast = emaSeries(closes, fast);
-        double[] emaSlow = emaSeries(closes, slow);
+    public List<IndicatorValue> ema(BarSeries data, int period) {
+        if (data == null || data.size() < period || period <= 0) return new ArrayList<>();
+        return toIndicatorValues(data, graph(data).values(IndicatorNode.ema(IndicatorNode.CLOSE, period)));
+    }
 
-        // MACD line available where both EMAs are defined
-        int macdStart = Math.max(firstDefinedIndex(emaFast), firstDefinedIndex(emaSlow));
-        List<Double> macdLine = new ArrayList<>();
-        List<Integer> macdIdxToPriceIdx = new ArrayList<>();
-        for (int i = macdStart; i < closes.length; i++) {
-            double macd = emaFast[i] - emaSlow[i];
-            macdLine.add(macd);
-            macdIdxToPriceIdx.add(i);
-        }
+    public List<IndicatorValue> detrendedPriceOscillator(BarSeries data, int period) {
+        if (data == null || data.size() < period || period <= 0) return new ArrayList<>();
+        return toIndicatorValues(data, graph(data).values(IndicatorNode.dpo(IndicatorNode.CLOSE, period)));
+    }
 
-        // Signal line EMA over MACD line
-        double[] macdArr = macdLine.stream().mapToDouble(Double::doubleValue).toArray();
-        double[] signalLine = emaSeries(macdArr, signal);
-        int signalStart = firstDefinedIndex(signalLine);
-
-        for (int i = signalStart; i < macdArr.length; i++) {
-            int priceIdx = macdIdxToPriceIdx.get(i);
-            double macd = macdArr[i];
-            double sig = signalLine[i];
-            double hist = macd - sig;
-            result.add(new MacdValue(data.get(priceIdx).getDate(), macd, sig, hist));
-        }
-        return result;
+    public List<IndicatorValue> rsi(BarSeries data, int period) {
+        if (data == null || data.size() <= period || period <= 0) return new ArrayList<>();
+        return toIndicatorValues(data, graph(data).values(IndicatorNode.rsi(IndicatorNode.CLOSE, period)));
     }
 
-    private static int firstDefinedIndex(double[] series) {
-        for (int i = 0; i < series.length; i++) {
-            if (!Double.isNaN(series[i])) return i;
+    public List<MacdValue> macd(BarSeries data, int fast, int slow, int signal) {
+        List<MacdValue> result = new ArrayList<>();
+        if (data == null || data.size() < slow + signal || fast <= 0 || slow <= 0 || signal <= 0) return result;
+
+        IndicatorGraph graph = graph(data);
+        double[] macdLine = graph.values(IndicatorNode.macdLine(IndicatorNode.CLOSE, fast, slow));
+        double[] signalLine = graph.values(IndicatorNode.macdSignal(IndicatorNode.CLOSE, fast, slow, signal));
+        double[] histogram = graph.values(IndicatorNode.macdHistogram(IndicatorNode.CLOSE, fast, slow, signal));
+
+        for (int i = IndicatorKernels.firstDefined(histogram, 0, histogram.length); i < histogram.length; i++) {
+            result.add(new MacdValue(data.date(i), macdLine[i], signalLine[i], histogram[i]));
         }
-        return series.length;
+        return result;
     }
 
-    private static double[] emaSeries(double[] values, int period) {
-        double[] ema = new double[values.length];
-        for (int i = 0; i < ema.length; i++) ema[i] = Double.NaN;
-        if (values.length < period || period <= 0) return ema;
-
-        // Seed with SMA
-        double sum = 0.0;
-        for (int i = 0; i < period; i++) sum += values[i];
-        double prevEma = sum / period;
-        ema[period - 1] = prevEma;
-
-        double k = 2.0 / (period + 1);
-        for (int i = period; i < values.length; i++) {
-            double current = values[i];
-            prevEma = (current - prevEma) * k + prevEma;
-            ema[i] = prevEma;
+    // One IndicatorValue per defined (non-NaN) kernel output
+    private static List<IndicatorValue> toIndicatorValues(BarSeries data, double[] values) {
+        int start = IndicatorKernels.firstDefined(values, 0, values.length);
+        List<IndicatorValue> result = new ArrayList<>(values.length - start);
+        for (int i = start; i < values.length; i++) {
+            result.add(new IndicatorValue(data.date(i), values[i]));
         }
-        return ema;
+        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,310 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.standin.PolygonStandIn;
+import com.stockcharts.app.standin.Recordings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HTTP layer for Polygon requests: HTTP/2 client with timeouts and gzip, an optional token-bucket
+ * rate limiter sized to the API plan, an AIMD adaptive concurrency limit, and retry with jittered
+ * exponential backoff on 429/5xx that honours Retry-After.
+ *
+ * The base URL is configurable; with POLYGON_STANDIN_ENABLED an embedded {@link PolygonStandIn} is
+ * started and used instead of the live API. POLYGON_RECORD_DIR saves successful response bodies
+ * in the stand-in's replay format.
+ */
+@Service
+public class PolygonHttpClient {
+
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(PolygonHttpClient.class);
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final PolygonStandIn standIn;
+    private final Path recordDir;
+    private final Duration requestTimeout;
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    // Null when no client-side rate is configured
+    private final TokenBucket rateLimiter;
+    private final AdaptiveLimit concurrencyLimit;
+    private final int maxConcurrency;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder queueWaits = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    public PolygonHttpClient() throws IOException {
+        if (Config.isPolygonStandInEnabled()) {
+            this.standIn = PolygonStandIn.fromConfig();
+            standIn.start();
+            this.baseUrl = standIn.getBaseUrl();
+        } else {
+            this.standIn = null;
+            this.baseUrl = Config.getPolygonBaseUrl();
+        }
+        String record = Config.getSetting("POLYGON_RECORD_DIR", null);
+        this.recordDir = record != null ? Paths.get(record) : null;
+        this.requestTimeout = Duration.ofSeconds(Config.getIntSetting("POLYGON_REQUEST_TIMEOUT_SECONDS", 30));
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(Config.getIntSetting("POLYGON_CONNECT_TIMEOUT_SECONDS", 10)))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        this.maxRetries = Config.getIntSetting("POLYGON_MAX_RETRIES", 4);
+        this.baseBackoffMillis = Config.getIntSetting("POLYGON_BACKOFF_MILLIS", 500);
+
+        // No client-side cap by default: a plan's limit comes back as 429 with Retry-After, which
+        // the retry loop and the adaptive limit absorb. Basic (free) plans allow 5 calls/minute;
+        // paid plans are unlimited but Polygon asks clients to stay around 100 requests/second
+        String plan = Config.getSetting("POLYGON_PLAN", "").toLowerCase();
+        int defaultPerMinute = plan.isEmpty() ? 0 : "basic".equals(plan) || "free".equals(plan) ? 5 : 6000;
+        int perMinute = Config.getIntSetting("POLYGON_RATE_LIMIT_PER_MINUTE", defaultPerMinute);
+        if (perMinute > 0) {
+            int burst = Math.max(1, Config.getIntSetting("POLYGON_RATE_LIMIT_BURST", Math.min(perMinute, 100)));
+            this.rateLimiter = new TokenBucket(burst, perMinute / 60.0);
+            log.info("Polygon client rate limited to {} requests/minute (burst {})", perMinute, burst);
+        } else {
+            this.rateLimiter = null;
+        }
+
+        this.maxConcurrency = Math.max(1, Config.getIntSetting("POLYGON_MAX_CONCURRENCY", 32));
+        int initialConcurrency = Math.min(maxConcurrency, Config.getIntSetting("POLYGON_INITIAL_CONCURRENCY", 8));
+        this.concurrencyLimit = new AdaptiveLimit(Math.max(1, initialConcurrency), maxConcurrency);
+    }
+
+    // Most requests ever in flight at once; fetch pools need no more threads than this
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    // Scheme and host that request paths are appended to, without a trailing slash
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * GET the URL and hand a 200 body to reader. Rate-limited, throttled and transient failures
+     * are retried; other statuses are reported as IOException with the start of the body.
+     */
+    public <T> T get(String url, BodyReader<T> reader) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .timeout(requestTimeout)
+            .header("Accept", "application/json")
+            .header("Accept-Encoding", "gzip")
+            .GET()
+            .build();
+
+        for (int attempt = 0; ; attempt++) {
+            acquire();
+            boolean throttled = false;
+            long retryDelayMillis = -1;
+            try {
+                requests.increment();
+                HttpResponse<InputStream> response;
+                try {
+                    response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                } catch (IOException e) {
+                    // Transport failure (reset, GOAWAY, timeout); a timeout also signals overload
+                    throttled = e instanceof HttpTimeoutException;
+                    if (attempt >= maxRetries) throw e;
+                    response = null;
+                }
+
+                if (response != null) {
+                    try (InputStream body = decoded(response)) {
+                        int status = response.statusCode();
+                        if (status == 200) {
+                            return recordDir != null ? readAndRecord(request.uri(), body, reader) : reader.read(body);
+                        }
+                        if (status == 429) {
+                            rateLimited.increment();
+                            throttled = true;
+                        } else if (status >= 500) {
+                            serverErrors.increment();
+                        }
+                        boolean retryable = status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+                        if (!retryable || attempt >= maxRetries) {
+                            throw new IOException("Polygon API error: " + status + " - "
+                                + new String(body.readNBytes(4096), StandardCharsets.UTF_8));
+                        }
+                        retryDelayMillis = retryAfterMillis(response);
+                    }
+                }
+            } finally {
+                concurrencyLimit.release(throttled);
+            }
+            // Back off outside the concurrency slot so other requests can proceed
+            retries.increment();
+            sleepBackoff(attempt, retryDelayMillis);
+        }
+    }
+
+    public String stats() {
+        long waits = queueWaits.sum();
+        double avgWaitMs = waits == 0 ? 0.0 : queueWaitNanos.sum() / 1e6 / waits;
+        String target = standIn != null ? standIn.stats() : "Base URL: " + baseUrl + "\n";
+        return target + String.format("Polygon client: %d requests, %d retries, %d rate-limited (429), %d server errors\n" +
+                "Queue wait: avg %.1f ms, max %.1f ms over %d acquisitions\n" +
+                "Rate limit: %s, Concurrency limit: %d (in flight %d)\n",
+            requests.sum(), retries.sum(), rateLimited.sum(), serverErrors.sum(),
+            avgWaitMs, maxQueueWaitNanos.get() / 1e6, waits,
+            rateLimiter == null ? "none" : String.format("%.2f req/s (burst %d)", rateLimiter.ratePerSecond(), rateLimiter.capacity()),
+            concurrencyLimit.limit(), concurrencyLimit.inFlight());
+    }
+
+    private <T> T readAndRecord(URI uri, InputStream body, BodyReader<T> reader) throws IOException {
+        byte[] bytes = body.readAllBytes();
+        Files.createDirectories(recordDir);
+        Files.write(recordDir.resolve(Recordings.fileName(uri)), bytes);
+        return reader.read(new ByteArrayInputStream(bytes));
+    }
+
+    private void acquire() throws InterruptedException {
+        long start = System.nanoTime();
+        long waitNanos = rateLimiter != null ? rateLimiter.reserve() : 0;
+        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+        concurrencyLimit.acquire();
+        long waited = System.nanoTime() - start;
+        queueWaits.increment();
+        queueWaitNanos.add(waited);
+        maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    private void sleepBackoff(int attempt, long retryAfterMillis) throws InterruptedException {
+        // Full jitter: uniform in [0, base * 2^attempt], never less than what the server asked for
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << Math.min(attempt, 16));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        Thread.sleep(Math.max(delay, retryAfterMillis));
+    }
+
+    private static long retryAfterMillis(HttpResponse<?> response) {
+        String value = response.headers().firstValue("Retry-After").orElse(null);
+        if (value == null) return -1;
+        try {
+            return Math.min(MAX_BACKOFF_MILLIS, TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                long millis = at.toInstant().toEpochMilli() - System.currentTimeMillis();
+                return Math.max(0, Math.min(MAX_BACKOFF_MILLIS, millis));
+            } catch (RuntimeException ignored) {
+                return -1;
+            }
+        }
+    }
+
+    private static InputStream decoded(HttpResponse<InputStream> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        return "gzip".equalsIgnoreCase(encoding)
+            ? new java.util.zip.GZIPInputStream(response.body(), 64 * 1024)
+            : response.body();
+    }
+
+    // Reservation-based token bucket: callers take a token now and sleep until it is refilled
+    private static class TokenBucket {
+        private final int capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, double tokensPerSecond) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerSecond / 1e9;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+        }
+
+        double ratePerSecond() { return tokensPerNano * 1e9; }
+        int capacity() { return capacity; }
+    }
+
+    // Additive increase (+1 per limit-worth of successes), multiplicative decrease on throttling
+    private static class AdaptiveLimit {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition slotFreed = lock.newCondition();
+        private final int max;
+        private double limit;
+        private int inFlight;
+
+        AdaptiveLimit(int initial, int max) {
+            this.limit = initial;
+            this.max = max;
+        }
+
+        void acquire() throws InterruptedException {
+            lock.lock();
+            try {
+                while (inFlight >= (int) limit) slotFreed.await();
+                inFlight++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(boolean throttled) {
+            lock.lock();
+            try {
+                inFlight--;
+                limit = throttled ? Math.max(1.0, limit / 2) : Math.min(max, limit + 1.0 / limit);
+                slotFreed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int limit() {
+            lock.lock();
+            try { return (int) limit; } finally { lock.unlock(); }
+        }
+
+        int inFlight() {
+            lock.lock();
+            try { return inFlight; } finally { lock.unlock(); }
+        }
+    }
+}
@@ -1,43 +1,235 @@
 package com.stockcharts.app.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stockcharts.app.config.Config;
+import com.stockcharts.app.model.BarSeries;
 import com.stockcharts.app.model.OhlcData;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class PolygonService {
     
-    private static final String BASE_URL = "https://api.polygon.io";
-    
-    private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    private static final ZoneId MARKET_ZONE = ZoneId.of("America/New_York");
+    private static final int PAGE_LIMIT = 50000; // Polygon's maximum results per page
+
+    private final PolygonHttpClient polygonClient;
+    private final BarStore barStore;
+    private final AggregateCache aggregateCache;
+    private final ExecutorService fetchExecutor;
+    // Page producers get their own pool: a fetch on fetchExecutor blocks on its producer
+    private final ExecutorService pageExecutor;
+    private final int maxPagesAhead;
+    private final int maxTotalBars;
+    private final long fetchDeadlineNanos;
     
-    public PolygonService() {
-        this.httpClient = HttpClient.newHttpClient();
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.findAndRegisterModules();
+    public PolygonService(BarStore barStore, AggregateCache aggregateCache, PolygonHttpClient polygonClient) {
+        this.polygonClient = polygonClient;
+        this.barStore = barStore;
+        this.aggregateCache = aggregateCache;
+        this.fetchExecutor = boundedPool("polygon-fetch", polygonClient.maxConcurrency());
+        this.pageExecutor = boundedPool("polygon-pages", polygonClient.maxConcurrency());
+        this.maxPagesAhead = Math.max(1, Config.getIntSetting("POLYGON_MAX_PAGES_AHEAD", 2));
+        this.maxTotalBars = Math.max(1, Config.getIntSetting("POLYGON_MAX_TOTAL_BARS", 1_000_000));
+        this.fetchDeadlineNanos = TimeUnit.SECONDS.toNanos(Config.getIntSetting("POLYGON_FETCH_DEADLINE_SECONDS", 60));
     }
     
     public List<OhlcData> getAggregates(String ticker, String multiplier, String timespan, 
                                        String from, String to, boolean adjusted, String sort, int limit) throws IOException, InterruptedException {
+        return getBars(ticker, multiplier, timespan, from, to, adjusted, sort, limit).toOhlcData();
+    }
+
+    public BarSeries getBars(String ticker, String multiplier, String timespan,
+                             String from, String to, boolean adjusted, String sort, int limit) throws IOException, InterruptedException {
+        int maxBars = Math.min(limit, maxTotalBars);
+        if (sort != null && !"asc".equals(sort)) {
+            return fetchAggregates(ticker, multiplier, timespan, from, to, adjusted, sort, maxBars);
+        }
+
+        int fromDay = (int) LocalDate.parse(from).toEpochDay();
+        int toDay = (int) LocalDate.parse(to).toEpochDay();
+        BarSeries bars;
+        if (barStore.isEnabled() && isDaily(multiplier, timespan)) {
+            bars = aggregateCache.get(ticker, multiplier, timespan, adjusted, fromDay, toDay, maxTotalBars,
+                () -> getDailyBarsThroughStore(ticker, from, to, adjusted));
+        } else {
+            bars = aggregateCache.get(ticker, multiplier, timespan, adjusted, fromDay, toDay, maxBars,
+                () -> fetchAggregates(ticker, multiplier, timespan, from, to, adjusted, "asc", maxBars));
+        }
+        return bars.first(maxBars);
+    }
+
+    /**
+     * Fetch the same range for several tickers concurrently, returning results in ticker order.
+     * All legs share one deadline; the first failure (or the deadline) cancels the remaining legs.
+     */
+    public List<BarSeries> getBarsConcurrently(List<String> tickers, String multiplier, String timespan,
+                                               String from, String to, boolean adjusted, String sort, int limit)
+            throws IOException, InterruptedException {
+        ExecutorCompletionService<BarSeries> completion = new ExecutorCompletionService<>(fetchExecutor);
+        List<Future<BarSeries>> legs = new ArrayList<>(tickers.size());
+        long deadline = System.nanoTime() + fetchDeadlineNanos;
+        try {
+            for (String ticker : tickers) {
+                legs.add(completion.submit(() -> getBars(ticker, multiplier, timespan, from, to, adjusted, sort, limit)));
+            }
+            for (int done = 0; done < legs.size(); done++) {
+                Future<BarSeries> finished = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (finished == null) {
+                    throw new IOException("Timed out after " + TimeUnit.NANOSECONDS.toSeconds(fetchDeadlineNanos)
+                        + "s fetching " + String.join(", ", tickers));
+                }
+                awaitLeg(finished);
+            }
+            List<BarSeries> results = new ArrayList<>(legs.size());
+            for (Future<BarSeries> leg : legs) results.add(awaitLeg(leg));
+            return results;
+        } finally {
+            for (Future<BarSeries> leg : legs) leg.cancel(true);
+        }
+    }
+
+    /**
+     * Fetch the same range for several tickers concurrently, tolerating failures: a ticker that
+     * fails, or is not done within deadlineNanos, gets null in the result (in ticker order) and its
+     * reason in failures. The other legs carry on; unfinished ones are cancelled at the deadline.
+     */
+    public List<BarSeries> getBarsEach(List<String> tickers, String multiplier, String timespan,
+                                       String from, String to, boolean adjusted, String sort, int limit,
+                                       long deadlineNanos, Map<String, String> failures) throws InterruptedException {
+        List<Future<BarSeries>> fetches = new ArrayList<>(tickers.size());
+        long deadline = System.nanoTime() + deadlineNanos;
+        try {
+            for (String ticker : tickers) {
+                fetches.add(fetchExecutor.submit(() -> getBars(ticker, multiplier, timespan, from, to, adjusted, sort, limit)));
+            }
+            List<BarSeries> results = new ArrayList<>(tickers.size());
+            for (int i = 0; i < tickers.size(); i++) {
+                BarSeries bars = null;
+                try {
+                    bars = fetches.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException e) {
+                    failures.put(tickers.get(i), describe(e.getCause()));
+                } catch (java.util.concurrent.TimeoutException e) {
+                    failures.put(tickers.get(i), "timed out");
+                }
+                results.add(bars);
+            }
+            return results;
+        } finally {
+            // Timed out or abandoned fetches must not keep running (and holding rate budget)
+            for (Future<BarSeries> fetch : fetches) fetch.cancel(true);
+        }
+    }
+
+    // Daily numerator/denominator ratio bars, with both legs fetched concurrently
+    public BarSeries getRatioBars(String numerator, String denominator, String from, String to, int limit)
+            throws IOException, InterruptedException {
+        List<BarSeries> legs = getBarsConcurrently(List.of(numerator, denominator), "1", "day", from, to, true, "asc", limit);
+        return BarSeries.ratio(legs.get(0), legs.get(1));
+    }
+
+    private static <T> T awaitLeg(Future<T> leg) throws IOException, InterruptedException {
+        try {
+            return leg.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static boolean isDaily(String multiplier, String timespan) {
+        return "1".equals(multiplier) && "day".equals(timespan);
+    }
+
+    // Serve daily bars from the local store, fetching only the days it does not cover yet
+    private BarSeries getDailyBarsThroughStore(String ticker, String from, String to, boolean adjusted)
+            throws IOException, InterruptedException {
+        int fromDay = (int) LocalDate.parse(from).toEpochDay();
+        int toDay = (int) LocalDate.parse(to).toEpochDay();
+        // Today's bar is still forming, so only persist through yesterday (exchange time)
+        int lastFinalDay = (int) LocalDate.now(MARKET_ZONE).toEpochDay() - 1;
+
+        BarStore.StoredBars stored = barStore.read(ticker, "day", adjusted);
+        if (stored == null) {
+            BarSeries fetched = fetchDaily(ticker, fromDay, toDay, adjusted);
+            persist(ticker, adjusted, fetched, fromDay, Math.min(toDay, lastFinalDay));
+            return fetched;
+        }
+
+        BarSeries.Builder result = new BarSeries.Builder();
+        if (fromDay < stored.getCoveredFrom()) {
+            // Extend backwards up to the covered range so the stored span stays contiguous
+            BarSeries head = fetchDaily(ticker, fromDay, stored.getCoveredFrom() - 1, adjusted);
+            persist(ticker, adjusted, head, fromDay, stored.getCoveredFrom() - 1);
+            result.addAll(head.between(fromDay, toDay));
+        }
+        result.addAll(stored.getBars().between(fromDay, toDay));
+
+        if (toDay > stored.getCoveredTo()) {
+            BarSeries storedBars = stored.getBars();
+            // Refetch the last stored bar as well: if it changed, a split or dividend re-adjusted history
+            int tailFrom = storedBars.isEmpty() ? stored.getCoveredTo() + 1 : storedBars.lastEpochDay();
+            BarSeries tail = fetchDaily(ticker, tailFrom, toDay, adjusted);
+            if (!storedBars.isEmpty() && !matchesLastStored(storedBars, tail)) {
+                barStore.delete(ticker, "day", adjusted);
+                return getDailyBarsThroughStore(ticker, from, to, adjusted);
+            }
+            persist(ticker, adjusted, tail, stored.getCoveredTo() + 1, Math.min(toDay, lastFinalDay));
+            result.addAll(tail.between(Math.max(fromDay, stored.getCoveredTo() + 1), toDay));
+        }
+        return result.build();
+    }
+
+    private static boolean matchesLastStored(BarSeries stored, BarSeries fetched) {
+        int lastDay = stored.lastEpochDay();
+        if (fetched.isEmpty() || fetched.firstEpochDay() != lastDay) return false;
+        double storedClose = stored.close(stored.size() - 1);
+        return Math.abs(fetched.close(0) - storedClose) <= 1e-6 * Math.max(1.0, Math.abs(storedClose));
+    }
+
+    private void persist(String ticker, boolean adjusted, BarSeries bars, int coveredFrom, int coveredTo) throws IOException {
+        if (coveredTo < coveredFrom || bars.size() >= maxTotalBars) return; // nothing final, or possibly truncated
+        barStore.merge(ticker, "day", adjusted, bars.between(coveredFrom, coveredTo), coveredFrom, coveredTo);
+    }
+
+    private BarSeries fetchDaily(String ticker, int fromDay, int toDay, boolean adjusted) throws IOException, InterruptedException {
+        return fetchAggregates(ticker, "1", "day",
+            LocalDate.ofEpochDay(fromDay).toString(), LocalDate.ofEpochDay(toDay).toString(),
+            adjusted, "asc", maxTotalBars);
+    }
+
+    // Fetch up to maxBars bars, following next_url across pages
+    private BarSeries fetchAggregates(String ticker, String multiplier, String timespan, 
+                                      String from, String to, boolean adjusted, String sort, int maxBars) throws IOException, InterruptedException {
         
         String url = String.format("%s/v2/aggs/ticker/%s/range/%s/%s/%s/%s", 
-            BASE_URL, 
+            polygonClient.baseUrl(),
             URLEncoder.encode(ticker.toUpperCase(), StandardCharsets.UTF_8),
             URLEncoder.encode(multiplier, StandardCharsets.UTF_8),
             URLEncoder.encode(timespan, StandardCharsets.UTF_8),
@@ -45,56 +237,109 @@ public class PolygonService {
             URLEncoder.encode(to, StandardCharsets.UTF_8));
         
         url += String.format("?adjusted=%s&sort=%s&limit=%d&apikey=%s", 
-            adjusted, sort, limit, Config.getPolygonApiKey());
-        
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(url))
-            .header("Accept", "application/json")
-            .GET()
-            .build();
+            adjusted, sort, Math.min(maxBars, PAGE_LIMIT), Config.getPolygonApiKey());
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        
-        if (response.statusCode() != 200) {
-            throw new IOException("Polygon API error: " + response.statusCode() + " - " + response.body());
+        // Most requests fit in one page, so read the first page on the calling thread
+        BarSeries.Builder bars = new BarSeries.Builder();
+        String nextUrl = fetchPage(url, bars);
+        if (nextUrl != null && bars.size() < maxBars) {
+            fetchRemainingPages(withApiKey(nextUrl), maxBars, bars);
         }
-        
-        return parseAggregatesResponse(response.body());
+        return bars.size() > maxBars ? bars.build().first(maxBars) : bars.build();
     }
-    
-    private List<OhlcData> parseAggregatesResponse(String jsonResponse) throws IOException {
-        JsonNode root = objectMapper.readTree(jsonResponse);
-        List<OhlcData> ohlcDataList = new ArrayList<>();
-        
-        if (!root.has("results") || !root.get("results").isArray()) {
-            throw new IOException("Invalid response format from Polygon API");
+
+    private static class Page {
+        static final Page END = new Page(null, null);
+
+        final BarSeries bars;
+        final Exception error;
+
+        Page(BarSeries bars, Exception error) {
+            this.bars = bars;
+            this.error = error;
         }
-        
-        JsonNode results = root.get("results");
-        double previousClose = 0.0;
-        
-        for (int i = 0; i < results.size(); i++) {
-            JsonNode result = results.get(i);
-            long timestamp = result.get("t").asLong();
-            // Polygon returns epoch millis for the bar start; convert accurately to LocalDate
-            java.time.LocalDate date = java.time.Instant
-                .ofEpochMilli(timestamp)
-                .atZone(java.time.ZoneId.systemDefault())
-                .toLocalDate();
-            
-            double open = result.get("o").asDouble();
-            double high = result.get("h").asDouble();
-            double low = result.get("l").asDouble();
-            double close = result.get("c").asDouble();
-            
-            // Calculate percent return (current close / previous close)
-            double percentReturn = (i == 0 || previousClose == 0.0) ? 1.0 : close / previousClose;
-            
-            ohlcDataList.add(new OhlcData(date, open, high, low, close, percentReturn));
-            previousClose = close;
+    }
+
+    /**
+     * Follow the next_url chain on a background task while the caller appends finished pages to
+     * its series. At most maxPagesAhead decoded pages wait in the queue, so a slow consumer
+     * throttles the fetcher, and nothing beyond maxBars is requested.
+     */
+    private void fetchRemainingPages(String firstUrl, int maxBars, BarSeries.Builder target) throws IOException, InterruptedException {
+        BlockingQueue<Page> pages = new ArrayBlockingQueue<>(maxPagesAhead);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        int alreadyFetched = target.size();
+        Future<?> producer = pageExecutor.submit(() -> producePages(firstUrl, maxBars - alreadyFetched, pages, cancelled));
+        try {
+            while (true) {
+                Page page = pages.take();
+                if (page.error instanceof IOException) throw (IOException) page.error;
+                if (page.error != null) throw new IOException("Failed to fetch Polygon page: " + page.error.getMessage(), page.error);
+                if (page == Page.END) return;
+                target.addAll(page.bars.first(maxBars - target.size()));
+                if (target.size() >= maxBars) return;
+            }
+        } finally {
+            cancelled.set(true);
+            producer.cancel(true);
         }
-        
-        return ohlcDataList;
+    }
+
+    private void producePages(String firstUrl, int maxBars, BlockingQueue<Page> pages, AtomicBoolean cancelled) {
+        try {
+            String url = firstUrl;
+            int fetched = 0;
+            while (url != null && !cancelled.get()) {
+                BarSeries.Builder page = new BarSeries.Builder();
+                String nextUrl = fetchPage(url, page);
+                fetched += page.size();
+                if (!enqueue(pages, new Page(page.build(), null), cancelled)) return;
+                url = (nextUrl != null && fetched < maxBars) ? withApiKey(nextUrl) : null;
+            }
+            enqueue(pages, Page.END, cancelled);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            try {
+                enqueue(pages, new Page(null, e), cancelled);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static boolean enqueue(BlockingQueue<Page> pages, Page page, AtomicBoolean cancelled) throws InterruptedException {
+        while (!cancelled.get()) {
+            if (pages.offer(page, 100, TimeUnit.MILLISECONDS)) return true;
+        }
+        return false;
+    }
+
+    // Decode one page into bars and return its next_url (null on the last page)
+    private String fetchPage(String url, BarSeries.Builder bars) throws IOException, InterruptedException {
+        return polygonClient.get(url, body -> AggregatesDecoder.decode(body, bars));
+    }
+
+    // next_url carries the query cursor but not the key
+    private static String withApiKey(String nextUrl) {
+        return nextUrl + (nextUrl.contains("?") ? "&" : "?") + "apikey=" + Config.getPolygonApiKey();
+    }
+
+    // Up to threads daemon threads, started on demand and retired after a minute idle; extra tasks queue
+    static ExecutorService boundedPool(String prefix, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), daemonThreads(prefix));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
     
     @Tool(description = "Retrieve OHLC data for a symbol or ratio with optional date range and limit. " +
@@ -172,36 +417,124 @@ public class PolygonService {
         }
     }
 
+    @Tool(description = "Retrieve daily OHLC bars for many symbols in one call over a shared date range. " +
+          "Parameters: symbols (comma-separated tickers, e.g. 'AAPL,MSFT,NVDA,SPY'); " +
+          "startDate ('YYYY-MM-DD', default one month before endDate); endDate ('YYYY-MM-DD', default today); " +
+          "limit (max bars per symbol, default 500). Symbols are fetched concurrently and failures are reported " +
+          "per symbol. Returns one compact CSV block per symbol: date,open,high,low,close.")
+    public String getBatchStockData(String symbols, String startDate, String endDate, Integer limit) {
+        try {
+            List<String> tickers = new ArrayList<>();
+            for (String part : symbols.split(",")) {
+                String ticker = part.trim().toUpperCase();
+                if (!ticker.isEmpty() && !tickers.contains(ticker)) tickers.add(ticker);
+            }
+            if (tickers.isEmpty()) {
+                return "No symbols provided. Use a comma-separated list, e.g. 'AAPL,MSFT,SPY'";
+            }
+
+            LocalDate end = (endDate != null && !endDate.isBlank()) ? LocalDate.parse(endDate) : LocalDate.now();
+            LocalDate start = (startDate != null && !startDate.isBlank()) ? LocalDate.parse(startDate) : end.minusMonths(1);
+            int maxBars = (limit != null && limit > 0) ? limit : 500;
+
+            Map<String, String> failed = new LinkedHashMap<>();
+            List<BarSeries> fetched;
+            try {
+                fetched = getBarsEach(tickers, "1", "day", start.toString(), end.toString(), true, "asc", maxBars,
+                    fetchDeadlineNanos, failed);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "Error retrieving batch stock data: interrupted";
+            }
+
+            StringBuilder sb = new StringBuilder(64 + tickers.size() * 32 * Math.min(maxBars, 64));
+            for (int i = 0; i < tickers.size(); i++) {
+                if (fetched.get(i) != null) appendCsvBlock(sb, tickers.get(i), fetched.get(i));
+            }
+            StringBuilder failures = new StringBuilder();
+            for (Map.Entry<String, String> failure : failed.entrySet()) {
+                failures.append("# ").append(failure.getKey()).append(" failed: ").append(failure.getValue()).append('\n');
+            }
+
+            return "Daily bars from " + start + " to " + end + " for " + tickers.size() + " symbols ("
+                + failed.size() + " failed):\n\n" + sb + failures;
+        } catch (Exception e) {
+            return "Error retrieving batch stock data: " + e.getMessage();
+        }
+    }
+
+    // Exception text for a per-symbol failure; many exceptions carry no message
+    private static String describe(Throwable failure) {
+        return failure.getMessage() != null ? failure.getMessage() : failure.toString();
+    }
+
+    private static void appendCsvBlock(StringBuilder sb, String ticker, BarSeries bars) {
+        sb.append("# ").append(ticker).append(" (").append(bars.size()).append(" bars)\n");
+        sb.append("date,open,high,low,close\n");
+        for (int i = 0; i < bars.size(); i++) {
+            sb.append(bars.date(i)).append(',');
+            appendPrice(sb, bars.open(i)).append(',');
+            appendPrice(sb, bars.high(i)).append(',');
+            appendPrice(sb, bars.low(i)).append(',');
+            appendPrice(sb, bars.close(i)).append('\n');
+        }
+        sb.append('\n');
+    }
+
+    // Up to 4 decimals with trailing zeros dropped, without going through String.format
+    private static StringBuilder appendPrice(StringBuilder sb, double value) {
+        long scaled = Math.round(Math.abs(value) * 10_000);
+        if (value < 0 && scaled != 0) sb.append('-');
+        sb.append(scaled / 10_000);
+        int fraction = (int) (scaled % 10_000);
+        if (fraction != 0) {
+            sb.append('.');
+            int divisor = 1000;
+            while (fraction != 0) {
+                sb.append((char) ('0' + fraction / divisor));
+                fraction %= divisor;
+                divisor /= 10;
+            }
+        }
+        return sb;
+    }
+
+    @Tool(description = "Report data-layer statistics: in-memory aggregate cache (entries, cached bars, hits, misses, " +
+          "shared in-flight loads, evictions) and the Polygon client (requests, retries, 429s, queue wait, " +
+          "rate and adaptive concurrency limits).")
+    public String getDataLayerStats() {
+        return aggregateCache.stats() + "\n" + polygonClient.stats();
+    }
+
     public String getStockDataAsText(String ticker, String multiplier, String timespan, 
                                    String from, String to, boolean adjusted, String sort, int limit) {
         try {
-            List<OhlcData> data = getAggregates(ticker, multiplier, timespan, from, to, adjusted, sort, limit);
+            BarSeries bars = getBars(ticker, multiplier, timespan, from, to, adjusted, sort, limit);
             
-            StringBuilder sb = new StringBuilder();
+            StringBuilder sb = new StringBuilder(160 + bars.size() * 72);
             sb.append(String.format("Stock data for %s (%s %s bars from %s to %s):\n\n", 
                 ticker.toUpperCase(), multiplier, timespan, from, to));
-            sb.append("Date       | Open     | High     | Low      | Close    | % Return\n");
-            sb.append("-----------|----------|----------|----------|----------|----------\n");
-            
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            for (OhlcData ohlc : data) {
-                double percentChange = (ohlc.getPercentReturn() - 1.0) * 100.0; // Convert to percentage
-                sb.append(String.format("%-10s | %8.2f | %8.2f | %8.2f | %8.2f | %8.2f%%\n",
-                    ohlc.getDate().format(formatter),
-                    ohlc.getOpen(),
-                    ohlc.getHigh(),
-                    ohlc.getLow(),
-                    ohlc.getClose(),
-                    percentChange));
-            }
+            appendTable(sb, bars, "%-10s | %8.2f | %8.2f | %8.2f | %8.2f | %8.2f%%\n");
             
-            sb.append(String.format("\nTotal records: %d\n", data.size()));
+            sb.append(String.format("\nTotal records: %d\n", bars.size()));
             return sb.toString();
             
         } catch (Exception e) {
             return "Error fetching stock data: " + e.getMessage();
         }
     }
+
+    private static void appendTable(StringBuilder sb, BarSeries bars, String rowFormat) {
+        sb.append("Date       | Open     | High     | Low      | Close    | % Return\n");
+        sb.append("-----------|----------|----------|----------|----------|----------\n");
+        for (int i = 0; i < bars.size(); i++) {
+            // Percent change from the previous close, 0 for the first bar
+            double previousClose = i == 0 ? 0.0 : bars.close(i - 1);
+            double percentChange = previousClose == 0.0 ? 0.0 : (bars.close(i) / previousClose - 1.0) * 100.0;
+            sb.append(String.format(rowFormat,
+                bars.date(i), bars.open(i), bars.high(i), bars.low(i), bars.close(i), percentChange));
+        }
+    }
     
     public String getRatioDataAsText(String ratioSymbol, String multiplier, String timespan, 
                                    String from, String to, boolean adjusted, String sort, int limit) {
@@ -214,56 +547,15 @@ public class PolygonService {
             String numeratorSymbol = symbols[0].trim();
             String denominatorSymbol = symbols[1].trim();
             
-            // Get data for both symbols
-            List<OhlcData> numeratorData = getAggregates(numeratorSymbol, multiplier, timespan, from, to, adjusted, sort, limit);
-            List<OhlcData> denominatorData = getAggregates(denominatorSymbol, multiplier, timespan, from, to, adjusted, sort, limit);
+            // Get data for both symbols concurrently and join them by date
+            List<BarSeries> legs = getBarsConcurrently(List.of(numeratorSymbol, denominatorSymbol),
+                multiplier, timespan, from, to, adjusted, sort, limit);
+            BarSeries ratioData = BarSeries.ratio(legs.get(0), legs.get(1));
             
-            // Create a map for denominator data for quick lookup
-            java.util.Map<LocalDate, OhlcData> denominatorMap = new java.util.HashMap<>();
-            for (OhlcData data : denominatorData) {
-                denominatorMap.put(data.getDate(), data);
-            }
-            
-            // Calculate ratio data
-            List<OhlcData> ratioData = new ArrayList<>();
-            double previousRatioClose = 0.0;
-            
-            for (OhlcData numData : numeratorData) {
-                OhlcData denomData = denominatorMap.get(numData.getDate());
-                if (denomData != null && denomData.getClose() != 0 && denomData.getOpen() != 0 && 
-                    denomData.getHigh() != 0 && denomData.getLow() != 0) {
-                    
-                    double ratioOpen = numData.getOpen() / denomData.getOpen();
-                    double ratioHigh = numData.getHigh() / denomData.getHigh();
-                    double ratioLow = numData.getLow() / denomData.getLow();
-                    double ratioClose = numData.getClose() / denomData.getClose();
-                    
-                    // Calculate percent return for ratio
-                    double ratioPercentReturn = (ratioData.isEmpty() || previousRatioClose == 0.0) ? 
-                        1.0 : ratioClose / previousRatioClose;
-                    
-                    ratioData.add(new OhlcData(numData.getDate(), ratioOpen, ratioHigh, ratioLow, ratioClose, ratioPercentReturn));
-                    previousRatioClose = ratioClose;
-                }
-            }
-            
-            StringBuilder sb = new StringBuilder();
+            StringBuilder sb = new StringBuilder(160 + ratioData.size() * 72);
             sb.append(String.format("Ratio data for %s (%s %s bars from %s to %s):\n\n", 
                 ratioSymbol.toUpperCase(), multiplier, timespan, from, to));
-            sb.append("Date       | Open     | High     | Low      | Close    | % Return\n");
-            sb.append("-----------|----------|----------|----------|----------|----------\n");
-            
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            for (OhlcData ohlc : ratioData) {
-                double percentChange = (ohlc.getPercentReturn() - 1.0) * 100.0; // Convert to percentage
-                sb.append(String.format("%-10s | %8.4f | %8.4f | %8.4f | %8.4f | %8.2f%%\n",
-                    ohlc.getDate().format(formatter),
-                    ohlc.getOpen(),
-                    ohlc.getHigh(),
-                    ohlc.getLow(),
-                    ohlc.getClose(),
-                    percentChange));
-            }
+            appendTable(sb, ratioData, "%-10s | %8.4f | %8.4f | %8.4f | %8.4f | %8.2f%%\n");
             
             sb.append(String.format("\nTotal records: %d\n", ratioData.size()));
             sb.append(String.format("Numerator: %s, Denominator: %s\n", numeratorSymbol, denominatorSymbol));
@@ -0,0 +1,267 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.model.BarSeries;
+import com.stockcharts.app.risk.AlignedReturns;
+import com.stockcharts.app.risk.RollingCovarianceMatrix;
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.SymbolAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.PaintScale;
+import org.jfree.chart.renderer.xy.XYBlockRenderer;
+import org.jfree.data.xy.DefaultXYZDataset;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.stereotype.Service;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Paint;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cross-asset risk tools: rolling correlation, covariance and beta matrices over many tickers,
+ * as text, CSV or a rendered heatmap.
+ */
+@Service
+public class RiskService {
+
+    // Matrices up to this size are printed inline; larger ones are written to a CSV file
+    private static final int MAX_INLINE_TICKERS = 25;
+    private static final double MIN_COVERAGE = 0.9;
+
+    private final PolygonService polygonService;
+    private final ForkJoinPool pool;
+    // Fetch deadline for the whole universe; 0 scales it with the number of symbols
+    private final int fetchDeadlineSeconds;
+
+    public RiskService(PolygonService polygonService) {
+        this.polygonService = polygonService;
+        int parallelism = Config.getIntSetting("RISK_PARALLELISM", Runtime.getRuntime().availableProcessors());
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.fetchDeadlineSeconds = Math.max(0, Config.getIntSetting("RISK_FETCH_DEADLINE_SECONDS", 0));
+    }
+
+    /**
+     * Aligned daily returns of the tickers between the dates, and their rolling matrices. Tickers
+     * whose fetch fails or misses the deadline are left out and reported in failures; the deadline
+     * defaults to 60 s plus half a second per symbol (RISK_FETCH_DEADLINE_SECONDS overrides it).
+     */
+    public RollingCovarianceMatrix rollingMatrix(List<String> tickers, String from, String to, int window,
+                                                 Map<String, String> failures) throws InterruptedException {
+        long deadlineNanos = fetchDeadlineSeconds > 0
+            ? TimeUnit.SECONDS.toNanos(fetchDeadlineSeconds)
+            : TimeUnit.SECONDS.toNanos(60) + TimeUnit.MILLISECONDS.toNanos(500L * tickers.size());
+        List<BarSeries> series = polygonService.getBarsEach(tickers, "1", "day", from, to, true, "asc", 50000,
+            deadlineNanos, failures);
+        List<String> fetched = new ArrayList<>(tickers.size());
+        List<BarSeries> fetchedSeries = new ArrayList<>(tickers.size());
+        for (int i = 0; i < tickers.size(); i++) {
+            if (series.get(i) == null) continue;
+            fetched.add(tickers.get(i));
+            fetchedSeries.add(series.get(i));
+        }
+        if (fetched.size() < 2) {
+            throw new IllegalArgumentException("Fewer than two symbols could be fetched; failures: " + failures);
+        }
+        AlignedReturns returns = AlignedReturns.align(fetched, fetchedSeries, MIN_COVERAGE);
+        return RollingCovarianceMatrix.compute(returns, window, pool);
+    }
+
+    @Tool(description = "Rolling cross-asset correlation, covariance or beta matrix of daily log returns for many symbols " +
+          "(e.g. 100-500), aligned by date. Parameters: symbols (comma-separated, e.g. 'AAPL,MSFT,SPY'); " +
+          "startDate, endDate ('YYYY-MM-DD', default: the last year); window (rolling window in bars, default 60); " +
+          "output ('correlation'|'covariance'|'beta' for a matrix of the last window, or 'heatmap' for a correlation heatmap PNG; " +
+          "default 'correlation'). Beta is of each row symbol against each column symbol. Matrices over 25 symbols " +
+          "are saved as CSV. Also reports the average pairwise correlation over time and the most and least correlated pairs.")
+    public String correlationMatrix(String symbols, String startDate, String endDate, Integer window, String output) {
+        try {
+            LinkedHashSet<String> unique = new LinkedHashSet<>();
+            for (String symbol : symbols.split(",")) {
+                if (!symbol.isBlank()) unique.add(symbol.trim().toUpperCase());
+            }
+            List<String> tickers = new ArrayList<>(unique);
+            if (tickers.size() < 2) return "At least two symbols are required";
+            int w = window == null || window <= 0 ? 60 : window;
+            LocalDate end = endDate != null && !endDate.isBlank() ? LocalDate.parse(endDate) : LocalDate.now();
+            LocalDate start = startDate != null && !startDate.isBlank() ? LocalDate.parse(startDate) : end.minusYears(1);
+            String mode = output == null || output.isBlank() ? "correlation" : output.trim().toLowerCase();
+
+            long startNanos = System.nanoTime();
+            Map<String, String> failures = new LinkedHashMap<>();
+            RollingCovarianceMatrix matrix = rollingMatrix(tickers, start.toString(), end.toString(), w, failures);
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+            AlignedReturns returns = matrix.getReturns();
+            List<String> kept = returns.tickers();
+            int n = kept.size();
+
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%d-bar rolling %s of %d symbols, %d aligned returns, last window ending %s (%d ms)\n",
+                w, mode, n, returns.steps(), returns.date(returns.steps() - 1), millis));
+            if (!returns.dropped().isEmpty()) {
+                out.append("Dropped for insufficient history: ").append(String.join(", ", returns.dropped())).append("\n");
+            }
+            if (!failures.isEmpty()) {
+                out.append("Dropped, fetch failed:");
+                for (Map.Entry<String, String> failure : failures.entrySet()) {
+                    out.append(' ').append(failure.getKey()).append(" (").append(failure.getValue()).append(");");
+                }
+                out.append("\n");
+            }
+            appendAverageCorrelation(out, matrix);
+            appendExtremePairs(out, matrix);
+            out.append("\n");
+
+            switch (mode) {
+                case "heatmap" -> {
+                    String file = "correlation_heatmap_" + n + "_" + w + ".png";
+                    Files.write(Paths.get(file), renderHeatmap(matrix));
+                    out.append("Heatmap saved to: ").append(file).append("\n");
+                }
+                case "correlation", "covariance", "beta" -> {
+                    if (n <= MAX_INLINE_TICKERS) {
+                        out.append(formatMatrix(matrix, mode, " | ", true));
+                    } else {
+                        String file = mode + "_matrix_" + n + "_" + w + ".csv";
+                        Files.writeString(Paths.get(file), formatMatrix(matrix, mode, ",", false));
+                        out.append("Matrix saved to: ").append(file).append("\n");
+                    }
+                }
+                default -> {
+                    return "Unsupported output: " + output + ". Supported: correlation, covariance, beta, heatmap";
+                }
+            }
+            return out.toString();
+        } catch (Exception e) {
+            return "Error computing correlation matrix: " + e.getMessage();
+        }
+    }
+
+    private static double value(RollingCovarianceMatrix matrix, String mode, int i, int j) {
+        return switch (mode) {
+            case "covariance" -> matrix.covariance(i, j);
+            case "beta" -> matrix.beta(i, j);
+            default -> matrix.correlation(i, j);
+        };
+    }
+
+    private static String formatMatrix(RollingCovarianceMatrix matrix, String mode, String separator, boolean aligned) {
+        List<String> tickers = matrix.getReturns().tickers();
+        String number = mode.equals("covariance") ? "%.3e" : "%.3f";
+        StringBuilder text = new StringBuilder(aligned ? String.format("%-8s", "") : "symbol");
+        for (String ticker : tickers) {
+            text.append(separator).append(aligned ? String.format("%9s", ticker) : ticker);
+        }
+        text.append("\n");
+        for (int i = 0; i < tickers.size(); i++) {
+            text.append(aligned ? String.format("%-8s", tickers.get(i)) : tickers.get(i));
+            for (int j = 0; j < tickers.size(); j++) {
+                String cell = String.format(number, value(matrix, mode, i, j));
+                text.append(separator).append(aligned ? String.format("%9s", cell) : cell);
+            }
+            text.append("\n");
+        }
+        return text.toString();
+    }
+
+    // Average pairwise correlation sampled at up to 8 points across the range
+    private static void appendAverageCorrelation(StringBuilder out, RollingCovarianceMatrix matrix) {
+        double[] average = matrix.getAverageCorrelation();
+        int first = matrix.getWindow() - 1;
+        int last = average.length - 1;
+        int points = Math.min(8, last - first + 1);
+        out.append("Average pairwise correlation:");
+        for (int k = 0; k < points; k++) {
+            int t = points == 1 ? last : first + (int) ((long) k * (last - first) / (points - 1));
+            out.append(String.format(" %s %.2f;", matrix.getReturns().date(t), average[t]));
+        }
+        out.append("\n");
+    }
+
+    private static void appendExtremePairs(StringBuilder out, RollingCovarianceMatrix matrix) {
+        List<String> tickers = matrix.getReturns().tickers();
+        int n = tickers.size();
+        List<int[]> pairs = new ArrayList<>(n * (n - 1) / 2);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (!Double.isNaN(matrix.correlation(i, j))) pairs.add(new int[] {i, j});
+            }
+        }
+        pairs.sort((a, b) -> Double.compare(matrix.correlation(b[0], b[1]), matrix.correlation(a[0], a[1])));
+        int shown = Math.min(5, pairs.size());
+        out.append("Most correlated:");
+        for (int p = 0; p < shown; p++) {
+            int[] pair = pairs.get(p);
+            out.append(String.format(" %s/%s %.2f;", tickers.get(pair[0]), tickers.get(pair[1]), matrix.correlation(pair[0], pair[1])));
+        }
+        out.append("\nLeast correlated:");
+        for (int p = pairs.size() - 1; p >= Math.max(0, pairs.size() - shown); p--) {
+            int[] pair = pairs.get(p);
+            out.append(String.format(" %s/%s %.2f;", tickers.get(pair[0]), tickers.get(pair[1]), matrix.correlation(pair[0], pair[1])));
+        }
+        out.append("\n");
+    }
+
+    // Correlation heatmap: blue at -1, white at 0, red at +1
+    private static byte[] renderHeatmap(RollingCovarianceMatrix matrix) throws IOException {
+        List<String> tickers = matrix.getReturns().tickers();
+        int n = tickers.size();
+        double[] xs = new double[n * n];
+        double[] ys = new double[n * n];
+        double[] zs = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int cell = i * n + j;
+                xs[cell] = j;
+                ys[cell] = n - 1 - i; // first symbol on the top row
+                zs[cell] = matrix.correlation(i, j);
+            }
+        }
+        DefaultXYZDataset dataset = new DefaultXYZDataset();
+        dataset.addSeries("correlation", new double[][] {xs, ys, zs});
+
+        String[] columns = tickers.toArray(new String[0]);
+        String[] rows = new String[n];
+        for (int i = 0; i < n; i++) rows[i] = columns[n - 1 - i];
+        Font font = new Font("SansSerif", Font.PLAIN, n > 100 ? 6 : 10);
+        SymbolAxis xAxis = new SymbolAxis(null, columns);
+        xAxis.setVerticalTickLabels(true);
+        xAxis.setTickLabelFont(font);
+        SymbolAxis yAxis = new SymbolAxis(null, rows);
+        yAxis.setTickLabelFont(font);
+
+        XYBlockRenderer renderer = new XYBlockRenderer();
+        renderer.setPaintScale(new PaintScale() {
+            @Override public double getLowerBound() { return -1; }
+            @Override public double getUpperBound() { return 1; }
+            @Override public Paint getPaint(double value) {
+                if (Double.isNaN(value)) return Color.LIGHT_GRAY;
+                double v = Math.max(-1, Math.min(1, value));
+                int fade = (int) Math.round(255 * (1 - Math.abs(v)));
+                return v >= 0 ? new Color(255, fade, fade) : new Color(fade, fade, 255);
+            }
+        });
+        XYPlot plot = new XYPlot(dataset, xAxis, yAxis, renderer);
+        plot.setBackgroundPaint(Color.WHITE);
+        plot.setDomainGridlinesVisible(false);
+        plot.setRangeGridlinesVisible(false);
+
+        JFreeChart chart = new JFreeChart(null, JFreeChart.DEFAULT_TITLE_FONT, plot, false);
+        chart.setBackgroundPaint(Color.WHITE);
+        int size = Math.max(800, Math.min(4000, n * 14 + 150));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ChartUtils.writeChartAsPNG(png, chart, size, size);
+        return png.toByteArray();
+    }
+}
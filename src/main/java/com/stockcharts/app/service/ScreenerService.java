@@ -0,0 +1,320 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.config.Config;
+import com.stockcharts.app.indicator.IndicatorExpression;
+import com.stockcharts.app.indicator.IndicatorGraph;
+import com.stockcharts.app.indicator.IndicatorNode;
+import com.stockcharts.app.model.BarSeries;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Screens a ticker universe against indicator conditions using only the local bar store, so a
+ * market-wide scan makes no Polygon requests. Tickers are split across a fork-join pool; each one
+ * reads the recent tail of its stored file and evaluates the compiled expressions on its last bar.
+ */
+@Service
+public class ScreenerService {
+
+    private static final int TICKERS_PER_TASK = 32;
+    // A ticker whose last bar is this many days older than the newest bar in the scan is skipped as stale
+    private static final int STALE_DAYS = 7;
+
+    private final BarStore barStore;
+    private final ForkJoinPool pool;
+    private final int lookbackBars;
+
+    // One "left OP right" comparison; NaN on either side (not enough history) fails it
+    static class Condition {
+        final String text;
+        final IndicatorExpression left;
+        final String op;
+        final IndicatorExpression right;
+
+        Condition(String text, IndicatorExpression left, String op, IndicatorExpression right) {
+            this.text = text;
+            this.left = left;
+            this.op = op;
+            this.right = right;
+        }
+
+        boolean test(double l, double r) {
+            return switch (op) {
+                case "<" -> l < r;
+                case "<=" -> l <= r;
+                case ">" -> l > r;
+                case ">=" -> l >= r;
+                default -> false;
+            };
+        }
+    }
+
+    public static class Match {
+        private final String ticker;
+        private final int epochDay;
+        private final double close;
+        private final double rank;
+        private final double[] columns;
+
+        Match(String ticker, int epochDay, double close, double rank, double[] columns) {
+            this.ticker = ticker;
+            this.epochDay = epochDay;
+            this.close = close;
+            this.rank = rank;
+            this.columns = columns;
+        }
+
+        public String getTicker() { return ticker; }
+        public int getEpochDay() { return epochDay; }
+        public double getClose() { return close; }
+        public double getRank() { return rank; }
+        public double[] getColumns() { return columns; }
+    }
+
+    public static class ScreenResult {
+        private final List<Match> matches;
+        private final List<String> columnLabels;
+        private final int screened;
+        private final int withData;
+        private final int stale;
+
+        ScreenResult(List<Match> matches, List<String> columnLabels, int screened, int withData, int stale) {
+            this.matches = matches;
+            this.columnLabels = columnLabels;
+            this.screened = screened;
+            this.withData = withData;
+            this.stale = stale;
+        }
+
+        public List<Match> getMatches() { return matches; }
+        public List<String> getColumnLabels() { return columnLabels; }
+        public int getScreened() { return screened; }
+        public int getWithData() { return withData; }
+        public int getStale() { return stale; }
+    }
+
+    // Per-ticker outcome before the universe-wide staleness cut; match is null when conditions fail
+    private static class Outcome {
+        final int lastDay;
+        final Match match;
+
+        Outcome(int lastDay, Match match) {
+            this.lastDay = lastDay;
+            this.match = match;
+        }
+    }
+
+    public ScreenerService(BarStore barStore) {
+        this.barStore = barStore;
+        int parallelism = Config.getIntSetting("SCREENER_PARALLELISM", Runtime.getRuntime().availableProcessors());
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.lookbackBars = Math.max(2, Config.getIntSetting("SCREENER_LOOKBACK_BARS", 400));
+    }
+
+    /**
+     * Screens tickers (all stored daily tickers when null or empty) and returns the matches
+     * ordered by ascending rank value. Conditions are joined with AND; rankBy defaults to the
+     * left side of the first condition.
+     */
+    public ScreenResult screen(List<String> tickers, String conditions, String rankBy) throws IOException {
+        List<Condition> parsed = parseConditions(conditions);
+        IndicatorExpression rank = rankBy != null && !rankBy.isBlank()
+            ? compileLocal(rankBy) : parsed.get(0).left;
+
+        // Values shown per match: the rank, then each distinct non-constant condition side
+        Set<IndicatorExpression> shown = new LinkedHashSet<>();
+        shown.add(rank);
+        for (Condition condition : parsed) {
+            shown.add(condition.left);
+            if (condition.right.getRoot().getOp() != IndicatorNode.Op.CONST) shown.add(condition.right);
+        }
+        List<IndicatorExpression> columns = new ArrayList<>(shown);
+
+        List<String> universe = tickers == null || tickers.isEmpty() ? barStore.tickers("day", true) : tickers;
+        Outcome[] outcomes;
+        try {
+            outcomes = pool.invoke(new ScreenTask(universe, 0, universe.size(), parsed, columns));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        int newest = Integer.MIN_VALUE;
+        int withData = 0;
+        for (Outcome outcome : outcomes) {
+            if (outcome == null) continue;
+            withData++;
+            newest = Math.max(newest, outcome.lastDay);
+        }
+        List<Match> matches = new ArrayList<>();
+        int stale = 0;
+        for (Outcome outcome : outcomes) {
+            if (outcome == null) continue;
+            if (outcome.lastDay < newest - STALE_DAYS) {
+                stale++;
+            } else if (outcome.match != null) {
+                matches.add(outcome.match);
+            }
+        }
+        matches.sort(Comparator.comparingDouble(Match::getRank).thenComparing(Match::getTicker));
+
+        List<String> labels = new ArrayList<>(columns.size());
+        for (IndicatorExpression column : columns) labels.add(column.getText());
+        return new ScreenResult(matches, labels, universe.size(), withData, stale);
+    }
+
+    // Evaluates tickers [from, to); halves the range until it is small enough to run directly.
+    // Serializable only through ForkJoinTask and never serialized
+    @SuppressWarnings("serial")
+    private class ScreenTask extends RecursiveTask<Outcome[]> {
+        private final List<String> tickers;
+        private final int from;
+        private final int to;
+        private final List<Condition> conditions;
+        private final List<IndicatorExpression> columns;
+
+        ScreenTask(List<String> tickers, int from, int to, List<Condition> conditions, List<IndicatorExpression> columns) {
+            this.tickers = tickers;
+            this.from = from;
+            this.to = to;
+            this.conditions = conditions;
+            this.columns = columns;
+        }
+
+        @Override
+        protected Outcome[] compute() {
+            if (to - from <= TICKERS_PER_TASK) {
+                Outcome[] outcomes = new Outcome[to - from];
+                for (int i = from; i < to; i++) {
+                    try {
+                        outcomes[i - from] = evaluate(tickers.get(i).trim().toUpperCase(), conditions, columns);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return outcomes;
+            }
+            int mid = (from + to) >>> 1;
+            ScreenTask left = new ScreenTask(tickers, from, mid, conditions, columns);
+            left.fork();
+            Outcome[] right = new ScreenTask(tickers, mid, to, conditions, columns).compute();
+            Outcome[] joined = Arrays.copyOf(left.join(), to - from);
+            System.arraycopy(right, 0, joined, mid - from, right.length);
+            return joined;
+        }
+    }
+
+    private Outcome evaluate(String ticker, List<Condition> conditions, List<IndicatorExpression> columns) throws IOException {
+        BarSeries bars = barStore.readRecent(ticker, "day", true, lookbackBars);
+        if (bars == null || bars.isEmpty()) return null;
+        int last = bars.size() - 1;
+        // Per-ticker graph without the shared cache: a universe scan would only evict chart entries
+        IndicatorGraph graph = new IndicatorGraph(bars);
+        for (Condition condition : conditions) {
+            double l = condition.left.evaluate(graph)[last];
+            double r = condition.right.evaluate(graph)[last];
+            if (!condition.test(l, r)) return new Outcome(bars.epochDay(last), null);
+        }
+        double[] values = new double[columns.size()];
+        for (int c = 0; c < values.length; c++) values[c] = columns.get(c).evaluate(graph)[last];
+        return new Outcome(bars.epochDay(last), new Match(ticker, bars.epochDay(last), bars.close(last), values[0], values));
+    }
+
+    // "A < B AND C >= D"; AND is case-insensitive and each side is an indicator expression
+    static List<Condition> parseConditions(String conditions) {
+        if (conditions == null || conditions.isBlank()) {
+            throw new IllegalArgumentException("At least one condition is required, e.g. 'RSI(close,14) < 30'");
+        }
+        List<Condition> parsed = new ArrayList<>();
+        for (String part : conditions.split("(?i)\\s+AND\\s+")) {
+            String text = part.trim();
+            int at = -1;
+            String op = null;
+            for (int i = 0; i < text.length() && op == null; i++) {
+                char c = text.charAt(i);
+                if (c == '<' || c == '>') {
+                    at = i;
+                    op = i + 1 < text.length() && text.charAt(i + 1) == '=' ? c + "=" : String.valueOf(c);
+                }
+            }
+            if (op == null) {
+                throw new IllegalArgumentException("Condition '" + text + "' needs a comparison (<, <=, >, >=)");
+            }
+            parsed.add(new Condition(text, compileLocal(text.substring(0, at)),
+                op, compileLocal(text.substring(at + op.length()))));
+        }
+        return parsed;
+    }
+
+    // Screens read one ticker at a time, so expressions may only use that ticker's own bars
+    private static IndicatorExpression compileLocal(String text) {
+        IndicatorExpression expression = IndicatorExpression.compile(text);
+        if (!expression.getTickers().isEmpty()) {
+            throw new IllegalArgumentException("Screener expressions can only use the columns open, high, low, close, "
+                + "volume and vwap; unknown names: " + String.join(", ", expression.getTickers()));
+        }
+        return expression;
+    }
+
+    @Tool(description = "Screen a universe of stocks against indicator conditions using the local bar store (no API calls). " +
+          "Parameters: conditions (comparisons joined by AND, each side an indicator expression, e.g. " +
+          "'RSI(close,14) < 30 AND close > SMA(close,200)'; expressions support + - * /, open/high/low/close/volume/vwap " +
+          "and SMA, EMA, RSI, DPO, MAX, MIN, STDEV, DIFF); tickers (optional comma-separated list; default: every ticker in the store, " +
+          "see loadMarketDailyBars); rankBy (optional expression, results ascending; prefix '-' to rank descending; " +
+          "default: left side of the first condition); limit (optional, default 50). " +
+          "Evaluated on each ticker's latest daily bar. Returns a ranked table of matches.")
+    public String screenStocks(String conditions, String tickers, String rankBy, Integer limit) {
+        try {
+            if (!barStore.isEnabled()) {
+                return "Local bar store is disabled (BAR_STORE_ENABLED=false); the screener reads only stored bars";
+            }
+            int max = limit == null || limit <= 0 ? 50 : limit;
+            List<String> universe = new ArrayList<>();
+            if (tickers != null) {
+                for (String ticker : tickers.split(",")) {
+                    if (!ticker.isBlank()) universe.add(ticker.trim().toUpperCase());
+                }
+            }
+
+            long startNanos = System.nanoTime();
+            ScreenResult result = screen(universe, conditions, rankBy);
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+            if (result.getWithData() == 0) {
+                return "No stored daily bars for the requested tickers; run loadMarketDailyBars first";
+            }
+
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("Screened %d tickers (%d with stored bars, %d stale) in %d ms: %d match\n\n",
+                result.getScreened(), result.getWithData(), result.getStale(), millis, result.getMatches().size()));
+            List<String> labels = result.getColumnLabels();
+            out.append(String.format("%-4s | %-8s | %-10s | %9s", "#", "Ticker", "Date", "Close"));
+            for (String label : labels) out.append(" | ").append(label);
+            out.append("\n");
+            List<Match> matches = result.getMatches();
+            for (int i = 0; i < Math.min(max, matches.size()); i++) {
+                Match match = matches.get(i);
+                out.append(String.format("%-4d | %-8s | %-10s | %9.2f", i + 1, match.getTicker(),
+                    LocalDate.ofEpochDay(match.getEpochDay()), match.getClose()));
+                for (double value : match.getColumns()) out.append(String.format(" | %.4f", value));
+                out.append("\n");
+            }
+            if (matches.size() > max) {
+                out.append(String.format("... %d more\n", matches.size() - max));
+            }
+            return out.toString();
+        } catch (Exception e) {
+            return "Error screening stocks: " + e.getMessage();
+        }
+    }
+}
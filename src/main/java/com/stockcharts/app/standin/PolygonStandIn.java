@@ -0,0 +1,334 @@
+package com.stockcharts.app.standin;
+
+import com.stockcharts.app.config.Config;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP stand-in for the Polygon aggregates API, for benchmarking fetch, cache and retry
+ * behaviour without network access or a paid key. Serves /v2/aggs ticker ranges (paginated with
+ * next_url) and grouped-daily responses, either replayed from recordings or generated
+ * deterministically, and injects latency, 5xx errors and 429s at configurable rates.
+ */
+public class PolygonStandIn {
+
+    private static final Pattern RANGE_PATH =
+        Pattern.compile("/v2/aggs/ticker/([^/]+)/range/(\\d+)/([a-z]+)/([0-9-]+)/([0-9-]+)");
+    private static final Pattern GROUPED_PATH =
+        Pattern.compile("/v2/aggs/grouped/locale/us/market/stocks/([0-9-]+)");
+    private static final Pattern NEXT_URL_ORIGIN = Pattern.compile("(\"next_url\"\\s*:\\s*\")https?://[^/\"]+");
+    private static final int DEFAULT_PAGE_LIMIT = 5000;
+    private static final int MAX_PAGE_LIMIT = 50000;
+
+    private final int port;
+    private final Path recordings;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final long seed;
+    private final int universeSize;
+    private final SyntheticBars synthetic;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder served = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final LongAdder injectedRateLimits = new LongAdder();
+
+    public PolygonStandIn(int port, Path recordings, long latencyMillis, long jitterMillis,
+                          double errorRate, double rateLimitRate, long seed, int universeSize) {
+        this.port = port;
+        this.recordings = recordings;
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.jitterMillis = Math.max(0, jitterMillis);
+        this.errorRate = errorRate;
+        this.rateLimitRate = rateLimitRate;
+        this.seed = seed;
+        this.universeSize = Math.max(1, universeSize);
+        this.synthetic = new SyntheticBars(seed);
+    }
+
+    public static PolygonStandIn fromConfig() {
+        return fromConfig(Config.getIntSetting("POLYGON_STANDIN_PORT", 0));
+    }
+
+    static PolygonStandIn fromConfig(int port) {
+        String recordings = Config.getSetting("POLYGON_STANDIN_RECORDINGS", null);
+        return new PolygonStandIn(
+            port,
+            recordings != null ? Paths.get(recordings) : null,
+            Config.getIntSetting("POLYGON_STANDIN_LATENCY_MILLIS", 0),
+            Config.getIntSetting("POLYGON_STANDIN_JITTER_MILLIS", 0),
+            Config.getDoubleSetting("POLYGON_STANDIN_ERROR_RATE", 0.0),
+            Config.getDoubleSetting("POLYGON_STANDIN_429_RATE", 0.0),
+            Config.getIntSetting("POLYGON_STANDIN_SEED", 42),
+            Config.getIntSetting("POLYGON_STANDIN_UNIVERSE", 500));
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) return;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "polygon-standin-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+    }
+
+    public synchronized String getBaseUrl() {
+        if (server == null) throw new IllegalStateException("Polygon stand-in is not running");
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public String stats() {
+        return String.format("Polygon stand-in: %d requests served (%d replayed), %d injected errors, %d injected 429s\n" +
+                "Latency: %d ms + up to %d ms jitter, Error rate: %.3f, 429 rate: %.3f, Seed: %d\n",
+            served.sum(), replayed.sum(), injectedErrors.sum(), injectedRateLimits.sum(),
+            latencyMillis, jitterMillis, errorRate, rateLimitRate, seed);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            served.increment();
+            long request = sequence.incrementAndGet();
+            URI uri = exchange.getRequestURI();
+            Map<String, String> query = parseQuery(uri.getRawQuery());
+
+            long delay = latencyMillis + (jitterMillis == 0 ? 0 : (long) (unit(request, 1) * (jitterMillis + 1)));
+            if (delay > 0) Thread.sleep(delay);
+
+            // Same seed and request order give the same faults
+            double draw = unit(request, 2);
+            if (draw < rateLimitRate) {
+                injectedRateLimits.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 429, "{\"status\":\"ERROR\",\"request_id\":\"standin-" + request
+                    + "\",\"error\":\"You've exceeded the maximum requests per minute, please wait or upgrade your subscription to continue.\"}");
+                return;
+            }
+            if (draw < rateLimitRate + errorRate) {
+                injectedErrors.increment();
+                int[] statuses = {500, 502, 503, 504};
+                send(exchange, statuses[(int) (unit(request, 3) * statuses.length)],
+                    "{\"status\":\"ERROR\",\"request_id\":\"standin-" + request + "\",\"error\":\"Injected failure\"}");
+                return;
+            }
+            if (query.get("apikey") == null && query.get("apiKey") == null) {
+                send(exchange, 401, "{\"status\":\"ERROR\",\"request_id\":\"standin-" + request
+                    + "\",\"error\":\"API Key was not provided\"}");
+                return;
+            }
+
+            String recorded = replay(uri);
+            if (recorded != null) {
+                replayed.increment();
+                send(exchange, 200, NEXT_URL_ORIGIN.matcher(recorded).replaceAll("$1" + Matcher.quoteReplacement(getBaseUrl())));
+                return;
+            }
+
+            String path = uri.getRawPath();
+            Matcher range = RANGE_PATH.matcher(path);
+            Matcher grouped = GROUPED_PATH.matcher(path);
+            if (range.matches()) {
+                serveRange(exchange, request, range, query);
+            } else if (grouped.matches()) {
+                serveGrouped(exchange, request, grouped.group(1));
+            } else {
+                send(exchange, 404, "{\"status\":\"NOT_FOUND\",\"request_id\":\"standin-" + request
+                    + "\",\"message\":\"The stand-in only serves /v2/aggs endpoints\"}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } catch (RuntimeException e) {
+            send(exchange, 400, "{\"status\":\"ERROR\",\"error\":\"" + jsonEscape(String.valueOf(e.getMessage())) + "\"}");
+        }
+    }
+
+    private void serveRange(HttpExchange exchange, long request, Matcher range, Map<String, String> query) throws IOException {
+        String ticker = URLDecoder.decode(range.group(1), StandardCharsets.UTF_8).toUpperCase();
+        String timespan = range.group(3);
+        long fromDay = LocalDate.parse(range.group(4)).toEpochDay();
+        long toDay = LocalDate.parse(range.group(5)).toEpochDay();
+        SyntheticBars.Bars bars = synthetic.range(ticker, Integer.parseInt(range.group(2)), timespan, fromDay, toDay);
+        if (bars == null) {
+            send(exchange, 400, "{\"status\":\"ERROR\",\"request_id\":\"standin-" + request
+                + "\",\"error\":\"Timespan '" + jsonEscape(timespan) + "' is not supported by the stand-in\"}");
+            return;
+        }
+
+        boolean descending = "desc".equals(query.get("sort"));
+        int limit = Math.min(MAX_PAGE_LIMIT, parseInt(query.get("limit"), DEFAULT_PAGE_LIMIT));
+        int offset = parseInt(query.get("cursor"), 0);
+        int end = Math.min(bars.size, offset + limit);
+        int rows = Math.max(0, end - offset);
+
+        StringBuilder json = new StringBuilder(128 + rows * 120);
+        json.append("{\"ticker\":\"").append(jsonEscape(ticker)).append("\",\"queryCount\":").append(rows)
+            .append(",\"resultsCount\":").append(rows)
+            .append(",\"adjusted\":").append(!"false".equals(query.get("adjusted")));
+        if (rows > 0) {
+            json.append(",\"results\":[");
+            for (int i = offset; i < end; i++) {
+                int row = descending ? bars.size - 1 - i : i;
+                if (i > offset) json.append(',');
+                appendBar(json, null, bars.t[row], bars.open[row], bars.high[row], bars.low[row], bars.close[row], bars.volume[row]);
+            }
+            json.append(']');
+        }
+        json.append(",\"status\":\"OK\",\"request_id\":\"standin-").append(request).append("\",\"count\":").append(rows);
+        if (end < bars.size) {
+            json.append(",\"next_url\":\"").append(getBaseUrl()).append(range.group(0))
+                .append("?cursor=").append(end)
+                .append("&adjusted=").append(query.getOrDefault("adjusted", "true"))
+                .append("&sort=").append(descending ? "desc" : "asc")
+                .append("&limit=").append(limit).append('"');
+        }
+        json.append('}');
+        send(exchange, 200, json.toString());
+    }
+
+    private void serveGrouped(HttpExchange exchange, long request, String date) throws IOException {
+        long day = LocalDate.parse(date).toEpochDay();
+        StringBuilder json = new StringBuilder(128 + universeSize * 130);
+        int count = SyntheticBars.isTradingDay(day) ? universeSize : 0;
+        json.append("{\"queryCount\":").append(count).append(",\"resultsCount\":").append(count).append(",\"adjusted\":true");
+        if (count > 0) {
+            json.append(",\"results\":[");
+            long time = SyntheticBars.startOfDayMillis(day);
+            for (int i = 0; i < count; i++) {
+                String ticker = universeTicker(i);
+                double[] bar = synthetic.daily(ticker, day);
+                if (i > 0) json.append(',');
+                appendBar(json, ticker, time, bar[0], bar[1], bar[2], bar[3], bar[4]);
+            }
+            json.append(']');
+        }
+        json.append(",\"status\":\"OK\",\"request_id\":\"standin-").append(request).append("\"}");
+        send(exchange, 200, json.toString());
+    }
+
+    // Synthetic universe: AAAA, AAAB, ... so grouped tickers are valid symbols for per-ticker requests too
+    static String universeTicker(int index) {
+        char[] name = new char[4];
+        for (int i = 3; i >= 0; i--) {
+            name[i] = (char) ('A' + index % 26);
+            index /= 26;
+        }
+        return new String(name);
+    }
+
+    private static void appendBar(StringBuilder json, String ticker, long time,
+                                  double open, double high, double low, double close, double volume) {
+        json.append('{');
+        if (ticker != null) json.append("\"T\":\"").append(ticker).append("\",");
+        json.append("\"v\":").append((long) volume)
+            .append(",\"vw\":").append(round4((high + low + close) / 3))
+            .append(",\"o\":").append(round4(open))
+            .append(",\"c\":").append(round4(close))
+            .append(",\"h\":").append(round4(high))
+            .append(",\"l\":").append(round4(low))
+            .append(",\"t\":").append(time)
+            .append(",\"n\":").append(Math.max(1, (long) volume / 100))
+            .append('}');
+    }
+
+    private String replay(URI uri) throws IOException {
+        if (recordings == null) return null;
+        Path file = recordings.resolve(Recordings.fileName(uri));
+        return Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : null;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(status, gzip ? 0 : bytes.length);
+        try (OutputStream out = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8192) : exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) return params;
+        for (String param : rawQuery.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(param.substring(0, eq), StandardCharsets.UTF_8),
+                URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static double round4(double value) {
+        return Math.round(value * 10_000) / 10_000.0;
+    }
+
+    private static String jsonEscape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private double unit(long request, int stream) {
+        long z = seed * 0x9E3779B97F4A7C15L + request * 31 + stream;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return ((z ^ (z >>> 31)) >>> 11) * 0x1.0p-53;
+    }
+
+    /** Run the stand-in on its own, e.g. to point several server processes at it via POLYGON_BASE_URL. */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Config.getIntSetting("POLYGON_STANDIN_PORT", 8089);
+        PolygonStandIn standIn = fromConfig(port);
+        standIn.start();
+        System.out.println("Polygon stand-in listening on " + standIn.getBaseUrl());
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,49 @@
+package com.stockcharts.app.standin;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * File naming shared by the client-side recorder and the stand-in's replay: one file per request
+ * path and query, with the API key stripped so recordings can be committed and shared.
+ */
+public final class Recordings {
+
+    private static final int MAX_NAME_LENGTH = 120;
+
+    private Recordings() {}
+
+    public static String fileName(URI uri) {
+        List<String> params = new ArrayList<>();
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                String name = param.contains("=") ? param.substring(0, param.indexOf('=')) : param;
+                if (!name.isEmpty() && !"apikey".equalsIgnoreCase(name)) params.add(param);
+            }
+        }
+        Collections.sort(params);
+
+        String key = uri.getRawPath() + (params.isEmpty() ? "" : "?" + String.join("&", params));
+        String name = key.replaceAll("^/+", "").replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH) + "_" + sha256(key).substring(0, 16);
+        }
+        return name + ".json";
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
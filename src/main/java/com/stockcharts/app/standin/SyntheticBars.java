@@ -0,0 +1,214 @@
+package com.stockcharts.app.standin;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Deterministic synthetic bars. Each ticker's daily close is a closed-form function of the day
+ * (a few seeded cycles plus hashed noise), so any two requests agree on overlapping bars no
+ * matter how the range is split, and generating a bar costs O(1).
+ */
+final class SyntheticBars {
+
+    static final ZoneId MARKET_ZONE = ZoneId.of("America/New_York");
+    private static final int SESSION_OPEN_MINUTE = 9 * 60 + 30;
+    private static final int SESSION_MINUTES = 390;
+    private static final int CYCLES = 6;
+
+    private final long seed;
+
+    // Bars in time order; t is epoch millis like Polygon's "t"
+    static final class Bars {
+        long[] t = new long[64];
+        double[] open = new double[64];
+        double[] high = new double[64];
+        double[] low = new double[64];
+        double[] close = new double[64];
+        double[] volume = new double[64];
+        int size;
+
+        void add(long time, double o, double h, double l, double c, double v) {
+            if (size == t.length) {
+                int capacity = size * 2;
+                t = Arrays.copyOf(t, capacity);
+                open = Arrays.copyOf(open, capacity);
+                high = Arrays.copyOf(high, capacity);
+                low = Arrays.copyOf(low, capacity);
+                close = Arrays.copyOf(close, capacity);
+                volume = Arrays.copyOf(volume, capacity);
+            }
+            t[size] = time;
+            open[size] = o;
+            high[size] = h;
+            low[size] = l;
+            close[size] = c;
+            volume[size] = v;
+            size++;
+        }
+    }
+
+    SyntheticBars(long seed) {
+        this.seed = seed;
+    }
+
+    static boolean isTradingDay(long epochDay) {
+        DayOfWeek dow = LocalDate.ofEpochDay(epochDay).getDayOfWeek();
+        return dow != DayOfWeek.SATURDAY && dow != DayOfWeek.SUNDAY;
+    }
+
+    /**
+     * Bars of multiplier x timespan between the two dates (inclusive). Supports minute, hour, day,
+     * week and month; returns null for other timespans.
+     */
+    Bars range(String ticker, int multiplier, String timespan, long fromDay, long toDay) {
+        int step = Math.max(1, multiplier);
+        Bars bars = new Bars();
+        switch (timespan) {
+            case "minute", "hour" -> {
+                int stepMinutes = "hour".equals(timespan) ? step * 60 : step;
+                for (long day = fromDay; day <= toDay; day++) {
+                    if (isTradingDay(day)) addIntraday(bars, ticker, day, stepMinutes);
+                }
+            }
+            case "day" -> {
+                for (long day = fromDay, n = 0; day <= toDay; day++) {
+                    if (!isTradingDay(day)) continue;
+                    if (n++ % step == 0) addDays(bars, ticker, day, step, toDay);
+                }
+            }
+            case "week", "month" -> {
+                long day = fromDay;
+                while (day <= toDay) {
+                    LocalDate start = LocalDate.ofEpochDay(day);
+                    LocalDate next = "week".equals(timespan)
+                        ? start.plusDays(7L * step - (start.getDayOfWeek().getValue() - 1))
+                        : start.withDayOfMonth(1).plusMonths(step);
+                    long end = Math.min(toDay, next.toEpochDay() - 1);
+                    addPeriod(bars, ticker, day, end);
+                    day = end + 1;
+                }
+            }
+            default -> {
+                return null;
+            }
+        }
+        return bars;
+    }
+
+    // Daily bar of one ticker, or null when the day is not a trading day
+    double[] daily(String ticker, long day) {
+        if (!isTradingDay(day)) return null;
+        long key = tickerKey(ticker);
+        double close = close(key, day);
+        double previous = close(key, previousTradingDay(day));
+        double open = previous * (1 + 0.004 * noise(key, day, 1));
+        double range = Math.abs(close - open) + close * (0.004 + 0.01 * Math.abs(noise(key, day, 2)));
+        double high = Math.max(open, close) + range * 0.5 * unit(key, day, 3);
+        double low = Math.min(open, close) - range * 0.5 * unit(key, day, 4);
+        double volume = Math.floor(baseVolume(key) * (0.6 + unit(key, day, 5)));
+        return new double[] {open, high, Math.max(0.01, low), close, volume};
+    }
+
+    private void addDays(Bars bars, String ticker, long day, int step, long toDay) {
+        long end = day;
+        for (int counted = 1; counted < step && end < toDay; ) {
+            end++;
+            if (isTradingDay(end)) counted++;
+        }
+        addPeriod(bars, ticker, day, end);
+    }
+
+    // One bar aggregating the trading days in [fromDay, toDay]
+    private void addPeriod(Bars bars, String ticker, long fromDay, long toDay) {
+        double open = Double.NaN, high = Double.NEGATIVE_INFINITY, low = Double.POSITIVE_INFINITY, close = Double.NaN;
+        double volume = 0;
+        long firstDay = -1;
+        for (long day = fromDay; day <= toDay; day++) {
+            double[] bar = daily(ticker, day);
+            if (bar == null) continue;
+            if (firstDay < 0) {
+                firstDay = day;
+                open = bar[0];
+            }
+            high = Math.max(high, bar[1]);
+            low = Math.min(low, bar[2]);
+            close = bar[3];
+            volume += bar[4];
+        }
+        if (firstDay >= 0) {
+            bars.add(startOfDayMillis(firstDay), open, high, low, close, volume);
+        }
+    }
+
+    private void addIntraday(Bars bars, String ticker, long day, int stepMinutes) {
+        double[] daily = daily(ticker, day);
+        long key = tickerKey(ticker);
+        long sessionStart = startOfDayMillis(day) + SESSION_OPEN_MINUTE * 60_000L;
+        double previous = daily[0];
+        double barVolume = daily[4] * stepMinutes / SESSION_MINUTES;
+        for (int minute = stepMinutes; minute <= SESSION_MINUTES; minute += stepMinutes) {
+            // Drift from the daily open to the daily close with bounded wiggle
+            double progress = (double) minute / SESSION_MINUTES;
+            double close = daily[0] + (daily[3] - daily[0]) * progress
+                + daily[3] * 0.002 * noise(key, day * SESSION_MINUTES + minute, 6);
+            close = Math.min(daily[1], Math.max(daily[2], close));
+            double high = Math.min(daily[1], Math.max(previous, close) * (1 + 0.0005 * unit(key, day * SESSION_MINUTES + minute, 7)));
+            double low = Math.max(daily[2], Math.min(previous, close) * (1 - 0.0005 * unit(key, day * SESSION_MINUTES + minute, 8)));
+            bars.add(sessionStart + (minute - stepMinutes) * 60_000L, previous, high, low, close, Math.floor(barVolume));
+            previous = close;
+        }
+    }
+
+    private double close(long key, long day) {
+        double logPrice = Math.log(basePrice(key));
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+            double period = 20.0 * Math.pow(2.3, cycle);
+            double amplitude = 0.025 * Math.sqrt(period / 20.0);
+            double phase = 2 * Math.PI * unit(key, cycle, 9);
+            logPrice += amplitude * Math.sin(2 * Math.PI * day / period + phase);
+        }
+        logPrice += 0.01 * noise(key, day, 0);
+        return Math.exp(logPrice);
+    }
+
+    private static long previousTradingDay(long day) {
+        long previous = day - 1;
+        while (!isTradingDay(previous)) previous--;
+        return previous;
+    }
+
+    static long startOfDayMillis(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(MARKET_ZONE).toInstant().toEpochMilli();
+    }
+
+    private double basePrice(long key) {
+        return 10 + 290 * unit(key, 0, 10);
+    }
+
+    private double baseVolume(long key) {
+        return 100_000 + 20_000_000 * unit(key, 0, 11);
+    }
+
+    private long tickerKey(String ticker) {
+        return mix(seed ^ (ticker.hashCode() * 0x9E3779B97F4A7C15L));
+    }
+
+    // Uniform in [0, 1)
+    private static double unit(long key, long day, int stream) {
+        return (mix(key ^ mix(day * 31 + stream)) >>> 11) * 0x1.0p-53;
+    }
+
+    // Roughly normal in [-3, 3] (Irwin-Hall of three uniforms)
+    private static double noise(long key, long day, int stream) {
+        return (unit(key, day, stream) + unit(key, day, stream + 100) + unit(key, day, stream + 200) - 1.5) * 2;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
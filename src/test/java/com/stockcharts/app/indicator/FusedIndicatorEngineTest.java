@@ -0,0 +1,69 @@
+package com.stockcharts.app.indicator;
+
+import com.stockcharts.app.model.BarSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class FusedIndicatorEngineTest {
+
+    private static final int N = 600;
+
+    // A stream advanced through appends and revised last bars must equal a fresh run every time
+    @Test
+    void streamMatchesRunAsBarsAreAppendedAndRevised() {
+        Random random = new Random(7);
+        int[] days = new int[N];
+        double[] open = new double[N];
+        double[] high = new double[N];
+        double[] low = new double[N];
+        double[] close = new double[N];
+        double[] volume = new double[N];
+        double price = 100;
+        for (int i = 0; i < N; i++) {
+            days[i] = 18_000 + i;
+            price *= 1 + 0.02 * random.nextGaussian();
+            open[i] = price;
+            close[i] = price;
+            high[i] = price * (1 + 0.01 * random.nextDouble());
+            low[i] = price * (1 - 0.01 * random.nextDouble());
+            volume[i] = 1000 + random.nextInt(1000);
+        }
+
+        FusedIndicatorEngine.Request request = new FusedIndicatorEngine.Request();
+        for (String type : new String[] {"SMA", "EMA", "RSI", "DPO", "MACD", "BB", "ATR", "STOCH", "OBV", "VWAP"}) {
+            request.add(type, 14);
+        }
+        // Windows longer than the first few advances start lazily
+        request.add("SMA", 200);
+        request.add("BB", 300);
+
+        FusedIndicatorEngine.Stream stream = new FusedIndicatorEngine.Stream(request);
+        for (int n = 0; n <= N; n += 1 + random.nextInt(5)) {
+            if (n > 1 && random.nextBoolean()) {
+                double[] revisedClose = Arrays.copyOf(close, n);
+                double[] revisedHigh = Arrays.copyOf(high, n);
+                revisedClose[n - 1] *= 1.01;
+                revisedHigh[n - 1] = Math.max(revisedHigh[n - 1], revisedClose[n - 1]);
+                BarSeries revised = new BarSeries(Arrays.copyOf(days, n), Arrays.copyOf(open, n), revisedHigh,
+                    Arrays.copyOf(low, n), revisedClose, Arrays.copyOf(volume, n));
+                assertResultsEqual(request, FusedIndicatorEngine.run(revised, request), stream.advance(revised), "revised " + n);
+            }
+            BarSeries bars = new BarSeries(Arrays.copyOf(days, n), Arrays.copyOf(open, n), Arrays.copyOf(high, n),
+                Arrays.copyOf(low, n), Arrays.copyOf(close, n), Arrays.copyOf(volume, n));
+            assertResultsEqual(request, FusedIndicatorEngine.run(bars, request), stream.advance(bars), "bars " + n);
+        }
+    }
+
+    private static void assertResultsEqual(FusedIndicatorEngine.Request request, FusedIndicatorEngine.Result expected,
+                                   FusedIndicatorEngine.Result actual, String message) {
+        assertNotNull(actual, message);
+        for (String key : request.keys()) {
+            assertArrayEquals(expected.get(key), actual.get(key), message + " " + key);
+        }
+    }
+}
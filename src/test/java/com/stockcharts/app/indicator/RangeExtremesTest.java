@@ -0,0 +1,105 @@
+package com.stockcharts.app.indicator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RangeExtremesTest {
+
+    @Test
+    void queriesMatchBruteForce() {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 300; trial++) {
+            int n = 1 + random.nextInt(400);
+            int from = random.nextInt(5);
+            double[] values = randomValues(random, from + n);
+            RangeExtremes max = RangeExtremes.max(values, from, n);
+            RangeExtremes min = RangeExtremes.min(values, from, n);
+            for (int q = 0; q < 200; q++) {
+                int start = random.nextInt(n);
+                int end = start + random.nextInt(n - start);
+                assertEquals(bruteMax(values, from + start, from + end), max.query(start, end), "max " + start + ".." + end);
+                assertEquals(bruteMin(values, from + start, from + end), min.query(start, end), "min " + start + ".." + end);
+            }
+        }
+    }
+
+    // Appending one value at a time must answer exactly like an index built over the whole array
+    @Test
+    void appendMatchesBruteForceAtEverySize() {
+        Random random = new Random(13);
+        for (int trial = 0; trial < 20; trial++) {
+            double[] values = randomValues(random, 700);
+            RangeExtremes max = RangeExtremes.max();
+            RangeExtremes min = RangeExtremes.min();
+            for (int n = 1; n <= values.length; n++) {
+                max.append(values[n - 1]);
+                min.append(values[n - 1]);
+                assertEquals(n, max.size());
+                for (int q = 0; q < 20; q++) {
+                    int start = random.nextInt(n);
+                    int end = start + random.nextInt(n - start);
+                    assertEquals(bruteMax(values, start, end), max.query(start, end), "max " + start + ".." + end + " of " + n);
+                    assertEquals(bruteMin(values, start, end), min.query(start, end), "min " + start + ".." + end + " of " + n);
+                }
+            }
+        }
+    }
+
+    @Test
+    void firstBeyondMatchesBruteForce() {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 200; trial++) {
+            int n = 1 + random.nextInt(300);
+            double[] values = randomValues(random, n);
+            RangeExtremes max = RangeExtremes.max(values, 0, n);
+            RangeExtremes min = RangeExtremes.min();
+            for (double value : values) min.append(value);
+            for (int q = 0; q < 100; q++) {
+                int start = random.nextInt(n + 2);
+                double threshold = random.nextInt(22) - 1;
+                assertEquals(bruteFirst(values, start, threshold, true), max.firstBeyond(start, threshold),
+                    "above " + threshold + " from " + start);
+                assertEquals(bruteFirst(values, start, threshold, false), min.firstBeyond(start, threshold),
+                    "below " + threshold + " from " + start);
+            }
+        }
+    }
+
+    @Test
+    void rejectsRangesOutsideTheValues() {
+        RangeExtremes max = RangeExtremes.max(new double[] {1, 2, 3}, 0, 3);
+        assertThrows(IndexOutOfBoundsException.class, () -> max.query(0, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> max.query(2, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> RangeExtremes.min().query(0, 0));
+    }
+
+    // Small integers so ties between equal extremes are frequent
+    private static double[] randomValues(Random random, int n) {
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) values[i] = random.nextInt(20);
+        return values;
+    }
+
+    private static double bruteMax(double[] values, int start, int end) {
+        double result = values[start];
+        for (int i = start + 1; i <= end; i++) result = Math.max(result, values[i]);
+        return result;
+    }
+
+    private static double bruteMin(double[] values, int start, int end) {
+        double result = values[start];
+        for (int i = start + 1; i <= end; i++) result = Math.min(result, values[i]);
+        return result;
+    }
+
+    private static int bruteFirst(double[] values, int start, double threshold, boolean above) {
+        for (int i = start; i < values.length; i++) {
+            if (above ? values[i] > threshold : values[i] < threshold) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,115 @@
+package com.stockcharts.app.indicator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Streaming indicators must give the kernels' values bar for bar, including the NaN warm-up and
+ * leading NaN inputs, and a restored checkpoint must continue exactly like the original.
+ */
+class StreamingIndicatorTest {
+
+    private static final int N = 500;
+
+    @FunctionalInterface
+    private interface Kernel {
+        void apply(double[] in, int from, int n, double[] out);
+    }
+
+    @Test
+    void smaMatchesKernel() {
+        for (int period : new int[] {1, 2, 14, 200}) {
+            assertMatchesKernel(() -> new StreamingSma(period), (in, from, n, out) -> IndicatorKernels.sma(in, from, n, period, out));
+        }
+    }
+
+    @Test
+    void emaMatchesKernel() {
+        for (int period : new int[] {1, 12, 26, 200}) {
+            assertMatchesKernel(() -> new StreamingEma(period), (in, from, n, out) -> IndicatorKernels.ema(in, from, n, period, out));
+        }
+    }
+
+    @Test
+    void rsiMatchesKernel() {
+        for (int period : new int[] {1, 2, 14, 50}) {
+            assertMatchesKernel(() -> new StreamingRsi(period), (in, from, n, out) -> IndicatorKernels.rsi(in, from, n, period, out));
+        }
+    }
+
+    @Test
+    void dpoMatchesKernel() {
+        for (int period : new int[] {1, 20, 100}) {
+            assertMatchesKernel(() -> new StreamingDpo(period), (in, from, n, out) -> IndicatorKernels.dpo(in, from, n, period, out));
+        }
+    }
+
+    @Test
+    void macdMatchesKernel() {
+        double[] prices = prices(new Random(5), 7);
+        double[] line = new double[N];
+        double[] signal = new double[N];
+        double[] histogram = new double[N];
+        IndicatorKernels.macd(prices, 0, N, 12, 26, 9, line, signal, histogram);
+        StreamingMacd macd = new StreamingMacd(12, 26, 9);
+        for (int i = 0; i < N; i++) {
+            assertEquals(line[i], macd.update(prices[i]), "line at " + i);
+            assertEquals(signal[i], macd.signal(), "signal at " + i);
+            assertEquals(histogram[i], macd.histogram(), "histogram at " + i);
+        }
+    }
+
+    @Test
+    void restoredCheckpointsContinueIdentically() {
+        assertRestores(() -> new StreamingSma(20), StreamingSma::restore);
+        assertRestores(() -> new StreamingEma(20), StreamingEma::restore);
+        assertRestores(() -> new StreamingRsi(14), StreamingRsi::restore);
+        assertRestores(() -> new StreamingDpo(20), StreamingDpo::restore);
+        assertRestores(() -> new StreamingMacd(12, 26, 9), StreamingMacd::restore);
+    }
+
+    private static void assertMatchesKernel(Supplier<StreamingIndicator> streaming, Kernel kernel) {
+        Random random = new Random(3);
+        for (int leadingNaN : new int[] {0, 5}) {
+            double[] prices = prices(random, leadingNaN);
+            double[] expected = new double[N];
+            kernel.apply(prices, 0, N, expected);
+            StreamingIndicator indicator = streaming.get();
+            double[] actual = new double[N];
+            for (int i = 0; i < N; i++) actual[i] = indicator.update(prices[i]);
+            assertArrayEquals(expected, actual);
+            assertEquals(N - leadingNaN, indicator.count());
+        }
+    }
+
+    private static void assertRestores(Supplier<StreamingIndicator> streaming, Function<double[], StreamingIndicator> restore) {
+        double[] prices = prices(new Random(9), 3);
+        for (int split : new int[] {0, 2, 10, 60, N / 2}) {
+            StreamingIndicator original = streaming.get();
+            original.updateAll(prices, 0, split);
+            StreamingIndicator restored = restore.apply(original.checkpoint());
+            assertEquals(original.count(), restored.count());
+            assertEquals(original.value(), restored.value());
+            for (int i = split; i < N; i++) {
+                assertEquals(original.update(prices[i]), restored.update(prices[i]), "bar " + i + " after restore at " + split);
+            }
+        }
+    }
+
+    // Random walk prices, the first leadingNaN of them not yet available
+    private static double[] prices(Random random, int leadingNaN) {
+        double[] prices = new double[N];
+        double price = 100;
+        for (int i = 0; i < N; i++) {
+            price *= 1 + 0.02 * random.nextGaussian();
+            prices[i] = i < leadingNaN ? Double.NaN : price;
+        }
+        return prices;
+    }
+}
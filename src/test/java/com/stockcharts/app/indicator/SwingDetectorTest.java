@@ -0,0 +1,72 @@
+package com.stockcharts.app.indicator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SwingDetectorTest {
+
+    // Small integer prices so equal highs and lows (the non-strict cases) are common
+    @Test
+    void matchesBruteForceFractalsForEveryWidth() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 2000; trial++) {
+            int n = random.nextInt(200);
+            int[] widths = new int[1 + random.nextInt(4)];
+            for (int k = 0; k < widths.length; k++) widths[k] = 1 + random.nextInt(12);
+            double[] high = new double[n];
+            double[] low = new double[n];
+            for (int i = 0; i < n; i++) {
+                high[i] = random.nextInt(8);
+                low[i] = random.nextInt(8);
+            }
+
+            List<String> swings = new ArrayList<>();
+            new SwingDetector((width, index, isHigh, price) -> swings.add(width + ":" + index + ":" + isHigh + ":" + price), widths)
+                .updateAll(high, low, 0, n);
+            assertEquals(bruteForce(high, low, widths), swings, "trial " + trial);
+        }
+    }
+
+    @Test
+    void feedsFromAnOffset() {
+        double[] high = {9, 1, 2, 5, 2, 1, 9};
+        double[] low = {0, 1, 0, 1, 0, 1, 0};
+        List<String> swings = new ArrayList<>();
+        new SwingDetector((width, index, isHigh, price) -> swings.add(index + ":" + isHigh), 2)
+            .updateAll(high, low, 1, 5);
+        assertEquals(List.of("2:true"), swings);
+    }
+
+    @Test
+    void rejectsNonPositiveWidths() {
+        assertThrows(IllegalArgumentException.class, () -> new SwingDetector((w, i, h, p) -> { }, 3, 0));
+        assertThrows(IllegalArgumentException.class, () -> new SwingDetector((w, i, h, p) -> { }));
+    }
+
+    // Every strict 2w+1-bar fractal, in the detector's emission order: by confirming bar, then width
+    private static List<String> bruteForce(double[] high, double[] low, int[] widths) {
+        List<String> swings = new ArrayList<>();
+        for (int i = 0; i < high.length; i++) {
+            for (int width : widths) {
+                int centre = i - width;
+                if (centre < width) continue;
+                boolean isHigh = true;
+                boolean isLow = true;
+                for (int j = centre - width; j <= centre + width; j++) {
+                    if (j == centre) continue;
+                    if (high[j] >= high[centre]) isHigh = false;
+                    if (low[j] <= low[centre]) isLow = false;
+                }
+                if (isHigh) swings.add(width + ":" + centre + ":true:" + high[centre]);
+                if (isLow) swings.add(width + ":" + centre + ":false:" + low[centre]);
+            }
+        }
+        return swings;
+    }
+}
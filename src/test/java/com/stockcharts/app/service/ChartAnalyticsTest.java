@@ -0,0 +1,90 @@
+package com.stockcharts.app.service;
+
+import com.stockcharts.app.model.BarSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChartAnalyticsTest {
+
+    private static final int N = 900;
+
+    // One instance advanced through growing prefixes must report what a fresh instance reports
+    @Test
+    void incrementalAdvanceMatchesFreshAnalysis() {
+        int fibonacciSets = 0;
+        for (long seed = 1; seed <= 5; seed++) {
+            Random random = new Random(seed);
+            BarSeries full = randomBars(random);
+            for (int width : new int[] {3, 5}) {
+                ChartAnalytics incremental = new ChartAnalytics(width, false);
+                for (int n = 1; n <= N; n += 1 + random.nextInt(12)) {
+                    BarSeries bars = full.first(n);
+                    ChartAnalytics.Snapshot advanced = incremental.advance(bars);
+                    assertNotNull(advanced, "advance to " + n);
+                    String expected = describe(new ChartAnalytics(width, false).advance(bars));
+                    assertEquals(expected, describe(advanced), "seed " + seed + ", width " + width + ", bars " + n);
+                    fibonacciSets += advanced.fibonacciSets.size();
+                }
+            }
+        }
+        assertTrue(fibonacciSets > 0, "the bars should produce Fibonacci sets to compare");
+    }
+
+    @Test
+    void refusesSeriesThatDoNotExtendTheConsumedBars() {
+        BarSeries bars = randomBars(new Random(3));
+        ChartAnalytics analytics = new ChartAnalytics(3, false);
+        assertNotNull(analytics.advance(bars.first(100)));
+        assertNull(analytics.advance(bars.first(99)));
+        assertNull(analytics.advance(bars.slice(1, 200)));
+
+        double[] high = bars.first(100).highArray();
+        high[99] += 1;
+        BarSeries revised = new BarSeries(bars.first(100).epochDayArray(), bars.first(100).openArray(), high,
+            bars.first(100).lowArray(), bars.first(100).closeArray());
+        assertNull(analytics.advance(revised));
+        assertEquals(100, analytics.size());
+    }
+
+    // Trending random walk so swings, valid pairs and level breaks all occur
+    private static BarSeries randomBars(Random random) {
+        BarSeries.Builder builder = new BarSeries.Builder(N);
+        double price = 100;
+        for (int i = 0; i < N; i++) {
+            double drift = Math.sin(i / 40.0) * 0.01;
+            double open = price;
+            price *= 1 + drift + 0.02 * random.nextGaussian();
+            double high = Math.max(open, price) * (1 + 0.01 * random.nextDouble());
+            double low = Math.min(open, price) * (1 - 0.01 * random.nextDouble());
+            builder.add(18_000 + i, open, high, low, price);
+        }
+        return builder.build();
+    }
+
+    private static String describe(ChartAnalytics.Snapshot snapshot) {
+        StringBuilder out = new StringBuilder();
+        for (ChartAnalytics.HullLine line : snapshot.hullLines) {
+            out.append(String.format("hull %b %d %d %s %s %s%n", line.support, line.startIndex, line.throughIndex,
+                line.startPrice, line.endPrice, line.slope));
+        }
+        for (ChartAnalytics.SwingPoint swing : snapshot.swingPoints) {
+            out.append(String.format("swing %d %s %b %s%n", swing.index, swing.date, swing.isHigh, swing.price));
+        }
+        for (ChartAnalytics.SwingPoint swing : snapshot.validSwingPoints) {
+            out.append(String.format("valid %d %b %s%n", swing.index, swing.isHigh, swing.price));
+        }
+        for (ChartAnalytics.FibonacciSet set : snapshot.fibonacciSets) {
+            out.append(String.format("fib %d %d %s %s %s %b %b %s %s%n", set.startIndex, set.endIndex, set.startDate,
+                set.high, set.low, set.isUptrend, set.isValid, Arrays.toString(set.invalidatedLevels),
+                Arrays.toString(set.invalidatedAt)));
+        }
+        return out.toString();
+    }
+}